@@ -1,6 +1,13 @@
 package com.dticnat.controleimpressao;
 
-import com.dticnat.controleimpressao.service.SolicitationService;
+import com.dticnat.controleimpressao.config.ClusterLocked;
+import com.dticnat.controleimpressao.model.dto.ArchivingReport;
+import com.dticnat.controleimpressao.service.ArchivingService;
+import com.dticnat.controleimpressao.service.EventPartitionService;
+import com.dticnat.controleimpressao.service.NotificationDispatcher;
+import com.dticnat.controleimpressao.service.SmtpTransportPool;
+import com.dticnat.controleimpressao.service.SolicitationProcessingService;
+import com.dticnat.controleimpressao.service.UploadService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,7 +21,22 @@ public class ScheduledTasks {
     private static final Logger logger = LoggerFactory.getLogger(ScheduledTasks.class);
 
     @Autowired
-    private SolicitationService solicitationService;
+    private ArchivingService archivingService;
+
+    @Autowired
+    private UploadService uploadService;
+
+    @Autowired
+    private NotificationDispatcher notificationDispatcher;
+
+    @Autowired
+    private SmtpTransportPool smtpTransportPool;
+
+    @Autowired
+    private EventPartitionService eventPartitionService;
+
+    @Autowired
+    private SolicitationProcessingService solicitationProcessingService;
 
     /**
      * Tarefa agendada para remover arquivos associados a solicitações obsoletas.
@@ -23,13 +45,84 @@ public class ScheduledTasks {
      * `arquivos.cleanup-rate-hours` (frequência) e `arquivos.cleanup-rate-hours` (delay inicial).
      * Somente arquivos associados a solicitações obsoletas serão deletados
      * E.g. solicitação fechada a mais de 3 dias
+     * Com várias instâncias do backend, apenas uma executa a limpeza em cada ciclo (@ClusterLocked).
      */
+    @ClusterLocked(lockAtLeastFor = "${arquivos.cleanup-rate-hours}h")
     @Scheduled(fixedRateString = "${arquivos.cleanup-rate-hours}",
             initialDelayString = "${arquivos.cleanup-rate-hours}",
             timeUnit = TimeUnit.HOURS)
     public void cleanupFiles() {
         logger.info("Iniciando a limpeza de arquivos obsoletos...");
-        int deletedFiles = solicitationService.removeStaleFiles();
-        logger.info("Limpeza de arquivos obsoletos concluída. [{}] arquivos removidos.", deletedFiles);
+        ArchivingReport report = archivingService.archiveStaleSolicitations();
+        logger.info("Limpeza de arquivos obsoletos concluída em {} ms. [{}] candidatas, [{}] arquivadas, [{}] falhas, " +
+                        "[{}] remoções retomadas, [{}] arquivos removidos, [{}] bytes liberados.",
+                report.getDurationMillis(), report.getCandidates(), report.getArchived(), report.getFailed(),
+                report.getRecovered(), report.getFilesDeleted(), report.getBytesFreed());
+    }
+
+    /**
+     * Tarefa agendada para remover sessões de envio resumível abandonadas.
+     *
+     * Sessões criadas há mais tempo que `arquivos.upload-expiration-hours` têm seu
+     * arquivo de staging removido do disco, liberando o espaço de envios nunca finalizados.
+     */
+    @Scheduled(fixedRate = 1, initialDelay = 1, timeUnit = TimeUnit.HOURS)
+    public void cleanupUploadSessions() {
+        int removedSessions = uploadService.removeExpiredSessions();
+        if (removedSessions > 0)
+            logger.info("Limpeza de sessões de envio concluída. [{}] sessões removidas.", removedSessions);
+    }
+
+    /**
+     * Tarefa agendada para retomar solicitações cujo processamento foi abandonado (e.g. a instância
+     * dona foi encerrada), a cada `processamento.retomada-minutos`.
+     *
+     * Não usa @ClusterLocked: cada solicitação é assumida por uma única instância na própria consulta.
+     */
+    @Scheduled(fixedRateString = "${processamento.retomada-minutos}",
+            initialDelayString = "${processamento.retomada-minutos}",
+            timeUnit = TimeUnit.MINUTES)
+    public void resumeStaleProcessing() {
+        solicitationProcessingService.resumePending();
+    }
+
+    /**
+     * Tarefa agendada para enviar as notificações pendentes da fila (outbox).
+     *
+     * Executada a cada `notificacoes.poll-interval-ms` após o término da execução anterior.
+     * Não usa @ClusterLocked: o bloqueio das notificações com 'SKIP LOCKED' já permite que
+     * várias instâncias despachem em paralelo sem envios duplicados.
+     */
+    @Scheduled(fixedDelayString = "${notificacoes.poll-interval-ms}",
+            initialDelayString = "${notificacoes.poll-interval-ms}")
+    public void dispatchNotifications() {
+        int sent = notificationDispatcher.dispatchPending();
+        if (sent > 0)
+            logger.info("Envio de notificações concluído. [{}] notificações enviadas.", sent);
+    }
+
+    /**
+     * Tarefa agendada para fechar as conexões SMTP ociosas do pool de envio de notificações.
+     */
+    @Scheduled(fixedDelay = 30, initialDelay = 30, timeUnit = TimeUnit.SECONDS)
+    public void evictIdleSmtpConnections() {
+        int closed = smtpTransportPool.evictIdle();
+        if (closed > 0)
+            logger.info("[{}] conexões SMTP ociosas fechadas.", closed);
+    }
+
+    /**
+     * Tarefa agendada para manter as partições mensais da tabela de eventos.
+     *
+     * Executada conforme `eventos.particoes.cron` (diariamente, por padrão): cria as partições dos
+     * próximos meses e arquiva as partições antigas, se habilitado por `eventos.particoes.arquivamento`.
+     */
+    @ClusterLocked(lockAtLeastFor = "${eventos.particoes.lock-minimo}")
+    @Scheduled(cron = "${eventos.particoes.cron}")
+    public void maintainEventPartitions() {
+        int created = eventPartitionService.createPartitions();
+        int archived = eventPartitionService.archivePartitions();
+        if (created > 0 || archived > 0)
+            logger.info("Manutenção das partições de eventos concluída. [{}] criadas, [{}] arquivadas.", created, archived);
     }
 }
@@ -0,0 +1,204 @@
+package com.dticnat.controleimpressao.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pools de execução assíncrona da aplicação.
+ *
+ * Cada tipo de trabalho tem seu próprio pool nomeado e limitado (threads e fila), com uma política
+ * de contrapressão própria, para que não concorra de forma imprevisível com as threads das requisições.
+ * Métodos @Async sem qualificador usam o pool de arquivos ('fileExecutor', também registrado como 'taskExecutor').
+ *
+ * Com `executores.virtual-threads=true`, os pools de trabalho de I/O (notificações, arquivos e arquivamento)
+ * usam threads virtuais, limitadas pelo mesmo número máximo de tarefas simultâneas; ao atingir o limite,
+ * quem submete a tarefa aguarda. A renderização de pré-visualizações e o processamento de PDFs
+ * são limitados por CPU e continuam em pools de threads de plataforma.
+ *
+ * Métricas por pool (tag 'executor'): 'executores.tarefas.ativas' e 'executores.tarefas.fila'.
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    @Value("${executores.virtual-threads}")
+    private boolean virtualThreads;
+
+    @Value("${processamento.pool-size}")
+    private int processingPoolSize;
+
+    @Value("${processamento.queue-capacity}")
+    private int processingQueueCapacity;
+
+    @Value("${previsualizacao.pool-size}")
+    private int previewPoolSize;
+
+    @Value("${previsualizacao.queue-capacity}")
+    private int previewQueueCapacity;
+
+    @Value("${arquivos.cleanup-parallelism}")
+    private int archivingParallelism;
+
+    @Value("${arquivos.pool-size}")
+    private int filePoolSize;
+
+    @Value("${arquivos.queue-capacity}")
+    private int fileQueueCapacity;
+
+    @Value("${notificacoes.pool-size}")
+    private int notificationPoolSize;
+
+    @Value("${notificacoes.queue-capacity}")
+    private int notificationQueueCapacity;
+
+    // Tarefas em execução nos pools de threads virtuais, que não expõem essa contagem
+    private final Map<String, AtomicInteger> virtualActiveTasks = new ConcurrentHashMap<>();
+
+    /**
+     * Pool limitado para o processamento assíncrono de arquivos de solicitações
+     * (validação, contagem de páginas e finalização).
+     * Quando a fila enche, a tarefa é executada na própria thread da requisição (CallerRuns),
+     * o que aplica contrapressão ao cliente em vez de descartar o processamento.
+     */
+    @Bean(name = "solicitationProcessingExecutor")
+    public ThreadPoolTaskExecutor solicitationProcessingExecutor() {
+        ThreadPoolTaskExecutor executor = threadPool("processamento-", processingPoolSize, processingQueueCapacity,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Pool limitado para a renderização de pré-visualizações de páginas.
+     * Diferente do processamento, quando a fila enche a tarefa é rejeitada (Abort):
+     * renderizar na thread da requisição consumiria as threads do servidor, então o cliente
+     * recebe '503' e pode tentar novamente.
+     */
+    @Bean(name = "previewExecutor")
+    public ThreadPoolTaskExecutor previewExecutor() {
+        return threadPool("previsualizacao-", previewPoolSize, previewQueueCapacity,
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Pool limitado para o arquivamento de solicitações obsoletas.
+     * O número de threads limita quantas solicitações têm arquivos removidos ao mesmo tempo,
+     * protegendo o disco; quando a fila enche, a thread agendada executa a tarefa (CallerRuns).
+     */
+    @Bean(name = "archivingExecutor")
+    public TaskExecutor archivingExecutor() {
+        return ioExecutor("arquivamento-", archivingParallelism, archivingParallelism * 4);
+    }
+
+    /**
+     * Pool limitado para trabalho assíncrono com arquivos (e.g. reconciliação do armazenamento)
+     * e padrão para métodos @Async sem qualificador.
+     */
+    @Bean(name = {"fileExecutor", "taskExecutor"})
+    public TaskExecutor fileExecutor() {
+        return ioExecutor("arquivos-", filePoolSize, fileQueueCapacity);
+    }
+
+    /**
+     * Pool limitado para o envio de notificações por email.
+     * O número de threads limita as conexões simultâneas ao servidor SMTP; quando a fila enche,
+     * o despachante envia ele mesmo (CallerRuns), reduzindo o ritmo de consumo da fila.
+     */
+    @Bean(name = "notificationExecutor")
+    public TaskExecutor notificationExecutor() {
+        return ioExecutor("notificacoes-", notificationPoolSize, notificationQueueCapacity);
+    }
+
+    /**
+     * Registra as métricas de tarefas ativas e enfileiradas de cada pool.
+     */
+    @Bean
+    public MeterBinder executorMetrics(@Qualifier("solicitationProcessingExecutor") TaskExecutor processing,
+                                       @Qualifier("previewExecutor") TaskExecutor preview,
+                                       @Qualifier("archivingExecutor") TaskExecutor archiving,
+                                       @Qualifier("fileExecutor") TaskExecutor file,
+                                       @Qualifier("notificationExecutor") TaskExecutor notification) {
+        Map<String, TaskExecutor> executors = Map.of(
+                "processamento", processing,
+                "previsualizacao", preview,
+                "arquivamento", archiving,
+                "arquivos", file,
+                "notificacoes", notification);
+
+        return registry -> executors.forEach((name, executor) -> {
+            Gauge.builder("executores.tarefas.ativas", executor, this::activeTasks)
+                    .description("Tarefas em execução no pool")
+                    .tag("executor", name)
+                    .register(registry);
+            Gauge.builder("executores.tarefas.fila", executor, this::queuedTasks)
+                    .description("Tarefas aguardando na fila do pool")
+                    .tag("executor", name)
+                    .register(registry);
+        });
+    }
+
+    private ThreadPoolTaskExecutor threadPool(String prefix, int poolSize, int queueCapacity, RejectedExecutionHandler policy) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(prefix);
+        executor.setRejectedExecutionHandler(policy);
+        return executor;
+    }
+
+    // Pool de trabalho de I/O: threads virtuais com limite de concorrência, ou pool de threads de plataforma (CallerRuns)
+    private TaskExecutor ioExecutor(String prefix, int poolSize, int queueCapacity) {
+        if (!virtualThreads) {
+            ThreadPoolTaskExecutor executor = threadPool(prefix, poolSize, queueCapacity, new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.setWaitForTasksToCompleteOnShutdown(true);
+            executor.setAwaitTerminationSeconds(30);
+            return executor;
+        }
+
+        AtomicInteger active = new AtomicInteger();
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(prefix);
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(poolSize);
+        executor.setTaskDecorator(task -> () -> {
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+        executor.setTaskTerminationTimeout(30_000);
+        virtualActiveTasks.put(prefix, active);
+        return executor;
+    }
+
+    private double activeTasks(TaskExecutor executor) {
+        if (executor instanceof ThreadPoolTaskExecutor pool) return pool.getActiveCount();
+        if (executor instanceof SimpleAsyncTaskExecutor simple) {
+            AtomicInteger active = virtualActiveTasks.get(simple.getThreadNamePrefix());
+            return active != null ? active.get() : 0;
+        }
+        return 0;
+    }
+
+    private double queuedTasks(TaskExecutor executor) {
+        // Nos pools de threads virtuais não há fila: quem submete aguarda o limite de concorrência
+        return executor instanceof ThreadPoolTaskExecutor pool ? pool.getQueueSize() : 0;
+    }
+}
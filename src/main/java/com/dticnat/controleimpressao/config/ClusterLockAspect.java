@@ -0,0 +1,68 @@
+package com.dticnat.controleimpressao.config;
+
+import com.dticnat.controleimpressao.service.JobLockService;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.time.Duration;
+
+/**
+ * Aplica o lock distribuído aos métodos anotados com {@link ClusterLocked}.
+ *
+ * Quando o lock não é adquirido o método não executa e não há valor de retorno, então apenas métodos
+ * 'void' podem ser anotados; isso é verificado ao iniciar a aplicação.
+ */
+@Aspect
+@Component
+public class ClusterLockAspect implements SmartInitializingSingleton {
+
+    @Autowired
+    private JobLockService jobLockService;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Around("@annotation(clusterLocked)")
+    public Object runLocked(ProceedingJoinPoint joinPoint, ClusterLocked clusterLocked) throws Throwable {
+        String name = clusterLocked.name().isBlank()
+                ? joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName()
+                : clusterLocked.name();
+
+        jobLockService.runLocked(name, Duration.ofSeconds(clusterLocked.leaseSeconds()), minHold(clusterLocked), joinPoint::proceed);
+        return null;
+    }
+
+    /**
+     * Rejeita, ao iniciar a aplicação, métodos anotados com {@link ClusterLocked} que retornam valores.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (String beanName : applicationContext.getBeanDefinitionNames()) {
+            Class<?> type = applicationContext.getType(beanName);
+            if (type == null) continue;
+
+            ReflectionUtils.doWithMethods(ClassUtils.getUserClass(type), method -> {
+                if (method.isAnnotationPresent(ClusterLocked.class) && method.getReturnType() != void.class)
+                    throw new IllegalStateException("@ClusterLocked só pode ser usado em métodos void: " +
+                            method.getDeclaringClass().getSimpleName() + "." + method.getName());
+            });
+        }
+    }
+
+    private Duration minHold(ClusterLocked clusterLocked) {
+        String value = environment.resolvePlaceholders(clusterLocked.lockAtLeastFor());
+        return value.isBlank() ? Duration.ZERO : DurationStyle.detectAndParse(value);
+    }
+}
@@ -0,0 +1,34 @@
+package com.dticnat.controleimpressao.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indica que um método (tipicamente @Scheduled) deve executar em apenas uma instância do
+ * backend por vez, sob um lock distribuído (ver JobLockService). Nas demais instâncias,
+ * a execução do ciclo é ignorada.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ClusterLocked {
+
+    /**
+     * Nome do lock. Por padrão, "NomeDaClasse.nomeDoMetodo".
+     */
+    String name() default "";
+
+    /**
+     * Duração do lease em segundos, renovado enquanto o método executa.
+     */
+    long leaseSeconds() default 60;
+
+    /**
+     * Tempo mínimo em que o lock permanece detido após o início da execução, mesmo que o método termine antes,
+     * e.g. "50m" ou "PT1H" (aceita placeholders de propriedades). Deve ser próximo do intervalo do agendamento,
+     * para que instâncias cujo agendamento dispare um pouco depois não executem o mesmo ciclo novamente.
+     * A própria instância que detém o lock pode readquiri-lo no ciclo seguinte.
+     */
+    String lockAtLeastFor() default "";
+}
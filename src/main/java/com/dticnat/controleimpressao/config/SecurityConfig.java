@@ -50,11 +50,15 @@ public class SecurityConfig {
                 "Accept",
                 "Origin", // Essential for CORS
                 "Access-Control-Request-Method", // Essential for preflight
-                "Access-Control-Request-Headers" // Essential for preflight
+                "Access-Control-Request-Headers", // Essential for preflight
+                "Upload-Offset" // Offset of each chunk in resumable uploads (PUT /envios/{id})
         ));
         configuration.setExposedHeaders(List.of( // Headers the browser is allowed to access
                 "Access-Control-Allow-Origin",
-                "Access-Control-Allow-Credentials"
+                "Access-Control-Allow-Credentials",
+                "Upload-Offset", // Bytes already received in a resumable upload
+                "Location", // Status URL of asynchronous processing (202 Accepted)
+                "Retry-After" // Backoff suggested on 503 responses
         ));
         configuration.setAllowCredentials(true); // VERY IMPORTANT: Set this to true if your frontend ever sends credentials (cookies, Authorization header)
         // or if you plan to. Many SPAs do.
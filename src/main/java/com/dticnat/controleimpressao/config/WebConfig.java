@@ -3,13 +3,11 @@ package com.dticnat.controleimpressao.config;
 import com.dticnat.controleimpressao.interceptor.AuthInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
-@EnableAsync
 public class WebConfig implements WebMvcConfigurer {
 
     @Value("${FRONTEND_URL}")
@@ -1,11 +1,15 @@
 package com.dticnat.controleimpressao.controller;
 
+import com.dticnat.controleimpressao.exception.ForbiddenException;
 import com.dticnat.controleimpressao.exception.UnauthorizedException;
 import com.dticnat.controleimpressao.model.Solicitation;
 import com.dticnat.controleimpressao.model.User;
+import com.dticnat.controleimpressao.model.dto.NotificationPreferenceDTO;
 import com.dticnat.controleimpressao.model.enums.EventType;
 import com.dticnat.controleimpressao.service.EventService;
 import com.dticnat.controleimpressao.service.SolicitationService;
+import com.dticnat.controleimpressao.service.SubscriptionService;
+import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.persistence.EntityNotFoundException;
@@ -27,6 +31,9 @@ public class EventController {
     @Autowired
     private EventService eventService;
 
+    @Autowired
+    private SubscriptionService subscriptionService;
+
     @GetMapping("/notificar/{solicitationId}")
     public ResponseEntity<?> notifyLastEvent(HttpServletRequest httpRequest,
                                                        @Parameter(description = "ID da solicitação da qual o último evento será notificado.") @PathVariable Long solicitationId) {
@@ -50,4 +57,88 @@ public class EventController {
                     .body("Usuário não autorizado a acessar esta solicitação.");
         }
     }
+
+    /**
+     * Inscreve o usuário autenticado nas notificações de uma solicitação, reativando uma inscrição cancelada.
+     *
+     * @param solicitationId ID da solicitação.
+     * @return ResponseEntity com true em caso de sucesso, ou o status de erro correspondente.
+     */
+    @Operation(summary = "Inscreve o usuário nas notificações de uma solicitação")
+    @PostMapping("/inscricao/{solicitationId}")
+    public ResponseEntity<?> subscribe(HttpServletRequest httpRequest,
+                                       @Parameter(description = "ID da solicitação.") @PathVariable Long solicitationId) {
+        User user = (User) httpRequest.getAttribute("userPrincipal");
+
+        try {
+            solicitationService.canInteract(solicitationId, user, EventType.REQUEST_VIEWING);
+            subscriptionService.subscribeExplicitly(solicitationId, user);
+            return ResponseEntity.ok(true);
+
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Solicitação (ID " + String.format("%06d", solicitationId) + ") não encontrada.");
+        } catch (ForbiddenException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Usuário não está autorizado a acessar este recurso.");
+        }
+    }
+
+    /**
+     * Cancela a inscrição do usuário autenticado nas notificações de uma solicitação.
+     * Novas interações do usuário com a solicitação não o inscrevem novamente.
+     *
+     * @param solicitationId ID da solicitação.
+     * @return ResponseEntity com true em caso de sucesso, ou o status de erro correspondente.
+     */
+    @Operation(summary = "Cancela a inscrição do usuário nas notificações de uma solicitação")
+    @DeleteMapping("/inscricao/{solicitationId}")
+    public ResponseEntity<?> unsubscribe(HttpServletRequest httpRequest,
+                                         @Parameter(description = "ID da solicitação.") @PathVariable Long solicitationId) {
+        User user = (User) httpRequest.getAttribute("userPrincipal");
+
+        try {
+            solicitationService.canInteract(solicitationId, user, EventType.REQUEST_VIEWING);
+            subscriptionService.unsubscribe(solicitationId, user);
+            return ResponseEntity.ok(true);
+
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Solicitação (ID " + String.format("%06d", solicitationId) + ") não encontrada.");
+        } catch (ForbiddenException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Usuário não está autorizado a acessar este recurso.");
+        }
+    }
+
+    /**
+     * Retorna as preferências de notificação do usuário autenticado.
+     *
+     * @return ResponseEntity contendo as preferências de notificação.
+     */
+    @Operation(summary = "Consulta as preferências de notificação do usuário")
+    @GetMapping("/preferencias")
+    public ResponseEntity<NotificationPreferenceDTO> getPreference(HttpServletRequest httpRequest) {
+        User user = (User) httpRequest.getAttribute("userPrincipal");
+        return ResponseEntity.ok(subscriptionService.getPreference(user.getRegistrationNumber()));
+    }
+
+    /**
+     * Atualiza as preferências de notificação do usuário autenticado: se recebe emails e quais
+     * tipos de evento estão silenciados.
+     *
+     * @param preferenceDTO Novas preferências.
+     * @return ResponseEntity contendo as preferências atualizadas.
+     */
+    @Operation(summary = "Atualiza as preferências de notificação do usuário")
+    @PutMapping("/preferencias")
+    public ResponseEntity<NotificationPreferenceDTO> updatePreference(HttpServletRequest httpRequest,
+                                                                      @RequestBody NotificationPreferenceDTO preferenceDTO) {
+        User user = (User) httpRequest.getAttribute("userPrincipal");
+        return ResponseEntity.ok(subscriptionService.updatePreference(user.getRegistrationNumber(), preferenceDTO));
+    }
 }
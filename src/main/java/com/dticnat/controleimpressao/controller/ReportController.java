@@ -1,55 +1,119 @@
 package com.dticnat.controleimpressao.controller;
 
 import com.dticnat.controleimpressao.model.Solicitation;
+import com.dticnat.controleimpressao.model.User;
+import com.dticnat.controleimpressao.service.ReportService;
+import com.dticnat.controleimpressao.service.SolicitationService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.validation.Valid;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
-import org.springframework.ui.Model;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
 
 // @Controller ao invés de @RestController
-// Isso porque aqui retornamos uma página estática (HTML) ao invés de dados (JSON), como nos outros controllers
+// Isso porque aqui retornamos documentos (HTML e PDF) ao invés de dados (JSON), como nos outros controllers
 @Controller
-@RequestMapping("/relatorio")
 @Tag(name = "Relatórios", description = "Operações relacionadas a geração de relatórios")
 public class ReportController {
 
+    @Autowired
+    private SolicitationService solicitationService;
+
+    @Autowired
+    private ReportService reportService;
+
+    /**
+     * Gera um relatório em HTML das solicitações que correspondem aos filtros informados.
+     * Os filtros são os mesmos da listagem de solicitações e são aplicados na base de dados;
+     * usuários que não são administradores ou gerentes veem apenas as próprias solicitações.
+     * Os totais (número de solicitações e de páginas) são calculados com agregações SQL, e as
+     * solicitações são lidas por cursor e renderizadas no template Thymeleaf "report.html"
+     * diretamente na resposta, enviada em partes à medida que é gerada.
+     *
+     * @param filtering Indica se apenas as solicitações do próprio usuário devem ser incluídas (opcional).
+     * @param concluded Filtra solicitações concluídas (true) ou pendentes (false) (opcional).
+     * @param startDate Data de início para filtragem por data (opcional).
+     * @param endDate   Data de término para filtragem por data (opcional).
+     * @param query     Termo de pesquisa para filtragem por texto (opcional).
+     * @param response  A resposta HTTP, na qual o relatório é escrito.
+     * @throws IOException Se não for possível escrever o relatório na resposta.
+     */
+    @Operation(summary = "Gera um relatório das solicitações filtradas")
+    @GetMapping("/relatorio")
+    public void generateReport(HttpServletRequest httpRequest,
+                               @Parameter(description = "Indica se a filtragem por usuário deve ser aplicada (opcional).") @RequestParam(value = "filtering", required = false) Boolean filtering,
+                               @Parameter(description = "Indica se as solicitações concluídas devem ser filtradas (opcional).") @RequestParam(value = "concluded", required = false) Boolean concluded,
+                               @Parameter(description = "Data de início para filtragem por data (opcional).")
+                               @RequestParam(value = "startDate", required = false)
+                               @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+                               @Parameter(description = "Data de término para filtragem por data (opcional).")
+                               @RequestParam(value = "endDate", required = false)
+                               @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+                               @Parameter(description = "Termo de pesquisa para filtragem por texto (opcional).") @RequestParam(value = "query", required = false) String query,
+                               HttpServletResponse response) throws IOException {
+
+        Specification<Solicitation> spec = reportSpec(httpRequest, filtering, concluded, startDate, endDate, query);
+
+        // Sem tamanho definido, a resposta é enviada em partes (chunked) à medida que o template é renderizado
+        response.setContentType(MediaType.TEXT_HTML_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        reportService.writeHtmlReport(spec, response.getWriter());
+    }
+
     /**
-     * Gera um relatório em HTML com base na lista de solicitações fornecida.
-     * Este endpoint recebe uma lista de objetos Request no corpo da requisição,
-     * calcula informações relevantes para o relatório (data de geração, total de páginas,
-     * número total de solicitações) e as adiciona ao modelo para serem renderizadas
-     * em um template Thymeleaf chamado "report.html".
+     * Gera o relatório das solicitações que correspondem aos filtros informados em PDF.
+     * Os filtros e as permissões são os mesmos do relatório em HTML; o documento é desenhado
+     * diretamente com o PDFBox, lendo as solicitações por cursor.
      *
-     * @param solicitations A lista de solicitações a serem incluídas no relatório.
-     * @param model    O modelo Spring para passar dados para a view (Thymeleaf).
-     * @return O nome do template Thymeleaf a ser renderizado ("report").
+     * @param filtering Indica se apenas as solicitações do próprio usuário devem ser incluídas (opcional).
+     * @param concluded Filtra solicitações concluídas (true) ou pendentes (false) (opcional).
+     * @param startDate Data de início para filtragem por data (opcional).
+     * @param endDate   Data de término para filtragem por data (opcional).
+     * @param query     Termo de pesquisa para filtragem por texto (opcional).
+     * @param response  A resposta HTTP, na qual o documento é escrito.
+     * @throws IOException Se não for possível gerar ou escrever o documento.
      */
-    @Operation(summary = "Gera um relatório a partir das solicitações enviadas")
-    @PostMapping
-    public String generateReport(@RequestBody @Valid List<Solicitation> solicitations, Model model) {
-        // Calcular a data de geração do relatório
-        String reportGenerationDate = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"));
-
-        // Calcular o número total de páginas de todos os relatórios
-        int totalPageCount = solicitations.stream()
-                .mapToInt(Solicitation::getTotalPageCount)
-                .sum();
-
-        // Adicionar informações ao modelo
-        model.addAttribute("institutionName", "Instituto Federal do Rio Grande do Norte - Natal Central (IFRN - CNAT)");
-        model.addAttribute("reportGenerationDate", reportGenerationDate);
-        model.addAttribute("totalPageCount", totalPageCount);
-        model.addAttribute("totalRequests", solicitations.size());  // Nova variável
-        model.addAttribute("solicitations", solicitations);
-
-        return "report"; // Renderiza o template Thymeleaf com as informações
+    @Operation(summary = "Gera um relatório em PDF das solicitações filtradas")
+    @GetMapping("/relatorio.pdf")
+    public void generatePdfReport(HttpServletRequest httpRequest,
+                                  @Parameter(description = "Indica se a filtragem por usuário deve ser aplicada (opcional).") @RequestParam(value = "filtering", required = false) Boolean filtering,
+                                  @Parameter(description = "Indica se as solicitações concluídas devem ser filtradas (opcional).") @RequestParam(value = "concluded", required = false) Boolean concluded,
+                                  @Parameter(description = "Data de início para filtragem por data (opcional).")
+                                  @RequestParam(value = "startDate", required = false)
+                                  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+                                  @Parameter(description = "Data de término para filtragem por data (opcional).")
+                                  @RequestParam(value = "endDate", required = false)
+                                  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+                                  @Parameter(description = "Termo de pesquisa para filtragem por texto (opcional).") @RequestParam(value = "query", required = false) String query,
+                                  HttpServletResponse response) throws IOException {
+
+        Specification<Solicitation> spec = reportSpec(httpRequest, filtering, concluded, startDate, endDate, query);
+
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline().filename("relatorio.pdf").build().toString());
+        reportService.writePdfReport(spec, response.getOutputStream());
+    }
+
+    // Mesma regra da listagem: não administradores veem apenas as próprias solicitações
+    private Specification<Solicitation> reportSpec(HttpServletRequest httpRequest, Boolean filtering, Boolean concluded,
+                                                   LocalDateTime startDate, LocalDateTime endDate, String query) {
+        // Recuperar dados do usuário autenticado do request http
+        User user = (User) httpRequest.getAttribute("userPrincipal");
+
+        String userRegistration = (!user.isAdminOrManager() || (filtering != null && filtering)) ? user.getRegistrationNumber() : null;
+        return solicitationService.filterRequests(startDate, endDate, query, concluded, userRegistration);
     }
 }
@@ -1,15 +1,20 @@
 package com.dticnat.controleimpressao.controller;
 
 import com.dticnat.controleimpressao.exception.FileGoneException;
+import com.dticnat.controleimpressao.exception.ConflictException;
 import com.dticnat.controleimpressao.exception.ForbiddenException;
 import com.dticnat.controleimpressao.exception.PhysicalFileException;
+import com.dticnat.controleimpressao.exception.ServiceUnavailableException;
 import com.dticnat.controleimpressao.model.Solicitation;
 import com.dticnat.controleimpressao.model.User;
 import com.dticnat.controleimpressao.model.dto.CommentDTO;
+import com.dticnat.controleimpressao.model.dto.ProcessingStatusDTO;
 import com.dticnat.controleimpressao.model.dto.SolicitationDTO;
+import com.dticnat.controleimpressao.model.dto.SolicitationSummary;
 import com.dticnat.controleimpressao.model.enums.EventType;
 import com.dticnat.controleimpressao.service.AuthService;
 import com.dticnat.controleimpressao.service.CopyService;
+import com.dticnat.controleimpressao.service.SolicitationProcessingService;
 import com.dticnat.controleimpressao.service.SolicitationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -26,16 +31,20 @@ import org.apache.coyote.BadRequestException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.FileNotFoundException;
 import java.nio.file.NoSuchFileException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/solicitacoes")
@@ -51,6 +60,9 @@ public class SolicitationController {
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private SolicitationProcessingService solicitationProcessingService;
+
     /**
      * Lista todas as solicitações, com opções de filtragem por usuário, status, data e pesquisa.
      *
@@ -66,7 +78,7 @@ public class SolicitationController {
             @ApiResponse(responseCode = "200",
                     description = "Lista de solicitações retornada com sucesso.",
                     content = @Content(mediaType = "application/json",
-                            array = @ArraySchema(schema = @Schema(implementation = Solicitation.class))))
+                            array = @ArraySchema(schema = @Schema(implementation = SolicitationSummary.class))))
     })
     @GetMapping
     public ResponseEntity<?> getAllSolicitations(HttpServletRequest httpRequest,
@@ -89,7 +101,7 @@ public class SolicitationController {
         String userRegistration = (!user.isAdminOrManager() || (filtering != null && filtering)) ? user.getRegistrationNumber() : null;
 
         // Buscar as solicitações filtradas
-        List<Solicitation> solicitations = solicitationService.findAll(startDate, endDate, query, concluded, userRegistration);
+        List<SolicitationSummary> solicitations = solicitationService.findAll(startDate, endDate, query, concluded, userRegistration);
         return ResponseEntity.ok(solicitations);
     }
 
@@ -114,10 +126,10 @@ public class SolicitationController {
             @ApiResponse(responseCode = "200",
                     description = "Página de solicitações retornada com sucesso.",
                     content = @Content(mediaType = "application/json",
-                            array = @ArraySchema(schema = @Schema(implementation = Solicitation.class))))
+                            array = @ArraySchema(schema = @Schema(implementation = SolicitationSummary.class))))
     })
     @GetMapping("/pagina")
-    public ResponseEntity<Page<Solicitation>> getPageSolicitations(HttpServletRequest httpRequest,
+    public ResponseEntity<Page<SolicitationSummary>> getPageSolicitations(HttpServletRequest httpRequest,
                                                                    @Parameter(description = "Indica se a filtragem por usuário deve ser aplicada (opcional).") @RequestParam(value = "filtering", required = false) Boolean filtering,
                                                                    @Parameter(description = "Indica se as solicitações concluídas devem ser filtradas (opcional).") @RequestParam(value = "concluded", required = false) Boolean concluded,
                                                                    @Parameter(description = "Data de início para filtragem por data (opcional).")
@@ -141,7 +153,7 @@ public class SolicitationController {
         String userRegistration = (!user.isAdminOrManager() || (filtering != null && filtering)) ? user.getRegistrationNumber() : null;
 
         // Buscar as solicitações filtradas
-        Page<Solicitation> solicitations = solicitationService.findPage(startDate, endDate, query, concluded, userRegistration, pageNo, pageSize, sortingColumn, sortingDirection);
+        Page<SolicitationSummary> solicitations = solicitationService.findPage(startDate, endDate, query, concluded, userRegistration, pageNo, pageSize, sortingColumn, sortingDirection);
         return ResponseEntity.ok(solicitations);
     }
 
@@ -173,7 +185,7 @@ public class SolicitationController {
         // Se o usuario for admin, ele pode editar mesmo solicitações que não são dele
         try {
             Solicitation userSolicitation = solicitationService.canInteract(solicitationId, user, EventType.REQUEST_VIEWING);
-            return ResponseEntity.ok(userSolicitation);
+            return ResponseEntity.ok(solicitationService.withTimeline(userSolicitation));
 
         } catch (EntityNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -190,6 +202,43 @@ public class SolicitationController {
         }
     }
 
+    /**
+     * Consulta o status de processamento dos arquivos de uma solicitação criada em modo assíncrono.
+     *
+     * @param solicitationId ID da solicitação.
+     * @return Status de processamento ou mensagem de erro.
+     */
+    @Operation(summary = "Consulta o status de processamento de uma solicitação")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Status de processamento retornado com sucesso.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProcessingStatusDTO.class))),
+            @ApiResponse(responseCode = "403", description = "Proibido.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Usuário não está autorizado a acessar este recurso."))),
+            @ApiResponse(responseCode = "404", description = "Solicitação não encontrada.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Solicitação (ID 000123) não encontrada.")))
+    })
+    @GetMapping("/{solicitationId}/processamento")
+    public ResponseEntity<?> getProcessingStatus(HttpServletRequest httpRequest,
+                                                 @Parameter(description = "ID da solicitação.") @PathVariable Long solicitationId) {
+
+        // Recuperar dados do usuário autenticado do request http
+        User user = (User) httpRequest.getAttribute("userPrincipal");
+
+        try {
+            Solicitation solicitation = solicitationService.canInteract(solicitationId, user, EventType.REQUEST_VIEWING);
+            return ResponseEntity.ok(solicitationService.getProcessingStatus(solicitation));
+
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Solicitação (ID " + String.format("%06d", solicitationId) + ") não encontrada.");
+        } catch (ForbiddenException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Usuário não está autorizado a acessar este recurso.");
+        }
+    }
+
     /**
      * Busca e baixa um arquivo associado a uma solicitação.
      *
@@ -255,17 +304,110 @@ public class SolicitationController {
         }
     }
 
+    /**
+     * Gera a pré-visualização (PNG) de uma página de um arquivo associado a uma solicitação.
+     * As imagens são servidas de um cache em disco e renderizadas sob demanda quando ausentes.
+     *
+     * @param solicitationId ID da solicitação.
+     * @param fileName       Nome do arquivo.
+     * @param page           Número da página (a partir de 1).
+     * @param width          Largura desejada em pixels.
+     * @return Imagem da página ou mensagem de erro.
+     */
+    @Operation(summary = "Gera a pré-visualização de uma página de um arquivo associado a uma solicitação")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Pré-visualização gerada.",
+                    content = @Content(mediaType = "image/png")),
+            @ApiResponse(responseCode = "400", description = "Página inexistente.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "A página 12 não existe no arquivo (10 páginas)."))),
+            @ApiResponse(responseCode = "403", description = "Proibido.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Usuário não está autorizado a acessar este recurso."))),
+            @ApiResponse(responseCode = "404", description = "Solicitação ou arquivo não encontrado.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Cópia com nome: nomeDoArquivo.ext não foi encontrada na solicitação."))),
+            @ApiResponse(responseCode = "410", description = "Arquivo removido.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "O arquivo 'nomeDoArquivo.ext' não está mais disponível."))),
+            @ApiResponse(responseCode = "503", description = "Renderização indisponível no momento.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "A pré-visualização ainda está sendo gerada. Tente novamente em instantes."))),
+            @ApiResponse(responseCode = "500", description = "Erro interno.",
+                    content = @Content(mediaType = "text/plain"))
+    })
+    @GetMapping("/{solicitationId}/{fileName}/preview")
+    public ResponseEntity<?> previewFile(HttpServletRequest httpRequest,
+                                         @Parameter(description = "ID da solicitação.") @PathVariable Long solicitationId,
+                                         @Parameter(description = "Nome do arquivo.") @PathVariable String fileName,
+                                         @Parameter(description = "Número da página (a partir de 1).") @RequestParam(value = "page", defaultValue = "1") int page,
+                                         @Parameter(description = "Largura da imagem em pixels (arredondada para múltiplos de 50, entre 100 e 1600).") @RequestParam(value = "width", defaultValue = "300") int width) {
+
+        // Recuperar dados do usuário autenticado do request http
+        User user = (User) httpRequest.getAttribute("userPrincipal");
+
+        try {
+            byte[] image = solicitationService.getPreview(user, solicitationId, fileName, page, width);
+
+            // O conteúdo é endereçado pelo hash do arquivo, então pode ser mantido em cache pelo cliente
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_PNG)
+                    .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS).cachePrivate())
+                    .body(image);
+
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Solicitação (ID " + String.format("%06d", solicitationId) + ") não encontrada.");
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(String.format("Cópia com nome: %s não foi encontrada na solicitação.", fileName));
+        } catch (ForbiddenException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Usuário não está autorizado a acessar este recurso.");
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(String.format("O arquivo '%s' não foi encontrado no sistema.", fileName));
+        } catch (PhysicalFileException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(String.format("O arquivo '%s' é físico e não pode ser encontrado no sistema.", fileName));
+        } catch (FileGoneException e) {
+            return ResponseEntity.status(HttpStatus.GONE)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(String.format("O arquivo '%s' não está mais disponível.", fileName));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
+        } catch (ServiceUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "2")
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
+        }
+    }
+
     /**
      * Cria uma nova solicitação com os dados fornecidos e os arquivos anexados.
      *
+     * Em modo assíncrono, os arquivos são apenas gravados durante a requisição e a resposta é
+     * '202 Accepted' com o recurso de status de processamento; a validação e finalização ocorrem
+     * em segundo plano e ficam registradas na linha do tempo da solicitação.
+     *
      * @param solicitationDTO Objeto RequestDTO contendo os dados da nova solicitação.
      * @param files           Lista de arquivos a serem anexados à solicitação.
-     * @return Nova solicitação criada ou mensagem de erro.
+     * @param async           Indica se os arquivos devem ser processados em segundo plano (opcional).
+     * @return Nova solicitação criada, status de processamento ou mensagem de erro.
      */
     @Operation(summary = "Cria uma nova solicitação")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Solicitação criada com sucesso",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = Solicitation.class))),
+            @ApiResponse(responseCode = "202", description = "Solicitação aceita para processamento assíncrono",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProcessingStatusDTO.class))),
             @ApiResponse(responseCode = "400", description = "Número de arquivos enviados foi insuficiente ou arquivo corrompido/encriptado.",
                     content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "O número de arquivos enviados (2) não corresponde ao número de cópias a carregar (3) OU O arquivo enviado 'corrupted.pdf' está encriptado ou corrompido."))),
             @ApiResponse(responseCode = "403", description = "Não é possível alterar o status de uma solicitação que foi arquivada.",
@@ -277,18 +419,38 @@ public class SolicitationController {
     public ResponseEntity<?> createRequest(HttpServletRequest httpRequest,
                                            @Parameter(description = "Dados da solicitação a ser criada") @Valid @RequestPart("solicitacao") SolicitationDTO solicitationDTO,
                                            @Parameter(description = "Lista de arquivos associados a solicitação. Obs.: para anexar 'Arquivo Físico' é necessário anexar arquivo vazio (size == 0).")
-                                               @RequestPart(value = "arquivos", required = false) List<MultipartFile> files) {
+                                               @RequestPart(value = "arquivos", required = false) List<MultipartFile> files,
+                                           @Parameter(description = "Processa os arquivos em segundo plano, respondendo '202 Accepted' (opcional).")
+                                               @RequestParam(value = "assincrono", required = false) Boolean async) {
 
         // Recuperar dados do usuário autenticado do request http
         User user = (User) httpRequest.getAttribute("userPrincipal");
 
+        // Caso não sejam enviados dados de arquivos digitais (e.g. todos enviados por sessão de envio), inicializa-se um placeholder vazio
+        if (files == null) files = new ArrayList<>();
+
+        boolean isAsync = Boolean.TRUE.equals(async);
+
         // Criar nova a solicitação no banco de dados
-        Solicitation newSolicitation = solicitationService.create(solicitationDTO, user);
+        Solicitation newSolicitation = solicitationService.create(solicitationDTO, user, isAsync);
 
         // Salvar os arquivos em disco
         // Se um arquivo da solicitação dá erro, os demais salvos anteriormente devem ser excluídos
         try {
-            solicitationService.saveFiles(newSolicitation, files, true);
+            if (isAsync) {
+                // Apenas grava os arquivos no staging; validação e finalização ocorrem no pool de processamento
+                solicitationService.stageFiles(newSolicitation, files, user);
+                solicitationProcessingService.submit(newSolicitation.getId());
+
+                return ResponseEntity.accepted()
+                        .location(ServletUriComponentsBuilder.fromCurrentContextPath()
+                                .path("/solicitacoes/{id}/processamento")
+                                .buildAndExpand(newSolicitation.getId())
+                                .toUri())
+                        .body(solicitationService.getProcessingStatus(newSolicitation));
+            }
+
+            solicitationService.saveFiles(newSolicitation, files, true, user);
             return ResponseEntity.status(HttpStatus.CREATED).body(newSolicitation);
         } catch (BadRequestException e) {
             solicitationService.removeRequest(newSolicitation.getId(), false, user);
@@ -320,6 +482,10 @@ public class SolicitationController {
                     content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Não é possível alterar solicitações arquivadas."))),
             @ApiResponse(responseCode = "404", description = "Solicitação não encontrada.",
                     content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Solicitação (ID 000123) não encontrada."))),
+            @ApiResponse(responseCode = "409", description = "A solicitação foi alterada simultaneamente por outro usuário.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "A solicitação foi alterada por outro usuário. Recarregue-a e tente novamente."))),
+            @ApiResponse(responseCode = "503", description = "Arquivos da solicitação ocupados por outra operação.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Os arquivos da solicitação estão sendo alterados por outra operação. Tente novamente em instantes."))),
             @ApiResponse(responseCode = "500", description = "Erro interno.",
                     content = @Content(mediaType = "text/plain"))
     })
@@ -346,13 +512,9 @@ public class SolicitationController {
             // Caso não sejam enviados dados de arquivos digitais, inicializa-se um placeholder vazio
             if (files == null) files = new ArrayList<>();
 
-            // Tenta salvar os arquivos passados pelo usuário
-            // 'isNewRequest == false' indica que é edição de uma solicitação já existente
-            solicitationService.saveFiles(solicitation, files, false);
-
-            // Intancia cópias associadas na database antes de editar solicitação
-            // copyService.instanceCopiesFromRequest(request);
-            Solicitation editedSolicitation = solicitationService.patch(solicitationId, solicitation, user);
+            // Salva os arquivos passados pelo usuário e edita a solicitação em uma única operação
+            // Uma edição rejeitada (e.g. versão antiga) não altera os arquivos existentes
+            Solicitation editedSolicitation = solicitationService.patchWithFiles(solicitationId, solicitation, files, user);
 
             // Retorna solicitação editada
             return ResponseEntity.ok(editedSolicitation);
@@ -369,6 +531,15 @@ public class SolicitationController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .contentType(MediaType.TEXT_PLAIN)
                     .body("Usuário não está autorizado a acessar este recurso.");
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
+        } catch (ServiceUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "2")
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .contentType(MediaType.TEXT_PLAIN)
@@ -390,6 +561,8 @@ public class SolicitationController {
                     content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Não é possível alterar solicitações arquivadas."))),
             @ApiResponse(responseCode = "404", description = "Solicitação não encontrada.",
                     content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Solicitação (ID 000123) não encontrada."))),
+            @ApiResponse(responseCode = "409", description = "A solicitação foi alterada simultaneamente por outro usuário.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "A solicitação foi alterada por outro usuário. Recarregue-a e tente novamente."))),
             @ApiResponse(responseCode = "500", description = "Erro interno.",
                     content = @Content(mediaType = "text/plain"))
     })
@@ -419,6 +592,10 @@ public class SolicitationController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .contentType(MediaType.TEXT_PLAIN)
                     .body("Usuário não está autorizado a acessar este recurso.");
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .contentType(MediaType.TEXT_PLAIN)
@@ -440,6 +617,8 @@ public class SolicitationController {
                     content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Usuário não está autorizado a acessar este recurso."))),
             @ApiResponse(responseCode = "404", description = "Solicitação não encontrada.",
                     content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Solicitação (ID 000123) não encontrada."))),
+            @ApiResponse(responseCode = "409", description = "A solicitação foi alterada simultaneamente por outro usuário.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "A solicitação foi alterada por outro usuário. Recarregue-a e tente novamente."))),
             @ApiResponse(responseCode = "500", description = "Erro interno.",
                     content = @Content(mediaType = "text/plain"))
     })
@@ -468,6 +647,10 @@ public class SolicitationController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .contentType(MediaType.TEXT_PLAIN)
                     .body("Usuário não está autorizado a acessar este recurso.");
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .contentType(MediaType.TEXT_PLAIN)
@@ -489,6 +672,10 @@ public class SolicitationController {
                     content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Usuário não está autorizado a acessar este recurso."))),
             @ApiResponse(responseCode = "404", description = "Solicitação não encontrada.",
                     content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Solicitação (ID 000123) não encontrada."))),
+            @ApiResponse(responseCode = "409", description = "A solicitação foi alterada simultaneamente por outro usuário.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "A solicitação foi alterada por outro usuário. Recarregue-a e tente novamente."))),
+            @ApiResponse(responseCode = "503", description = "Arquivos da solicitação ocupados por outra operação.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Os arquivos da solicitação estão sendo alterados por outra operação. Tente novamente em instantes."))),
             @ApiResponse(responseCode = "500", description = "Erro interno.",
                     content = @Content(mediaType = "text/plain"))
     })
@@ -519,6 +706,15 @@ public class SolicitationController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .contentType(MediaType.TEXT_PLAIN)
                     .body("Usuário não está autorizado a acessar este recurso.");
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
+        } catch (ServiceUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "2")
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .contentType(MediaType.TEXT_PLAIN)
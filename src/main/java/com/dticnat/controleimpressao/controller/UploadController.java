@@ -0,0 +1,264 @@
+package com.dticnat.controleimpressao.controller;
+
+import com.dticnat.controleimpressao.exception.ConflictException;
+import com.dticnat.controleimpressao.exception.ForbiddenException;
+import com.dticnat.controleimpressao.model.UploadSession;
+import com.dticnat.controleimpressao.model.User;
+import com.dticnat.controleimpressao.model.dto.UploadSessionDTO;
+import com.dticnat.controleimpressao.service.UploadService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.apache.coyote.BadRequestException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+@RestController
+@RequestMapping("/envios")
+@Tag(name = "Envios", description = "Operações de envio resumível (em partes) de arquivos")
+public class UploadController {
+
+    @Autowired
+    private UploadService uploadService;
+
+    /**
+     * Cria uma sessão de envio resumível.
+     * O ID retornado deve ser usado para enviar as partes do arquivo e, após finalizado,
+     * informado no campo 'uploadId' da cópia ao criar ou editar uma solicitação.
+     *
+     * @param uploadSessionDTO Dados do arquivo a ser enviado.
+     * @return A sessão criada.
+     */
+    @Operation(summary = "Cria uma sessão de envio resumível")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Sessão criada com sucesso.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = UploadSession.class))),
+            @ApiResponse(responseCode = "400", description = "Arquivo excede o tamanho máximo.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "O arquivo 'arquivo.pdf' excede o tamanho máximo permitido."))),
+            @ApiResponse(responseCode = "500", description = "Erro interno.",
+                    content = @Content(mediaType = "text/plain"))
+    })
+    @PostMapping
+    public ResponseEntity<?> createSession(HttpServletRequest httpRequest,
+                                           @Parameter(description = "Dados do arquivo a ser enviado.") @RequestBody @Valid UploadSessionDTO uploadSessionDTO) {
+        // Recuperar dados do usuário autenticado do request http
+        User user = (User) httpRequest.getAttribute("userPrincipal");
+
+        try {
+            UploadSession session = uploadService.create(uploadSessionDTO, user);
+            return ResponseEntity.created(ServletUriComponentsBuilder.fromCurrentContextPath()
+                            .path("/envios/{id}")
+                            .buildAndExpand(session.getId())
+                            .toUri())
+                    .body(session);
+
+        } catch (BadRequestException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
+        }
+    }
+
+    /**
+     * Consulta o offset atual (bytes já recebidos) de uma sessão de envio.
+     * Usado pelo cliente para retomar um envio interrompido.
+     *
+     * @param uploadId ID da sessão.
+     * @return A sessão com o offset atual.
+     */
+    @Operation(summary = "Consulta o offset atual de uma sessão de envio")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Sessão encontrada.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = UploadSession.class))),
+            @ApiResponse(responseCode = "403", description = "Proibido.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Usuário não está autorizado a acessar este recurso."))),
+            @ApiResponse(responseCode = "404", description = "Sessão não encontrada.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Sessão de envio não encontrada.")))
+    })
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<?> getSession(HttpServletRequest httpRequest,
+                                        @Parameter(description = "ID da sessão de envio.") @PathVariable String uploadId) {
+        // Recuperar dados do usuário autenticado do request http
+        User user = (User) httpRequest.getAttribute("userPrincipal");
+
+        try {
+            UploadSession session = uploadService.getSession(uploadId, user);
+            return ResponseEntity.ok()
+                    .header("Upload-Offset", String.valueOf(session.getReceivedBytes()))
+                    .body(session);
+
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Sessão de envio não encontrada.");
+        } catch (ForbiddenException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Usuário não está autorizado a acessar este recurso.");
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
+        }
+    }
+
+    /**
+     * Envia uma parte (chunk) do arquivo a partir do offset informado.
+     * O corpo da requisição contém os bytes crus da parte (application/octet-stream).
+     *
+     * @param uploadId ID da sessão.
+     * @param offset   Posição do arquivo a partir da qual a parte deve ser escrita.
+     * @return A sessão com o novo offset.
+     */
+    @Operation(summary = "Envia uma parte do arquivo")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Parte recebida com sucesso.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = UploadSession.class))),
+            @ApiResponse(responseCode = "400", description = "Offset inválido ou parte excede o tamanho declarado.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Offset inválido (2048). Bytes já recebidos: 1024."))),
+            @ApiResponse(responseCode = "403", description = "Proibido.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Usuário não está autorizado a acessar este recurso."))),
+            @ApiResponse(responseCode = "404", description = "Sessão não encontrada.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Sessão de envio não encontrada."))),
+            @ApiResponse(responseCode = "409", description = "Sessão já finalizada ou parte sendo recebida simultaneamente.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "O envio já foi finalizado.")))
+    })
+    @PutMapping(value = "/{uploadId}", consumes = {"application/octet-stream"})
+    public ResponseEntity<?> uploadChunk(HttpServletRequest httpRequest,
+                                         @Parameter(description = "ID da sessão de envio.") @PathVariable String uploadId,
+                                         @Parameter(description = "Offset (em bytes) da parte enviada.") @RequestHeader("Upload-Offset") long offset) {
+        // Recuperar dados do usuário autenticado do request http
+        User user = (User) httpRequest.getAttribute("userPrincipal");
+
+        try {
+            // O corpo é lido diretamente do stream da requisição, sem ser materializado em memória
+            UploadSession session = uploadService.writeChunk(uploadId, user, offset, httpRequest.getInputStream());
+            return ResponseEntity.ok()
+                    .header("Upload-Offset", String.valueOf(session.getReceivedBytes()))
+                    .body(session);
+
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Sessão de envio não encontrada.");
+        } catch (BadRequestException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
+        } catch (ForbiddenException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Usuário não está autorizado a acessar este recurso.");
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
+        }
+    }
+
+    /**
+     * Finaliza uma sessão de envio, validando o arquivo recebido.
+     *
+     * @param uploadId ID da sessão.
+     * @return A sessão finalizada.
+     */
+    @Operation(summary = "Finaliza uma sessão de envio")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Envio finalizado e arquivo validado.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = UploadSession.class))),
+            @ApiResponse(responseCode = "400", description = "Envio incompleto ou arquivo corrompido/encriptado.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "O arquivo enviado 'corrupted.pdf' está encriptado ou corrompido."))),
+            @ApiResponse(responseCode = "403", description = "Proibido.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Usuário não está autorizado a acessar este recurso."))),
+            @ApiResponse(responseCode = "404", description = "Sessão não encontrada.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Sessão de envio não encontrada."))),
+            @ApiResponse(responseCode = "409", description = "Parte sendo recebida ou sessão finalizada simultaneamente.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "O envio já foi finalizado.")))
+    })
+    @PostMapping("/{uploadId}/finalizar")
+    public ResponseEntity<?> finalizeSession(HttpServletRequest httpRequest,
+                                             @Parameter(description = "ID da sessão de envio.") @PathVariable String uploadId) {
+        // Recuperar dados do usuário autenticado do request http
+        User user = (User) httpRequest.getAttribute("userPrincipal");
+
+        try {
+            return ResponseEntity.ok(uploadService.finalizeSession(uploadId, user));
+
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Sessão de envio não encontrada.");
+        } catch (BadRequestException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
+        } catch (ForbiddenException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Usuário não está autorizado a acessar este recurso.");
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(e.getMessage());
+        }
+    }
+
+    /**
+     * Cancela uma sessão de envio e descarta os bytes já recebidos.
+     *
+     * @param uploadId ID da sessão.
+     * @return Mensagem de sucesso ou erro.
+     */
+    @Operation(summary = "Cancela uma sessão de envio")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Sessão cancelada com sucesso.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Sessão de envio cancelada com sucesso."))),
+            @ApiResponse(responseCode = "403", description = "Proibido.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Usuário não está autorizado a acessar este recurso."))),
+            @ApiResponse(responseCode = "404", description = "Sessão não encontrada.",
+                    content = @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Sessão de envio não encontrada.")))
+    })
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<?> cancelSession(HttpServletRequest httpRequest,
+                                           @Parameter(description = "ID da sessão de envio.") @PathVariable String uploadId) {
+        // Recuperar dados do usuário autenticado do request http
+        User user = (User) httpRequest.getAttribute("userPrincipal");
+
+        try {
+            uploadService.cancel(uploadId, user);
+            return ResponseEntity.ok("Sessão de envio cancelada com sucesso.");
+
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Sessão de envio não encontrada.");
+        } catch (ForbiddenException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Usuário não está autorizado a acessar este recurso.");
+        }
+    }
+}
@@ -17,6 +17,7 @@ import jakarta.persistence.*;
  * configurações de impressão e metadados sobre sua localização e natureza (digital ou física).
  */
 @Entity
+@Table(indexes = @Index(name = "idx_copy_file_in_disk", columnList = "file_in_disk, solicitation_id"))
 @Data
 @Builder
 @AllArgsConstructor
@@ -24,7 +25,8 @@ import jakarta.persistence.*;
 public class Copy {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "copyIdGenerator")
+    @SequenceGenerator(name = "copyIdGenerator", sequenceName = "copy_seq", allocationSize = 50)
     private Long id;
 
     /**
@@ -46,11 +48,26 @@ public class Copy {
     /**
      * Número de páginas do arquivo.
      * Este campo é obrigatório e deve ser um valor positivo.
+     * Para arquivos digitais, é substituído pelo número real de páginas extraído do PDF no servidor.
      */
     @NotNull(message = "O número de páginas não pode ser nulo.")
     @Positive(message = "O número de páginas deve ser positivo.")
     private Integer pageCount;
 
+    /**
+     * Resumo dos tamanhos de página do arquivo digital, extraído do PDF no servidor.
+     * Persistido para que relatórios e análises de custo não precisem reabrir o arquivo.
+     */
+    @Schema(example = "A4:10, A3:2")
+    private String pageSizes;
+
+    /**
+     * Hash SHA-256 do conteúdo do arquivo digital.
+     * Usado como chave do cache de pré-visualizações, compartilhado entre cópias de mesmo conteúdo.
+     */
+    @JsonIgnore
+    private String contentHash;
+
     /**
      * Configurações de impressão para a cópia.
      * Este campo é obrigatório e contém detalhes sobre as opções de impressão desejadas.
@@ -84,4 +101,11 @@ public class Copy {
      * Observações adicionais sobre a cópia.
      */
     private String notes;
+
+    /**
+     * ID da sessão de envio resumível cujo arquivo deve ser anexado a esta cópia.
+     * Quando informado, o arquivo não é esperado no multipart da requisição.
+     * É limpo assim que o arquivo é movido para o diretório da solicitação.
+     */
+    private String uploadId;
 }
\ No newline at end of file
@@ -17,7 +17,8 @@ import java.time.LocalDateTime;
 public class Event {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "eventIdGenerator")
+    @SequenceGenerator(name = "eventIdGenerator", sequenceName = "event_seq", allocationSize = 50)
     private Long id;
 
     @Embedded
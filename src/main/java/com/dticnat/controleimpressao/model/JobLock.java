@@ -0,0 +1,46 @@
+package com.dticnat.controleimpressao.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidade que representa o lock distribuído de uma tarefa agendada.
+ *
+ * Cada tarefa possui uma linha, identificada pelo seu nome. A instância que detém o lock o mantém
+ * até `lockedUntil` (lease), renovando-o periodicamente enquanto executa; se a instância cair,
+ * o lock expira e outra instância pode assumir a tarefa no próximo ciclo.
+ */
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class JobLock {
+
+    /**
+     * Nome da tarefa agendada.
+     */
+    @Id
+    private String name;
+
+    /**
+     * Identificador da instância que detém o lock.
+     */
+    private String lockedBy;
+
+    /**
+     * Data em que o lock foi adquirido.
+     */
+    private LocalDateTime lockedAt;
+
+    /**
+     * Data de expiração do lock (lease), renovada enquanto a tarefa executa.
+     */
+    private LocalDateTime lockedUntil;
+}
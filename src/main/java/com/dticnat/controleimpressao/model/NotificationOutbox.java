@@ -0,0 +1,73 @@
+package com.dticnat.controleimpressao.model;
+
+import com.dticnat.controleimpressao.model.enums.EventType;
+import com.dticnat.controleimpressao.model.enums.NotificationStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidade que representa uma notificação por email pendente de envio (outbox).
+ *
+ * A notificação é gravada na mesma transação do evento que a originou, então não é perdida se a
+ * aplicação reiniciar antes do envio. O despacho é feito em lotes pelo NotificationDispatcher, que
+ * renderiza o email a partir dos dados aqui registrados e reagenda as falhas com backoff exponencial.
+ *
+ * Há uma notificação por destinatário, para que as notificações de resumo (digest) de um mesmo
+ * destinatário possam ser agrupadas em um único email.
+ */
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_notification_outbox_pending", columnList = "status, next_attempt_at, id"),
+        @Index(name = "idx_notification_outbox_recipient", columnList = "recipient, status")
+})
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class NotificationOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notificationOutboxIdGenerator")
+    @SequenceGenerator(name = "notificationOutboxIdGenerator", sequenceName = "notification_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    private Long solicitationId; // Solicitação notificada (pode já ter sido removida)
+
+    @Enumerated(EnumType.STRING)
+    private EventType eventType; // Tipo do evento notificado
+
+    @Column(length = 512)
+    private String eventContent; // Conteúdo do evento (e.g. comentário)
+
+    @Embedded
+    private User sender; // Usuário que originou o evento
+
+    @Column(length = 320)
+    private String recipient; // Email do destinatário
+
+    @Builder.Default
+    private boolean digest = false; // Se pode ser agrupada com outras notificações do destinatário em um resumo
+
+    private String subject;
+
+    @Enumerated(EnumType.STRING)
+    @Builder.Default
+    private NotificationStatus status = NotificationStatus.PENDING;
+
+    @Builder.Default
+    private int attempts = 0; // Tentativas de envio realizadas
+
+    @Column(length = 512)
+    private String lastError; // Erro da última tentativa
+
+    private LocalDateTime createdAt; // Data do evento (e de enfileiramento)
+
+    private LocalDateTime nextAttemptAt; // Data da próxima tentativa de envio
+
+    private LocalDateTime sentAt;
+}
@@ -0,0 +1,34 @@
+package com.dticnat.controleimpressao.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidade que representa as preferências de notificação de um usuário.
+ * Usuários sem preferências registradas recebem todas as notificações das solicitações em que estão inscritos.
+ */
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class NotificationPreference {
+
+    @Id
+    private String registrationNumber; // Matrícula
+
+    @Builder.Default
+    private boolean emailEnabled = true; // Se o usuário recebe notificações por email
+
+    @Column(length = 512)
+    private String mutedEventTypes; // Tipos de evento silenciados, separados por vírgula
+
+    private LocalDateTime updatedAt;
+}
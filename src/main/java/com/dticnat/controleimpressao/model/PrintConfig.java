@@ -75,7 +75,7 @@ public class PrintConfig {
 
     /**
      * Número total de folhas de papel necessárias para a cópia, calculado com base nas configurações de impressão.
-     * Este campo é calculado e pode não ser definido diretamente pelo usuário.
+     * Este campo é calculado no servidor (ver {@code CopyService.computeSheets}); o valor enviado pelo cliente é ignorado.
      */
     private Integer sheetsTotal;
 }
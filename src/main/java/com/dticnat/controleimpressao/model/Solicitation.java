@@ -1,5 +1,8 @@
 package com.dticnat.controleimpressao.model;
 
+import com.dticnat.controleimpressao.model.enums.EventType;
+import com.dticnat.controleimpressao.model.enums.ProcessingStatus;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -20,6 +23,10 @@ import java.util.List;
  * de arquivos a serem impressas.
  */
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_solicitation_archiving", columnList = "archived, conclusion_date, id"),
+        @Index(name = "idx_solicitation_last_event", columnList = "last_event_at DESC, id DESC")
+})
 @Data
 @Builder
 @AllArgsConstructor
@@ -27,9 +34,19 @@ import java.util.List;
 public class Solicitation {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "solicitationIdGenerator")
+    @SequenceGenerator(name = "solicitationIdGenerator", sequenceName = "solicitation_seq", allocationSize = 50)
     private Long id;
 
+    /**
+     * Versão da solicitação, incrementada a cada alteração, para controle de concorrência otimista.
+     * Alterações baseadas em uma versão desatualizada são rejeitadas como conflito. O valor padrão
+     * da coluna atribui a versão 0 às solicitações existentes.
+     */
+    @Version
+    @Column(columnDefinition = "bigint not null default 0")
+    private Long version;
+
     /**
      * Prazo para conclusão da solicitação em horas.
      * O valor padrão é de 1 hora.
@@ -61,9 +78,45 @@ public class Solicitation {
     @Builder.Default
     private boolean archived = false;
 
+    /**
+     * Status do processamento dos arquivos da solicitação.
+     * Solicitações criadas em modo assíncrono iniciam como 'PROCESSING' e passam para 'READY'
+     * ou 'FAILED' quando os arquivos são validados e finalizados em segundo plano.
+     * Solicitações criadas em modo síncrono (ou anteriores a este campo) são 'READY'/nulas.
+     */
+    @Enumerated(EnumType.STRING)
+    @Builder.Default
+    private ProcessingStatus processingStatus = ProcessingStatus.READY;
+
+    /**
+     * Instância do backend responsável pelo processamento da solicitação e data da última renovação
+     * dessa responsabilidade. Com várias réplicas, apenas a dona processa a solicitação; as demais
+     * só a assumem quando a renovação está atrasada (ver {@code SolicitationProcessingService}).
+     * Não podem ser alterados pelo cliente.
+     */
+    @JsonIgnore
+    private String processingOwner;
+
+    @JsonIgnore
+    private LocalDateTime processingClaimedAt;
+
     @Embedded
     private User user; // Usuário que criou
 
+    /**
+     * Dados do evento mais recente da linha do tempo, mantidos a cada evento registrado, para que
+     * notificações e listagens (e.g. ordenação por atividade recente) não precisem consultar os eventos.
+     * Não podem ser alterados pelo cliente.
+     */
+    private Long lastEventId;
+
+    @Enumerated(EnumType.STRING)
+    private EventType lastEventType;
+
+    private LocalDateTime lastEventAt;
+
+    private String lastEventBy; // Nome do usuário que originou o evento (nulo para eventos do sistema)
+
     /**
      * Número total de páginas a serem impressas na solicitação, calculado com base nas cópias.
      */
@@ -82,7 +135,12 @@ public class Solicitation {
     @OrderBy("id ASC")
     private List<Copy> copies;
 
-    @OneToMany(cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
+    /**
+     * Linha do tempo da solicitação, carregada sob demanda (e.g. na visualização da solicitação).
+     * Listagens, permissões e novos eventos não a consultam: usam as colunas de último evento
+     * e inserem os eventos diretamente (ver {@code EventService.appendEvent}).
+     */
+    @OneToMany(cascade = CascadeType.ALL, orphanRemoval = true)
     @JoinColumn(name = "solicitation_id", referencedColumnName = "id")
     @OrderBy("creationDate DESC")
     private List<Event> timeline; // Linha do Tempo Lista<Evento>
@@ -0,0 +1,42 @@
+package com.dticnat.controleimpressao.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidade que representa a inscrição de um usuário nas notificações de uma solicitação.
+ *
+ * Os usuários são inscritos automaticamente ao criar, comentar ou agir sobre uma solicitação, e podem
+ * se inscrever ou cancelar a inscrição explicitamente. Uma inscrição cancelada é mantida como inativa,
+ * para que novas interações do usuário não o inscrevam novamente.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_subscription_solicitation_user",
+        columnNames = {"solicitation_id", "registration_number"}))
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class Subscription {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "subscriptionIdGenerator")
+    @SequenceGenerator(name = "subscriptionIdGenerator", sequenceName = "subscription_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "solicitation_id")
+    private Long solicitationId;
+
+    @Embedded
+    private User user; // Usuário inscrito (dados da última interação)
+
+    @Builder.Default
+    private boolean active = true; // false se o usuário cancelou a inscrição
+
+    private LocalDateTime createdAt;
+}
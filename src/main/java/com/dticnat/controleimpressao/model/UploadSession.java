@@ -0,0 +1,91 @@
+package com.dticnat.controleimpressao.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Transient;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidade que representa uma sessão de envio (upload) resumível de arquivo.
+ *
+ * O arquivo é enviado em partes (chunks) para um arquivo temporário de staging. Caso a conexão
+ * caia, o cliente consulta o offset atual e continua o envio a partir dele. Após finalizada e
+ * validada, a sessão pode ser anexada a uma {@link Copy}, movendo o arquivo de staging para o
+ * diretório da solicitação sem duplicar os dados.
+ */
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadSession {
+
+    /**
+     * Identificador da sessão (UUID), informado pelo cliente nas requisições de envio.
+     */
+    @Id
+    @Schema(example = "3f0c1a4e-9b7d-4c0e-8a57-2d1e6b0f4c11")
+    private String id;
+
+    /**
+     * Nome original do arquivo sendo enviado.
+     */
+    @Schema(example = "arquivo.pdf")
+    private String fileName;
+
+    /**
+     * Tipo de arquivo declarado pelo cliente, como 'application/pdf'.
+     */
+    @Schema(example = "application/pdf")
+    private String fileType;
+
+    /**
+     * Tamanho total do arquivo em bytes, declarado na criação da sessão.
+     */
+    private Long fileSize;
+
+    /**
+     * Matrícula do usuário que criou a sessão. Apenas ele pode enviar partes e anexá-la.
+     */
+    private String ownerRegistration;
+
+    /**
+     * Timestamp da data e hora em que a sessão foi criada.
+     */
+    private LocalDateTime creationDate;
+
+    /**
+     * Indica se o envio foi concluído e o arquivo validado.
+     */
+    @Builder.Default
+    private boolean finalized = false;
+
+    /**
+     * Número real de páginas do arquivo, extraído na finalização.
+     */
+    private Integer pageCount;
+
+    /**
+     * Resumo dos tamanhos de página do arquivo, extraído na finalização.
+     */
+    private String pageSizes;
+
+    /**
+     * Hash SHA-256 do conteúdo do arquivo, calculado na finalização.
+     */
+    private String contentHash;
+
+    /**
+     * Número de bytes já recebidos (offset atual).
+     * Não é persistido: o tamanho do arquivo de staging é a fonte da verdade.
+     */
+    @Transient
+    @Builder.Default
+    private long receivedBytes = 0;
+}
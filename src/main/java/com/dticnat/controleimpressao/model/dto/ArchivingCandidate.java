@@ -0,0 +1,16 @@
+package com.dticnat.controleimpressao.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Projeção com os dados necessários para arquivar uma solicitação e remover seus arquivos.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ArchivingCandidate {
+    private Long solicitationId;
+    private String registrationNumber; // Matrícula do dono da solicitação
+}
@@ -0,0 +1,23 @@
+package com.dticnat.controleimpressao.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de uma execução do arquivamento de solicitações obsoletas.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ArchivingReport {
+    private int candidates; // Solicitações selecionadas para arquivamento
+    private int archived; // Solicitações arquivadas com sucesso
+    private int failed; // Solicitações arquivadas cujos arquivos continuam no armazenamento ao final da execução
+    private int recovered; // Solicitações com remoção pendente (falha anterior) cujos arquivos foram removidos
+    private int filesDeleted; // Arquivos removidos do armazenamento
+    private long bytesFreed; // Bytes liberados no armazenamento
+    private long durationMillis;
+}
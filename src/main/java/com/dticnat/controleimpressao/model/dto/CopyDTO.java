@@ -34,4 +34,6 @@ public class CopyDTO {
     private Boolean isPhysicalFile = false;
 
     private String notes;
+
+    private String uploadId;
 }
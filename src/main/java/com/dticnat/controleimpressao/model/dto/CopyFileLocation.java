@@ -0,0 +1,19 @@
+package com.dticnat.controleimpressao.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Projeção com os dados necessários para localizar o arquivo de uma cópia no armazenamento.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CopyFileLocation {
+    private Long copyId;
+    private Long solicitationId;
+    private String registrationNumber; // Matrícula do dono da solicitação
+    private String fileName;
+    private Boolean fileInDisk;
+}
@@ -0,0 +1,18 @@
+package com.dticnat.controleimpressao.model.dto;
+
+import com.dticnat.controleimpressao.model.enums.EventType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class NotificationPreferenceDTO {
+    private boolean emailEnabled; // Se o usuário recebe notificações por email
+    private Set<EventType> mutedEventTypes; // Tipos de evento dos quais o usuário não quer ser notificado
+}
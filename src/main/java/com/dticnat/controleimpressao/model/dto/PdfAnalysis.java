@@ -0,0 +1,26 @@
+package com.dticnat.controleimpressao.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado da análise de um arquivo PDF em uma única passada:
+ * validação (tipo, corrupção, encriptação), número real de páginas e tamanhos de página.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PdfAnalysis {
+    private boolean valid;
+    private String mediaType;
+    private int pageCount;
+    private String pageSizes; // Resumo dos tamanhos de página, e.g. "A4:10, A3:2"
+    private String contentHash; // SHA-256 do conteúdo, chave do cache de pré-visualizações
+
+    public static PdfAnalysis invalid() {
+        return PdfAnalysis.builder().valid(false).build();
+    }
+}
@@ -0,0 +1,17 @@
+package com.dticnat.controleimpressao.model.dto;
+
+import com.dticnat.controleimpressao.model.enums.ProcessingStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProcessingStatusDTO {
+    private Long solicitationId;
+    private ProcessingStatus status;
+    private String detail; // Motivo da falha, caso status seja 'FAILED'
+}
@@ -0,0 +1,22 @@
+package com.dticnat.controleimpressao.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de uma reconciliação entre o armazenamento de arquivos e as cópias da base de dados.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReconciliationReport {
+    private int filesScanned; // Arquivos encontrados no armazenamento
+    private int copiesChecked; // Cópias digitais verificadas na base de dados
+    private int markedPresent; // Cópias corrigidas para 'fileInDisk = true'
+    private int markedMissing; // Cópias corrigidas para 'fileInDisk = false'
+    private int quarantined; // Arquivos órfãos movidos para quarentena
+    private long durationMillis;
+}
@@ -0,0 +1,20 @@
+package com.dticnat.controleimpressao.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Projeção de uma cópia com os campos exibidos no relatório.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReportCopy {
+    private Long solicitationId;
+    private String fileName;
+    private Boolean isPhysicalFile;
+    private Integer copyCount;
+    private Integer pageCount;
+    private Integer sheetsTotal;
+}
@@ -0,0 +1,36 @@
+package com.dticnat.controleimpressao.model.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Projeção de uma solicitação com os campos exibidos no relatório.
+ */
+@Data
+@NoArgsConstructor
+public class ReportSolicitation {
+    private Long id;
+    private String commonName; // Nome do dono da solicitação
+    private String registrationNumber; // Matrícula do dono da solicitação
+    private LocalDateTime creationDate;
+    private int deadline;
+    private LocalDateTime conclusionDate;
+    private int totalPageCount;
+    private List<ReportCopy> copies = new ArrayList<>();
+
+    // Construtor usado pela consulta (as cópias são buscadas separadamente)
+    public ReportSolicitation(Long id, String commonName, String registrationNumber, LocalDateTime creationDate,
+                              int deadline, LocalDateTime conclusionDate, int totalPageCount) {
+        this.id = id;
+        this.commonName = commonName;
+        this.registrationNumber = registrationNumber;
+        this.creationDate = creationDate;
+        this.deadline = deadline;
+        this.conclusionDate = conclusionDate;
+        this.totalPageCount = totalPageCount;
+    }
+}
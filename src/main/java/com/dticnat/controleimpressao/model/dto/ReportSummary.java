@@ -0,0 +1,16 @@
+package com.dticnat.controleimpressao.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Totais de um relatório, calculados na base de dados.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReportSummary {
+    private long totalRequests;
+    private long totalPageCount;
+}
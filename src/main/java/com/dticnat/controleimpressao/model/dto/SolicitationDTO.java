@@ -20,7 +20,7 @@ public class SolicitationDTO {
     private int deadline;
 
     @Positive(message = "O número total de páginas deve ser positivo.")
-    private int totalPageCount;
+    private int totalPageCount; // Ignorado: o total é calculado no servidor a partir das cópias
 
     @NotEmpty(message = "Deve haver pelo menos uma cópia na solicitação.")
     private List<CopyDTO> copies;
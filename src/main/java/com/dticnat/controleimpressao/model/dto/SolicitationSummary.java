@@ -0,0 +1,38 @@
+package com.dticnat.controleimpressao.model.dto;
+
+import com.dticnat.controleimpressao.model.Copy;
+import com.dticnat.controleimpressao.model.User;
+import com.dticnat.controleimpressao.model.enums.EventType;
+import com.dticnat.controleimpressao.model.enums.ProcessingStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Solicitação como exibida nas listagens: os mesmos campos da entidade, exceto a linha do tempo.
+ * A atividade mais recente vem das colunas de último evento, sem consultar os eventos.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SolicitationSummary {
+    private Long id;
+    private Long version;
+    private int deadline;
+    private LocalDateTime creationDate;
+    private LocalDateTime conclusionDate;
+    private boolean archived;
+    private ProcessingStatus processingStatus;
+    private User user;
+    private Long lastEventId;
+    private EventType lastEventType;
+    private LocalDateTime lastEventAt;
+    private String lastEventBy;
+    private int totalPageCount;
+    private List<Copy> copies;
+}
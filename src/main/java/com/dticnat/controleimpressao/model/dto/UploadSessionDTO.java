@@ -0,0 +1,26 @@
+package com.dticnat.controleimpressao.model.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadSessionDTO {
+
+    @NotNull(message = "O nome do arquivo não pode ser nulo.")
+    @NotEmpty(message = "O nome do arquivo não pode ser vazio.")
+    private String fileName;
+
+    private String fileType;
+
+    @NotNull(message = "O tamanho do arquivo não pode ser nulo.")
+    @Positive(message = "O tamanho do arquivo deve ser positivo.")
+    private Long fileSize;
+}
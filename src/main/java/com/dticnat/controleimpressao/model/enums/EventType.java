@@ -8,5 +8,7 @@ public enum EventType {
     REQUEST_ARCHIVING, // arquivamento de solicitação
     REQUEST_EDITING, // edição de solicitação
     REQUEST_DELETING,  // deleção da solicitação
-    REQUEST_VIEWING  // visualização de solicitação
+    REQUEST_VIEWING,  // visualização de solicitação
+    REQUEST_PROCESSED, // arquivos da solicitação processados com sucesso (envio assíncrono)
+    REQUEST_PROCESSING_FAILED // falha no processamento dos arquivos da solicitação (envio assíncrono)
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.dticnat.controleimpressao.model.enums;
+
+public enum NotificationStatus {
+    PENDING, // aguardando envio (ou nova tentativa)
+    SENDING, // assumida por uma instância para envio, até 'next_attempt_at'
+    SENT, // enviada com sucesso
+    FAILED // descartada após esgotar as tentativas
+}
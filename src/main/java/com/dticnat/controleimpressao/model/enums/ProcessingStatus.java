@@ -0,0 +1,7 @@
+package com.dticnat.controleimpressao.model.enums;
+
+public enum ProcessingStatus {
+    PROCESSING, // arquivos recebidos e aguardando validação/finalização
+    READY, // arquivos processados e anexados às cópias
+    FAILED // falha na validação ou finalização dos arquivos
+}
@@ -1,10 +1,36 @@
 package com.dticnat.controleimpressao.repository;
 
 import com.dticnat.controleimpressao.model.Copy;
+import com.dticnat.controleimpressao.model.dto.CopyFileLocation;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 
 @Repository
 public interface CopyRepository extends JpaRepository<Copy, Long>, JpaSpecificationExecutor<Copy> {
-}
\ No newline at end of file
+
+    @Query("select new com.dticnat.controleimpressao.model.dto.CopyFileLocation(c.id, s.id, s.user.registrationNumber, c.fileName, c.fileInDisk) " +
+            "from Copy c join Solicitation s on s.id = c.solicitationId " +
+            "where c.id > :lastId and c.isPhysicalFile = false " +
+            "order by c.id")
+    List<CopyFileLocation> findFileLocationsAfter(@Param("lastId") Long lastId, Pageable pageable);
+
+    boolean existsBySolicitationIdAndFileName(Long solicitationId, String fileName);
+
+    @Transactional
+    @Modifying
+    @Query("update Copy c set c.fileInDisk = :fileInDisk where c.id in :ids")
+    int updateFileInDisk(@Param("ids") List<Long> ids, @Param("fileInDisk") boolean fileInDisk);
+
+    @Transactional
+    @Modifying
+    @Query("update Copy c set c.fileInDisk = :fileInDisk where c.solicitationId in :solicitationIds")
+    int updateFileInDiskBySolicitationIds(@Param("solicitationIds") List<Long> solicitationIds, @Param("fileInDisk") boolean fileInDisk);
+}
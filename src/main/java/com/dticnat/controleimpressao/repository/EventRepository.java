@@ -3,6 +3,18 @@ package com.dticnat.controleimpressao.repository;
 import com.dticnat.controleimpressao.model.Event;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+// A tabela de eventos é particionada por 'creation_date': consultas com a data restringem as partições lidas
 public interface EventRepository extends JpaRepository<Event, Long>, JpaSpecificationExecutor<Event> {
+
+    Optional<Event> findByIdAndCreationDate(Long id, LocalDateTime creationDate);
+
+    @Query("select e from Event e where e.solicitationId = :solicitationId and e.creationDate >= :since order by e.creationDate desc")
+    List<Event> findTimeline(@Param("solicitationId") Long solicitationId, @Param("since") LocalDateTime since);
 }
@@ -0,0 +1,40 @@
+package com.dticnat.controleimpressao.repository;
+
+import com.dticnat.controleimpressao.model.JobLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+// As datas usam o relógio do banco de dados, comum a todas as instâncias
+@Repository
+public interface JobLockRepository extends JpaRepository<JobLock, String> {
+
+    // Cria o lock, assume um lock expirado ou readquire um lock próprio mantido pelo tempo mínimo;
+    // retorna 0 se outra instância detém um lock válido
+    @Transactional
+    @Modifying
+    @Query(value = "insert into job_lock (name, locked_by, locked_at, locked_until) " +
+            "values (:name, :owner, localtimestamp, localtimestamp + make_interval(secs => cast(:leaseSeconds as double precision))) " +
+            "on conflict (name) do update set " +
+            "locked_by = excluded.locked_by, locked_at = excluded.locked_at, locked_until = excluded.locked_until " +
+            "where job_lock.locked_until < localtimestamp or job_lock.locked_by = :owner", nativeQuery = true)
+    int tryAcquire(@Param("name") String name, @Param("owner") String owner, @Param("leaseSeconds") long leaseSeconds);
+
+    // Renova o lease; retorna 0 se o lock não pertence mais à instância
+    @Transactional
+    @Modifying
+    @Query(value = "update job_lock set locked_until = localtimestamp + make_interval(secs => cast(:leaseSeconds as double precision)) " +
+            "where name = :name and locked_by = :owner", nativeQuery = true)
+    int extend(@Param("name") String name, @Param("owner") String owner, @Param("leaseSeconds") long leaseSeconds);
+
+    // Libera o lock, mantendo-o até 'locked_at' + o tempo mínimo, se ainda não tiver passado
+    @Transactional
+    @Modifying
+    @Query(value = "update job_lock set locked_until = " +
+            "greatest(localtimestamp, locked_at + make_interval(secs => cast(:minHoldSeconds as double precision))) " +
+            "where name = :name and locked_by = :owner", nativeQuery = true)
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("minHoldSeconds") long minHoldSeconds);
+}
@@ -0,0 +1,34 @@
+package com.dticnat.controleimpressao.repository;
+
+import com.dticnat.controleimpressao.model.NotificationOutbox;
+import com.dticnat.controleimpressao.model.enums.NotificationStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, Long> {
+
+    // Bloqueia um lote de notificações prontas para envio (incluindo as assumidas com a concessão expirada),
+    // ignorando as já bloqueadas por outra instância. Deve ser chamado dentro de uma transação: os bloqueios duram até o commit
+    @Query(value = "select * from notification_outbox " +
+            "where status in ('PENDING', 'SENDING') and next_attempt_at <= localtimestamp " +
+            "order by id limit :limit " +
+            "for update skip locked", nativeQuery = true)
+    List<NotificationOutbox> lockPendingBatch(@Param("limit") int limit);
+
+    // Bloqueia as notificações de resumo pendentes de um destinatário, inclusive as que ainda aguardam a janela,
+    // exceto as que aguardam o backoff de uma tentativa com erro (então uma falha não é reenviada antes do prazo).
+    // Deve ser chamado dentro de uma transação: os bloqueios duram até o commit
+    @Query(value = "select * from notification_outbox " +
+            "where recipient = :recipient and status = 'PENDING' and digest = true " +
+            "and (attempts = 0 or next_attempt_at <= localtimestamp) " +
+            "order by id " +
+            "for update skip locked", nativeQuery = true)
+    List<NotificationOutbox> lockPendingDigest(@Param("recipient") String recipient);
+
+    long countByStatus(NotificationStatus status);
+}
@@ -0,0 +1,9 @@
+package com.dticnat.controleimpressao.repository;
+
+import com.dticnat.controleimpressao.model.NotificationPreference;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface NotificationPreferenceRepository extends JpaRepository<NotificationPreference, String> {
+}
@@ -1,10 +1,74 @@
 package com.dticnat.controleimpressao.repository;
 
 import com.dticnat.controleimpressao.model.Solicitation;
+import com.dticnat.controleimpressao.model.dto.ArchivingCandidate;
+import com.dticnat.controleimpressao.model.enums.EventType;
+import com.dticnat.controleimpressao.model.enums.ProcessingStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 @Repository
 public interface SolicitationRepository extends JpaRepository<Solicitation, Long>, JpaSpecificationExecutor<Solicitation> {
-}
\ No newline at end of file
+
+    // Atualiza apenas se a versão não mudou desde a leitura; retorna 0 em caso de conflito
+    @Transactional
+    @Modifying
+    @Query("update Solicitation s set s.conclusionDate = :conclusionDate, s.version = s.version + 1 " +
+            "where s.id = :id and s.version = :version")
+    int updateConclusionDate(@Param("id") Long id, @Param("conclusionDate") LocalDateTime conclusionDate, @Param("version") Long version);
+
+    @Transactional
+    @Modifying
+    @Query("update Solicitation s set s.processingStatus = :status, s.version = s.version + 1 where s.id = :id")
+    int updateProcessingStatus(@Param("id") Long id, @Param("status") ProcessingStatus status);
+
+    // Não incrementa a versão: o total é derivado das cópias e recalculado pelo servidor em toda edição
+    @Transactional
+    @Modifying
+    @Query("update Solicitation s set s.totalPageCount = :totalPageCount where s.id = :id")
+    int updateTotalPageCount(@Param("id") Long id, @Param("totalPageCount") int totalPageCount);
+
+    // Registra o evento mais recente; ignora eventos mais antigos que o já registrado (e.g. gravações concorrentes).
+    // Incrementa a versão, para que uma edição baseada na linha do tempo anterior seja detectada como conflito
+    @Transactional
+    @Modifying
+    @Query("update Solicitation s set s.lastEventId = :eventId, s.lastEventType = :type, s.lastEventAt = :at, s.lastEventBy = :by, " +
+            "s.version = s.version + 1 " +
+            "where s.id = :id and (s.lastEventAt is null or s.lastEventAt <= :at)")
+    int updateLastEvent(@Param("id") Long id,
+                        @Param("eventId") Long eventId,
+                        @Param("type") EventType type,
+                        @Param("at") LocalDateTime at,
+                        @Param("by") String by);
+
+    // Registra o ID do evento de criação; não incrementa a versão, pois a solicitação acabou de ser criada
+    @Transactional
+    @Modifying
+    @Query("update Solicitation s set s.lastEventId = :eventId where s.id = :id and s.lastEventId is null")
+    int initLastEventId(@Param("id") Long id, @Param("eventId") Long eventId);
+
+    // Usa o índice 'idx_solicitation_archiving' (archived, conclusion_date, id)
+    @Query("select new com.dticnat.controleimpressao.model.dto.ArchivingCandidate(s.id, s.user.registrationNumber) " +
+            "from Solicitation s " +
+            "where s.archived = false and s.conclusionDate < :cutoff and s.id > :lastId " +
+            "order by s.id")
+    List<ArchivingCandidate> findArchivingCandidates(@Param("cutoff") LocalDateTime cutoff, @Param("lastId") Long lastId, Pageable pageable);
+
+    // Solicitações arquivadas cujos arquivos ainda não foram removidos (e.g. falha na remoção em uma execução anterior).
+    // Usa o índice 'idx_copy_file_in_disk' (file_in_disk, solicitation_id)
+    @Query("select new com.dticnat.controleimpressao.model.dto.ArchivingCandidate(s.id, s.user.registrationNumber) " +
+            "from Solicitation s " +
+            "where s.archived = true and s.id > :lastId " +
+            "and exists (select c.id from Copy c where c.solicitationId = s.id and c.fileInDisk = true) " +
+            "order by s.id")
+    List<ArchivingCandidate> findArchivedWithFilesInDisk(@Param("lastId") Long lastId, Pageable pageable);
+}
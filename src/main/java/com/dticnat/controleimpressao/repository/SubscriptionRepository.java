@@ -0,0 +1,61 @@
+package com.dticnat.controleimpressao.repository;
+
+import com.dticnat.controleimpressao.model.Subscription;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SubscriptionRepository extends JpaRepository<Subscription, Long> {
+
+    // Cria a inscrição ou atualiza os dados do usuário; uma inscrição cancelada só é reativada se 'reactivate' for true.
+    // Idempotente e seguro sob concorrência (e.g. dois comentários simultâneos do mesmo usuário)
+    @Transactional
+    @Modifying
+    @Query(value = "insert into subscription (id, solicitation_id, registration_number, common_name, email, role, active, created_at) " +
+            "values (nextval('subscription_seq'), :solicitationId, :registrationNumber, :commonName, :email, :role, true, localtimestamp) " +
+            "on conflict (solicitation_id, registration_number) do update set " +
+            "common_name = excluded.common_name, email = excluded.email, role = excluded.role, " +
+            "active = subscription.active or :reactivate", nativeQuery = true)
+    int upsert(@Param("solicitationId") Long solicitationId,
+               @Param("registrationNumber") String registrationNumber,
+               @Param("commonName") String commonName,
+               @Param("email") String email,
+               @Param("role") String role,
+               @Param("reactivate") boolean reactivate);
+
+    @Transactional
+    @Modifying
+    @Query("update Subscription s set s.active = false " +
+            "where s.solicitationId = :solicitationId and s.user.registrationNumber = :registrationNumber")
+    int deactivate(@Param("solicitationId") Long solicitationId, @Param("registrationNumber") String registrationNumber);
+
+    // Inscrições ativas de uma solicitação cujos usuários aceitam notificações por email do tipo de evento informado
+    @Query(value = "select s.* from subscription s " +
+            "left join notification_preference p on p.registration_number = s.registration_number " +
+            "where s.solicitation_id = :solicitationId and s.active = true " +
+            "and (p.registration_number is null or (p.email_enabled = true " +
+            "and (p.muted_event_types is null or not (:eventType = any(string_to_array(p.muted_event_types, ','))))))",
+            nativeQuery = true)
+    List<Subscription> findNotifiable(@Param("solicitationId") Long solicitationId, @Param("eventType") String eventType);
+
+    // Como findNotifiable, para várias solicitações em uma única consulta
+    @Query(value = "select s.* from subscription s " +
+            "left join notification_preference p on p.registration_number = s.registration_number " +
+            "where s.solicitation_id in (:solicitationIds) and s.active = true " +
+            "and (p.registration_number is null or (p.email_enabled = true " +
+            "and (p.muted_event_types is null or not (:eventType = any(string_to_array(p.muted_event_types, ','))))))",
+            nativeQuery = true)
+    List<Subscription> findAllNotifiable(@Param("solicitationIds") Collection<Long> solicitationIds, @Param("eventType") String eventType);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Subscription s where s.solicitationId = :solicitationId")
+    int deleteBySolicitationId(@Param("solicitationId") Long solicitationId);
+}
@@ -0,0 +1,24 @@
+package com.dticnat.controleimpressao.repository;
+
+import com.dticnat.controleimpressao.model.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    // Sessões criadas antes do corte, exceto as de cópias de solicitações ainda em processamento
+    @Query("select u from UploadSession u where u.creationDate < :cutoff " +
+            "and not exists (select c.id from Copy c, Solicitation s " +
+            "where c.uploadId = u.id and s.id = c.solicitationId " +
+            "and s.processingStatus = com.dticnat.controleimpressao.model.enums.ProcessingStatus.PROCESSING)")
+    List<UploadSession> findExpired(@Param("cutoff") LocalDateTime cutoff);
+
+    // Consulta sempre a base de dados, mesmo com a sessão já carregada no contexto de persistência
+    boolean existsByIdAndFinalizedTrue(String id);
+}
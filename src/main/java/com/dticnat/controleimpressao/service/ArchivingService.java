@@ -0,0 +1,248 @@
+package com.dticnat.controleimpressao.service;
+
+import com.dticnat.controleimpressao.model.Event;
+import com.dticnat.controleimpressao.model.User;
+import com.dticnat.controleimpressao.model.dto.ArchivingCandidate;
+import com.dticnat.controleimpressao.model.dto.ArchivingReport;
+import com.dticnat.controleimpressao.model.enums.EventType;
+import com.dticnat.controleimpressao.model.enums.Role;
+import com.dticnat.controleimpressao.repository.CopyRepository;
+import com.dticnat.controleimpressao.repository.EventRepository;
+import com.dticnat.controleimpressao.repository.SolicitationRepository;
+import com.dticnat.controleimpressao.storage.DeletedFiles;
+import com.dticnat.controleimpressao.storage.FileStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+/**
+ * Serviço de arquivamento de solicitações obsoletas.
+ *
+ * Apenas as candidatas (não arquivadas e concluídas antes do corte) são consultadas, usando o índice
+ * (archived, conclusion_date, id), em lotes paginados por ID (keyset). Em cada lote, as solicitações são
+ * primeiro reivindicadas em uma única transação com operações em conjunto: um UPDATE das solicitações que
+ * confirma as condições de arquivamento, uma inserção em lote (JDBC batch) dos eventos de arquivamento
+ * e a atualização em lote do último evento das solicitações, junto das notificações aos donos na fila (outbox).
+ * Somente então os arquivos das solicitações reivindicadas são removidos em paralelo no pool limitado
+ * 'archivingExecutor' (`arquivos.cleanup-parallelism`), sob o lock de cada solicitação
+ * (ver {@link SolicitationLockService}), e as suas cópias são marcadas como fora do armazenamento.
+ * Assim, uma solicitação reaberta após a consulta de candidatas nunca tem os arquivos removidos.
+ * Solicitações arquivadas cujos arquivos não puderam ser removidos (cópias ainda com 'file_in_disk = true')
+ * são selecionadas novamente ao final de cada execução, até que a remoção tenha sucesso.
+ */
+@Service
+public class ArchivingService {
+
+    private static final String CLAIM_SQL = "update solicitation set archived = true, version = version + 1 " +
+            "where id in (:ids) and archived = false and conclusion_date < :cutoff " +
+            "returning id";
+
+    private static final String LAST_EVENT_SQL = "update solicitation set " +
+            "last_event_id = :eventId, last_event_type = :type, last_event_at = :at, last_event_by = null, version = version + 1 " +
+            "where id = :id and (last_event_at is null or last_event_at <= :at)";
+
+    @Value("${arquivos.cleanup-rate-hours}")
+    private Long CLEANUP_RATE_HOURS;
+
+    @Value("${arquivos.cleanup-chunk-size}")
+    private int CHUNK_SIZE;
+
+    @Autowired
+    private SolicitationRepository solicitationRepository;
+
+    @Autowired
+    private CopyRepository copyRepository;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private FileStore fileStore;
+
+    @Autowired
+    private SolicitationLockService solicitationLockService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    @Qualifier("archivingExecutor")
+    private TaskExecutor archivingExecutor;
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchivingService.class);
+
+    /**
+     * Arquiva as solicitações fechadas que já passaram do período de obsolescência.
+     * Este é um metodo agendado em ScheduledTasks, cronometrado pela variável de ambiente FILE_CLEANUP_FR.
+     * Cada solicitação obsoleta é marcada como arquivada, com um evento de arquivamento na linha do tempo
+     * e notificação ao dono; em seguida, os arquivos associados são removidos do armazenamento e as cópias
+     * são marcadas como 'fileInDisk = false'.
+     *
+     * @return O relatório da execução (candidatas, arquivadas, arquivos e bytes removidos, duração).
+     */
+    public ArchivingReport archiveStaleSolicitations() {
+        long start = System.nanoTime();
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(CLEANUP_RATE_HOURS);
+        ArchivingReport report = new ArchivingReport();
+        long lastId = 0L;
+        List<ArchivingCandidate> candidates;
+
+        do {
+            candidates = solicitationRepository.findArchivingCandidates(cutoff, lastId, PageRequest.of(0, CHUNK_SIZE));
+            if (candidates.isEmpty()) break;
+            lastId = candidates.get(candidates.size() - 1).getSolicitationId();
+            report.setCandidates(report.getCandidates() + candidates.size());
+
+            // 1. Reivindicação das solicitações na base de dados, em uma transação por lote
+            List<Long> candidateIds = candidates.stream().map(ArchivingCandidate::getSolicitationId).toList();
+            Map<Long, String> owners = candidates.stream()
+                    .collect(Collectors.toMap(ArchivingCandidate::getSolicitationId, ArchivingCandidate::getRegistrationNumber));
+            List<Long> archivedIds = transactionTemplate.execute(status -> archive(candidateIds, owners, cutoff));
+            if (archivedIds == null || archivedIds.isEmpty()) continue;
+            report.setArchived(report.getArchived() + archivedIds.size());
+
+            // 2. Remoção dos arquivos em paralelo, apenas das solicitações reivindicadas
+            List<ArchivingCandidate> claimed = candidates.stream()
+                    .filter(candidate -> archivedIds.contains(candidate.getSolicitationId()))
+                    .toList();
+            // As que falharem continuam com as cópias marcadas no armazenamento e são retomadas abaixo
+            List<Long> removedIds = deleteFiles(claimed, report);
+            if (!removedIds.isEmpty()) copyRepository.updateFileInDiskBySolicitationIds(removedIds, false);
+
+        } while (candidates.size() == CHUNK_SIZE);
+
+        // 3. Remoções pendentes de solicitações já arquivadas (falhas nesta ou em execuções anteriores)
+        retryPendingDeletes(report);
+
+        report.setDurationMillis((System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    // Remove os arquivos das solicitações arquivadas cujas cópias ainda estão marcadas no armazenamento.
+    // As que falharem novamente continuam marcadas e são selecionadas na próxima execução
+    private void retryPendingDeletes(ArchivingReport report) {
+        long lastId = 0L;
+        List<ArchivingCandidate> pending;
+
+        do {
+            pending = solicitationRepository.findArchivedWithFilesInDisk(lastId, PageRequest.of(0, CHUNK_SIZE));
+            if (pending.isEmpty()) break;
+            lastId = pending.get(pending.size() - 1).getSolicitationId();
+
+            List<Long> removedIds = deleteFiles(pending, report);
+            if (!removedIds.isEmpty()) copyRepository.updateFileInDiskBySolicitationIds(removedIds, false);
+
+            report.setRecovered(report.getRecovered() + removedIds.size());
+            report.setFailed(report.getFailed() + pending.size() - removedIds.size());
+        } while (pending.size() == CHUNK_SIZE);
+    }
+
+    // Remove os arquivos das candidatas no pool de arquivamento e retorna os IDs removidos com sucesso
+    private List<Long> deleteFiles(List<ArchivingCandidate> candidates, ArchivingReport report) {
+        List<CompletableFuture<DeletedFiles>> tasks = candidates.stream()
+                .map(candidate -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        // Sob o lock da solicitação, para não intercalar com edições e remoções dos mesmos arquivos
+                        return solicitationLockService.callLocked(candidate.getSolicitationId(), "arquivar",
+                                () -> fileStore.deletePrefix(FileStore.key(candidate.getRegistrationNumber(), candidate.getSolicitationId())));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, archivingExecutor))
+                .toList();
+
+        List<Long> removedIds = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            Long id = candidates.get(i).getSolicitationId();
+            try {
+                DeletedFiles deleted = tasks.get(i).join();
+                report.setFilesDeleted(report.getFilesDeleted() + deleted.getCount());
+                report.setBytesFreed(report.getBytesFreed() + deleted.getBytes());
+                removedIds.add(id);
+            } catch (CompletionException e) {
+                // A solicitação já está arquivada: as cópias continuam marcadas no armazenamento, com os arquivos
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                logger.error("Falha ao remover arquivos da solicitação ID {}: {}", id, cause.getMessage());
+            }
+        }
+        return removedIds;
+    }
+
+    /**
+     * Arquiva (reivindica) as solicitações informadas com operações em conjunto, antes da remoção dos arquivos.
+     * O UPDATE confirma novamente as condições de arquivamento, já que uma solicitação pode ter sido
+     * reaberta ou arquivada (e.g. por outra execução) desde a consulta de candidatas; como ele incrementa
+     * a versão, uma reabertura concorrente falha e, ao ser repetida, encontra a solicitação arquivada.
+     *
+     * @param owners Matrícula do dono de cada solicitação, para as notificações.
+     * @return Os IDs das solicitações efetivamente arquivadas.
+     */
+    private List<Long> archive(List<Long> ids, Map<Long, String> owners, LocalDateTime cutoff) {
+        List<Long> archivedIds = namedParameterJdbcTemplate.queryForList(CLAIM_SQL,
+                new MapSqlParameterSource()
+                        .addValue("ids", ids)
+                        .addValue("cutoff", Timestamp.valueOf(cutoff)),
+                Long.class);
+        if (archivedIds.isEmpty()) return archivedIds;
+
+        // Eventos de arquivamento do usuário do sistema; com IDs de sequência, o Hibernate os insere em lotes JDBC
+        User system = systemUser();
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, Event> events = eventRepository.saveAll(archivedIds.stream()
+                        .map(id -> Event.builder()
+                                .solicitationId(id)
+                                .user(system)
+                                .type(EventType.REQUEST_ARCHIVING)
+                                .creationDate(now)
+                                .build())
+                        .toList())
+                .stream()
+                .collect(Collectors.toMap(Event::getSolicitationId, event -> event));
+
+        // Último evento das solicitações arquivadas, em um único lote JDBC
+        namedParameterJdbcTemplate.batchUpdate(LAST_EVENT_SQL, events.values().stream()
+                .map(event -> new MapSqlParameterSource()
+                        .addValue("id", event.getSolicitationId())
+                        .addValue("eventId", event.getId())
+                        .addValue("type", event.getType().name())
+                        .addValue("at", Timestamp.valueOf(event.getCreationDate())))
+                .toArray(MapSqlParameterSource[]::new));
+
+        // Notificações enfileiradas na mesma transação: só são enviadas se o arquivamento for confirmado.
+        // Os donos vêm da consulta de candidatas, sem carregar as solicitações
+        eventService.sendSystemNotifications(events, owners);
+
+        return archivedIds;
+    }
+
+    private User systemUser() {
+        return User.builder()
+                .role(Role.SYSTEM)
+                .build();
+    }
+}
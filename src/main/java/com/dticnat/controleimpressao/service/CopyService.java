@@ -1,19 +1,23 @@
 package com.dticnat.controleimpressao.service;
 
 import com.dticnat.controleimpressao.model.Copy;
+import com.dticnat.controleimpressao.model.PrintConfig;
 import com.dticnat.controleimpressao.model.Solicitation;
 import com.dticnat.controleimpressao.model.dto.CopyDTO;
+import com.dticnat.controleimpressao.model.dto.PdfAnalysis;
 import com.dticnat.controleimpressao.repository.CopyRepository;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import org.apache.coyote.BadRequestException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Optional;
 
@@ -49,16 +53,22 @@ public class CopyService {
      */
     public Copy create(CopyDTO copyDTO, Solicitation solicitation) {
 
+        // O número de folhas é sempre calculado no servidor
+        // Para arquivos digitais, é recalculado com o número real de páginas após a análise do PDF
+        PrintConfig printConfig = copyDTO.getPrintConfig();
+        printConfig.setSheetsTotal(computeSheets(printConfig, copyDTO.getPageCount()));
+
         return Copy
                 .builder()
                 .solicitationId(solicitation.getId())
                 .fileName(copyDTO.getFileName())
                 .fileType(copyDTO.getFileType())
                 .pageCount(copyDTO.getPageCount())
-                .printConfig(copyDTO.getPrintConfig())
+                .printConfig(printConfig)
                 .fileInDisk(!copyDTO.getIsPhysicalFile())
                 .isPhysicalFile(copyDTO.getIsPhysicalFile())
                 .notes(copyDTO.getNotes())
+                .uploadId(copyDTO.getUploadId())
                 .build();
     }
 
@@ -130,21 +140,111 @@ public class CopyService {
     }
 
     /**
-     * Atualiza o status do arquivo em disco ('fileInDisk') de uma cópia previamente salva.
+     * Atualiza o status do arquivo em disco ('fileInDisk') de cópias previamente salvas.
      *
-     * Este metodo busca uma cópia pelo seu ID e atualiza a flag 'fileInDisk' com o novo status fornecido.
-     * É utilizado, por exemplo, durante a tarefa de deleção de arquivos de uma solicitação obsoleta.
+     * Este metodo atualiza a flag 'fileInDisk' de todas as cópias informadas em uma única operação
+     * na base de dados, sem carregá-las. É utilizado, por exemplo, após a remoção dos arquivos de uma solicitação.
      *
-     * @param copyId O ID da cópia a ser atualizada.
-     * @param status O novo status do arquivo em disco (true para disponível, false para não disponível).
+     * @param copyIds Os IDs das cópias a serem atualizadas.
+     * @param status  O novo status do arquivo em disco (true para disponível, false para não disponível).
      */
-    public void updateFileStatus(Long copyId, boolean status) {
-        Optional<Copy> optCopy = findById(copyId);
+    public void updateFileStatus(List<Long> copyIds, boolean status) {
+        if (copyIds.isEmpty()) return;
+        copyRepository.updateFileInDisk(copyIds, status);
+    }
 
-        if(optCopy.isEmpty()) return; // Se a cópia não existe, não há nada a fazer
+    /**
+     * Aplica a uma cópia o resultado da análise do seu arquivo PDF.
+     * O número de páginas informado pelo cliente é substituído pelo real, e o número de folhas é recalculado.
+     *
+     * @param copy      A cópia a ser atualizada.
+     * @param pageCount Número real de páginas do arquivo.
+     * @param pageSizes Resumo dos tamanhos de página do arquivo.
+     * @param contentHash Hash do conteúdo do arquivo.
+     * @throws BadRequestException Se o intervalo de páginas da cópia não selecionar nenhuma página do arquivo.
+     */
+    public void applyAnalysis(Copy copy, int pageCount, String pageSizes, String contentHash) throws BadRequestException {
+        if (countSelectedPages(copy.getPrintConfig(), pageCount) == 0)
+            throw new BadRequestException("O intervalo de páginas '" + copy.getPrintConfig().getPageIntervals() + "' não corresponde a nenhuma página do arquivo '" + copy.getFileName() + "' (" + pageCount + " páginas).");
+
+        copy.setPageCount(pageCount);
+        copy.setPageSizes(pageSizes);
+        copy.setContentHash(contentHash);
+        copy.getPrintConfig().setSheetsTotal(computeSheets(copy.getPrintConfig(), pageCount));
+    }
 
-        Copy copy = optCopy.get();
-        copy.setFileInDisk(status);
-        copyRepository.save(copy);
+    /**
+     * Sobrecarga de {@link #applyAnalysis(Copy, int, String, String)} para o resultado de {@link FileValidationService}.
+     */
+    public void applyAnalysis(Copy copy, PdfAnalysis analysis) throws BadRequestException {
+        applyAnalysis(copy, analysis.getPageCount(), analysis.getPageSizes(), analysis.getContentHash());
+    }
+
+    /**
+     * Conta as páginas selecionadas para impressão de um arquivo.
+     * Para seleção "Personalizado", os intervalos (e.g. "1-11, 18") são limitados ao número de páginas
+     * do arquivo e páginas repetidas são contadas uma única vez.
+     *
+     * @param printConfig Configurações de impressão da cópia.
+     * @param pageCount   Número de páginas do arquivo.
+     * @return O número de páginas selecionadas.
+     */
+    public int countSelectedPages(PrintConfig printConfig, Integer pageCount) {
+        if (pageCount == null || pageCount <= 0) return 0;
+
+        String intervals = printConfig.getPageIntervals();
+        if (!"Personalizado".equals(printConfig.getPages()) || intervals == null || intervals.isBlank())
+            return pageCount;
+
+        BitSet selected = new BitSet(pageCount + 1);
+        for (String interval : intervals.split(",")) {
+            String[] bounds = interval.trim().split("-");
+            int start = Integer.parseInt(bounds[0].trim());
+            int end = bounds.length > 1 ? Integer.parseInt(bounds[1].trim()) : start;
+
+            // Limita o intervalo às páginas existentes no arquivo
+            start = Math.max(start, 1);
+            end = Math.min(end, pageCount);
+            if (start <= end) selected.set(start, end + 1);
+        }
+
+        return selected.cardinality();
+    }
+
+    /**
+     * Calcula o número total de folhas de papel necessárias para uma cópia,
+     * considerando páginas selecionadas, páginas por folha, frente e verso e número de cópias.
+     *
+     * @param printConfig Configurações de impressão da cópia.
+     * @param pageCount   Número de páginas do arquivo.
+     * @return O número total de folhas.
+     */
+    public int computeSheets(PrintConfig printConfig, Integer pageCount) {
+        int selectedPages = countSelectedPages(printConfig, pageCount);
+        int pagesPerSheet = printConfig.getPagesPerSheet() != null ? printConfig.getPagesPerSheet() : 1;
+        int copyCount = printConfig.getCopyCount() != null ? printConfig.getCopyCount() : 1;
+
+        // Cada face de folha comporta 'pagesPerSheet' páginas
+        int sides = Math.ceilDiv(selectedPages, pagesPerSheet);
+        int sheetsPerCopy = Boolean.TRUE.equals(printConfig.getFrontAndBack()) ? Math.ceilDiv(sides, 2) : sides;
+
+        return sheetsPerCopy * copyCount;
+    }
+
+    /**
+     * Calcula o número total de páginas a serem impressas para um conjunto de cópias:
+     * a soma das páginas selecionadas de cada cópia multiplicadas pelo seu número de cópias.
+     *
+     * @param copies As cópias da solicitação.
+     * @return O número total de páginas.
+     */
+    public int computeTotalPageCount(List<Copy> copies) {
+        return copies.stream()
+                .mapToInt(copy -> {
+                    PrintConfig printConfig = copy.getPrintConfig();
+                    int copyCount = printConfig.getCopyCount() != null ? printConfig.getCopyCount() : 1;
+                    return countSelectedPages(printConfig, copy.getPageCount()) * copyCount;
+                })
+                .sum();
     }
-}
\ No newline at end of file
+}
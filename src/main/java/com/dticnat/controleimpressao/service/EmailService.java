@@ -3,24 +3,39 @@ package com.dticnat.controleimpressao.service;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+
 @Service
 public class EmailService {
     @Autowired
     private JavaMailSender emailSender;
 
+    // Conexões SMTP reutilizadas entre envios
+    @Autowired
+    private SmtpTransportPool smtpTransportPool;
+
     public void sendEmail(String[] toAddresses, String subject, String text) throws MessagingException {
+        sendEmail(toAddresses, subject, text, Map.of());
+    }
+
+    // Envia um email HTML com imagens inline, referenciadas no HTML por 'cid:{identificador}'
+    public void sendEmail(String[] toAddresses, String subject, String text, Map<String, Resource> inlineImages) throws MessagingException {
         MimeMessage message = emailSender.createMimeMessage();
         MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
 
         helper.setTo(toAddresses);
         helper.setSubject(subject);
         helper.setText(text, true);
+        for (Map.Entry<String, Resource> image : inlineImages.entrySet()) {
+            helper.addInline(image.getKey(), image.getValue(), "image/png");
+        }
 
-        emailSender.send(message);
+        smtpTransportPool.send(message);
     }
 
     public void sendEmail(String toAddress, String subject, String text) throws MessagingException {
@@ -0,0 +1,341 @@
+package com.dticnat.controleimpressao.service;
+
+import com.dticnat.controleimpressao.storage.FileStore;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Particionamento mensal da tabela de eventos por data de criação (PostgreSQL, RANGE em 'creation_date').
+ *
+ * Na primeira inicialização, após a atualização do esquema pelo Hibernate, a tabela comum 'event' é
+ * convertida em tabela particionada, tornando-se a sua partição padrão ('event_default'). Em seguida, os
+ * eventos da partição padrão são movidos, um mês por transação, para as partições mensais ('event_pAAAA_MM'),
+ * desde o mês do evento mais antigo; cada mês continua visível durante a migração (na partição padrão ou na
+ * mensal). Uma migração interrompida é retomada na próxima inicialização, e a partição padrão volta a ficar
+ * vazia. A tarefa agendada cria as partições dos próximos meses
+ * (`eventos.particoes.meses-antecipados`) e, se `eventos.particoes.arquivamento` estiver habilitado,
+ * retira da tabela as partições mais antigas que `eventos.particoes.retencao-meses` cujas solicitações
+ * estão todas arquivadas: 'tablespace' as desanexa e move para `eventos.particoes.tablespace-arquivo`;
+ * 'export' as exporta em CSV compactado para o armazenamento ('.archive/event/') e as remove.
+ * Eventos retirados deixam de aparecer na linha do tempo das solicitações arquivadas.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class EventPartitionService {
+
+    private static final String PARENT_TABLE = "event";
+    private static final String DEFAULT_PARTITION = "event_default";
+    private static final String ARCHIVE_PREFIX = ".archive/event";
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+
+    @Value("${eventos.particoes.meses-antecipados}")
+    private int MONTHS_AHEAD;
+
+    @Value("${eventos.particoes.retencao-meses}")
+    private int RETENTION_MONTHS;
+
+    @Value("${eventos.particoes.arquivamento}")
+    private String ARCHIVING_MODE;
+
+    @Value("${eventos.particoes.tablespace-arquivo}")
+    private String ARCHIVE_TABLESPACE;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private FileStore fileStore;
+
+    private static final Logger logger = LoggerFactory.getLogger(EventPartitionService.class);
+
+    /**
+     * Converte a tabela de eventos em tabela particionada, se ainda não for, move os eventos da partição
+     * padrão para as partições mensais e garante as partições dos próximos meses.
+     * Idempotente; com várias instâncias, cada etapa é serializada por um advisory lock.
+     */
+    @PostConstruct
+    public void migrate() {
+        transactionTemplate.executeWithoutResult(status -> {
+            lockPartitioning();
+
+            List<String> kind = jdbcTemplate.queryForList(
+                    "select c.relkind::text from pg_class c where c.oid = to_regclass(?)", String.class, PARENT_TABLE);
+            if (kind.isEmpty() || !kind.get(0).equals("r")) return; // Inexistente ou já particionada
+
+            convertToPartitioned();
+        });
+
+        if (isPartitioned()) {
+            splitDefaultPartition();
+            createPartitions();
+        }
+    }
+
+    /**
+     * Cria as partições do mês corrente e dos próximos `eventos.particoes.meses-antecipados` meses.
+     * Eventos do mês que estejam na partição padrão são movidos para a nova partição.
+     *
+     * @return O número de partições criadas.
+     */
+    public int createPartitions() {
+        int created = 0;
+        YearMonth current = YearMonth.now();
+
+        for (int i = 0; i <= MONTHS_AHEAD; i++) {
+            YearMonth month = current.plusMonths(i);
+            if (exists(partitionName(month))) continue;
+            if (createPartition(month) >= 0) created++;
+        }
+        return created;
+    }
+
+    /**
+     * Retira da tabela de eventos as partições antigas cujas solicitações estão todas arquivadas,
+     * conforme `eventos.particoes.arquivamento` ('none', 'tablespace' ou 'export').
+     *
+     * @return O número de partições retiradas.
+     */
+    public int archivePartitions() {
+        if ("none".equalsIgnoreCase(ARCHIVING_MODE)) return 0;
+
+        LocalDateTime cutoff = YearMonth.now().minusMonths(RETENTION_MONTHS).atDay(1).atStartOfDay();
+        int archived = 0;
+
+        for (Map<String, Object> partition : jdbcTemplate.queryForList(
+                "select c.relname::text as name, pg_get_expr(c.relpartbound, c.oid) as bound " +
+                        "from pg_inherits i join pg_class c on c.oid = i.inhrelid " +
+                        "where i.inhparent = to_regclass(?)", PARENT_TABLE)) {
+            String name = (String) partition.get("name");
+            LocalDateTime upperBound = upperBound((String) partition.get("bound"));
+            if (upperBound == null || upperBound.isAfter(cutoff)) continue;
+
+            Boolean hasActive = jdbcTemplate.queryForObject("select exists (select 1 from " + quote(name) + " e " +
+                    "join solicitation s on s.id = e.solicitation_id where s.archived = false)", Boolean.class);
+            if (Boolean.TRUE.equals(hasActive)) continue;
+
+            try {
+                if ("tablespace".equalsIgnoreCase(ARCHIVING_MODE)) {
+                    moveToTablespace(name);
+                } else if ("export".equalsIgnoreCase(ARCHIVING_MODE)) {
+                    exportAndDrop(name);
+                } else {
+                    logger.error("Modo de arquivamento de eventos desconhecido: {}", ARCHIVING_MODE);
+                    return archived;
+                }
+                archived++;
+            } catch (IOException | DataAccessException e) {
+                logger.error("Falha ao arquivar a partição de eventos {}: {}", name, e.getMessage());
+            }
+        }
+        return archived;
+    }
+
+// ============================================================= //
+//  Métodos auxiliares
+// ============================================================= //
+
+    // Serializa as alterações de estrutura entre instâncias; deve ser chamado dentro de uma transação
+    private void lockPartitioning() {
+        jdbcTemplate.queryForList("select pg_advisory_xact_lock(hashtext('event_partitioning'))");
+    }
+
+    private boolean isPartitioned() {
+        return "p".equals(jdbcTemplate.queryForObject(
+                "select coalesce((select c.relkind::text from pg_class c where c.oid = to_regclass(?)), '')", String.class, PARENT_TABLE));
+    }
+
+    // Deve ser chamado dentro da transação da migração. A tabela existente passa a ser a partição padrão,
+    // sem copiar os eventos; eles são distribuídos nas partições mensais depois ('splitDefaultPartition')
+    private void convertToPartitioned() {
+        // A chave de partição faz parte da chave primária, então não pode ser nula: eventos sem data recebem
+        // a data de criação da solicitação. Eventos sem data e sem solicitação impedem a conversão
+        Integer undated = jdbcTemplate.queryForObject("select count(*) from event e where e.creation_date is null " +
+                "and not exists (select 1 from solicitation s where s.id = e.solicitation_id and s.creation_date is not null)", Integer.class);
+        if (undated != null && undated > 0) {
+            logger.error("Tabela de eventos não particionada: [{}] eventos sem data de criação e sem solicitação. " +
+                    "Corrija-os manualmente e reinicie a aplicação.", undated);
+            return;
+        }
+
+        logger.info("Convertendo a tabela de eventos em tabela particionada por mês...");
+        int dated = jdbcTemplate.update("update event e set creation_date = s.creation_date from solicitation s " +
+                "where s.id = e.solicitation_id and e.creation_date is null");
+        if (dated > 0)
+            logger.warn("[{}] eventos sem data de criação receberam a data de criação da sua solicitação.", dated);
+
+        jdbcTemplate.execute("alter table event rename to " + DEFAULT_PARTITION);
+        for (String constraint : jdbcTemplate.queryForList("select conname::text from pg_constraint " +
+                "where conrelid = to_regclass(?) and contype = 'p'", String.class, DEFAULT_PARTITION)) {
+            jdbcTemplate.execute("alter table " + DEFAULT_PARTITION + " rename constraint " + quote(constraint) + " to " + DEFAULT_PARTITION + "_pkey");
+        }
+
+        jdbcTemplate.execute("create table event (like " + DEFAULT_PARTITION + " including defaults) partition by range (creation_date)");
+        jdbcTemplate.execute("alter table event add constraint event_pkey primary key (id, creation_date)");
+        jdbcTemplate.execute("alter table event attach partition " + DEFAULT_PARTITION + " default");
+
+        jdbcTemplate.execute("create index if not exists idx_event_solicitation on event (solicitation_id, creation_date)");
+        jdbcTemplate.execute("alter table event add constraint fk_event_solicitation " +
+                "foreign key (solicitation_id) references solicitation (id)");
+
+        logger.info("Tabela de eventos particionada. Os eventos existentes serão movidos para as partições mensais.");
+    }
+
+    // Move os eventos da partição padrão para as partições mensais, desde o mês mais antigo
+    private void splitDefaultPartition() {
+        List<Timestamp> months = jdbcTemplate.queryForList(
+                "select distinct date_trunc('month', creation_date) from " + DEFAULT_PARTITION + " order by 1", Timestamp.class);
+        if (months.isEmpty()) return;
+
+        logger.info("Movendo eventos de {} mês(es) da partição padrão para as partições mensais...", months.size());
+        int moved = 0;
+        for (Timestamp month : months) {
+            int rows = createPartition(YearMonth.from(month.toLocalDateTime()));
+            if (rows < 0) return; // Falha registrada; os meses restantes continuam na partição padrão
+            moved += rows;
+        }
+        logger.info("[{}] eventos movidos da partição padrão para as partições mensais.", moved);
+    }
+
+    // Cria a partição do mês, movendo para ela os eventos do mês que estejam na partição padrão, em uma transação.
+    // Retorna o número de eventos movidos, ou -1 em caso de falha
+    private int createPartition(YearMonth month) {
+        String partition = partitionName(month);
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+
+        try {
+            Integer moved = transactionTemplate.execute(status -> {
+                lockPartitioning();
+                if (exists(partition)) return 0;
+
+                // A partição é preenchida antes de anexada: anexá-la exige que a partição padrão não possua eventos do mês
+                jdbcTemplate.execute("create table " + quote(partition) + " (like " + PARENT_TABLE + " including defaults)");
+                int rows = jdbcTemplate.update("with moved as (delete from " + DEFAULT_PARTITION +
+                        " where creation_date >= ? and creation_date < ? returning *) " +
+                        "insert into " + quote(partition) + " select * from moved", Timestamp.valueOf(from), Timestamp.valueOf(to));
+                jdbcTemplate.execute("alter table " + PARENT_TABLE + " attach partition " + quote(partition) +
+                        " for values from ('" + from + "') to ('" + to + "')");
+                return rows;
+            });
+
+            logger.info("Partição de eventos {} criada ({} eventos movidos da partição padrão).", partition, moved);
+            return moved != null ? moved : 0;
+        } catch (DataAccessException e) {
+            logger.error("Falha ao criar a partição de eventos {}: {}", partition, e.getMostSpecificCause().getMessage());
+            return -1;
+        }
+    }
+
+    private void moveToTablespace(String partition) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("alter table " + PARENT_TABLE + " detach partition " + quote(partition));
+            jdbcTemplate.execute("alter table " + quote(partition) + " set tablespace " + quote(ARCHIVE_TABLESPACE));
+            jdbcTemplate.execute("alter table " + quote(partition) + " rename to " + quote("archived_" + partition));
+        });
+        logger.info("Partição de eventos {} desanexada e movida para o tablespace {}.", partition, ARCHIVE_TABLESPACE);
+    }
+
+    private void exportAndDrop(String partition) throws IOException {
+        Path temp = Files.createTempFile(partition, ".csv.gz");
+        try {
+            long rows;
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8))) {
+                rows = exportCsv(partition, writer);
+            }
+
+            fileStore.moveIn(FileStore.key(ARCHIVE_PREFIX, partition + ".csv.gz"), temp);
+
+            // Removida apenas após a exportação estar no armazenamento
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.execute("alter table " + PARENT_TABLE + " detach partition " + quote(partition));
+                jdbcTemplate.execute("drop table " + quote(partition));
+            });
+            logger.info("Partição de eventos {} exportada ({} eventos) e removida.", partition, rows);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private long exportCsv(String partition, Writer writer) throws IOException {
+        long[] rows = {0};
+        try {
+            jdbcTemplate.query("select * from " + quote(partition) + " order by id", resultSet -> {
+                try {
+                    ResultSetMetaData metaData = resultSet.getMetaData();
+                    int columns = metaData.getColumnCount();
+                    if (rows[0] == 0) {
+                        for (int i = 1; i <= columns; i++) {
+                            if (i > 1) writer.write(',');
+                            writer.write(metaData.getColumnName(i));
+                        }
+                        writer.write('\n');
+                    }
+                    for (int i = 1; i <= columns; i++) {
+                        if (i > 1) writer.write(',');
+                        String value = resultSet.getString(i);
+                        if (value != null) writer.write('"' + value.replace("\"", "\"\"") + '"');
+                    }
+                    writer.write('\n');
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+
+    private boolean exists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("select to_regclass(?) is not null", Boolean.class, table));
+    }
+
+    private LocalDateTime upperBound(String bound) {
+        if (bound == null) return null; // Partição padrão
+        Matcher matcher = UPPER_BOUND.matcher(bound);
+        if (!matcher.find()) return null;
+        return Timestamp.valueOf(matcher.group(1)).toLocalDateTime();
+    }
+
+    private String partitionName(YearMonth month) {
+        return PARENT_TABLE + "_p" + month.format(PARTITION_SUFFIX);
+    }
+
+    private String quote(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+}
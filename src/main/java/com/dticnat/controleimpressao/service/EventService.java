@@ -1,54 +1,98 @@
 package com.dticnat.controleimpressao.service;
 
 import com.dticnat.controleimpressao.model.Event;
+import com.dticnat.controleimpressao.model.NotificationOutbox;
 import com.dticnat.controleimpressao.model.Solicitation;
 import com.dticnat.controleimpressao.model.User;
 import com.dticnat.controleimpressao.model.enums.EventType;
 import com.dticnat.controleimpressao.model.enums.Role;
 import com.dticnat.controleimpressao.repository.EventRepository;
-import jakarta.mail.MessagingException;
+import com.dticnat.controleimpressao.repository.NotificationOutboxRepository;
+import com.dticnat.controleimpressao.repository.SolicitationRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.ResourceLoader;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.TemplateEngine;
-import org.thymeleaf.context.Context;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.io.IOException;
 import java.time.LocalDateTime;
-import java.time.Year;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 public class EventService {
 
+    private static final String NOTIFICATION_SUBJECT = "[Impressão CNAT] Notificação sobre solicitação";
+
+    // Janela de agrupamento das notificações em resumo; 0 desabilita o resumo
+    @Value("${notificacoes.digest-window-seconds}")
+    private long DIGEST_WINDOW_SECONDS;
+
+    // Tipos de evento notificados imediatamente, fora do resumo
+    @Value("${notificacoes.digest-immediate-types}")
+    private Set<EventType> IMMEDIATE_TYPES;
+
     @Autowired
     private EventRepository eventRepository;
 
     @Autowired
-    private EmailService emailService;
+    private NotificationOutboxRepository notificationOutboxRepository;
 
     @Autowired
-    private TemplateEngine templateEngine;
-
-    @Value("${FRONTEND_URL}")
-    private String frontendUrl;
-
-    @Value("${BACKEND_URL}")
-    private String backendUrl;
+    private SubscriptionService subscriptionService;
 
     @Autowired
-    private ResourceLoader resourceLoader;
+    private SolicitationRepository solicitationRepository;
 
     private static final Logger logger = LoggerFactory.getLogger(EventService.class);
 
+    /**
+     * Registra um evento na linha do tempo de uma solicitação, inserindo-o diretamente na base de dados.
+     * A solicitação não é salva novamente (nem sua linha do tempo em memória alterada), então o custo
+     * da escrita não depende do tamanho do histórico. O autor do evento é inscrito nas notificações da
+     * solicitação, e as colunas de último evento da solicitação são atualizadas.
+     *
+     * @param solicitation A solicitação à qual o evento pertence.
+     * @param event        O evento a ser registrado.
+     * @return O evento persistido.
+     */
+    public Event appendEvent(Solicitation solicitation, Event event) {
+        event.setSolicitationId(solicitation.getId());
+        subscriptionService.subscribe(solicitation.getId(), event.getUser());
+        Event savedEvent = eventRepository.save(event);
+
+        solicitationRepository.updateLastEvent(solicitation.getId(), savedEvent.getId(), savedEvent.getType(),
+                savedEvent.getCreationDate(), lastEventBy(savedEvent.getUser()));
+        return savedEvent;
+    }
+
+    /**
+     * Retorna o nome a ser registrado como autor do último evento de uma solicitação.
+     *
+     * @param user O usuário que originou o evento.
+     * @return O nome do usuário, ou null para eventos do sistema.
+     */
+    public String lastEventBy(User user) {
+        return user == null || user.getRole() == Role.SYSTEM ? null : user.getCommonName();
+    }
+
+    /**
+     * Retorna o evento mais recente de uma solicitação, a partir das colunas 'lastEventId' e 'lastEventAt'
+     * (consulta pela chave primária, com a data restringindo a consulta a uma partição). Solicitações sem
+     * o último evento registrado recorrem à linha do tempo.
+     *
+     * @param solicitation A solicitação.
+     * @return O evento mais recente, se houver.
+     */
     public Optional<Event> getLatestEventForSolicitation(Solicitation solicitation) {
+        if (solicitation.getLastEventId() != null) {
+            Optional<Event> latestEvent = solicitation.getLastEventAt() != null
+                    ? eventRepository.findByIdAndCreationDate(solicitation.getLastEventId(), solicitation.getLastEventAt())
+                    : eventRepository.findById(solicitation.getLastEventId());
+            if (latestEvent.isPresent()) return latestEvent;
+        }
+
         List<Event> events = solicitation.getTimeline();
 
         if (events == null || events.isEmpty()) {
@@ -59,40 +103,60 @@ public class EventService {
                 .max(Comparator.comparing(Event::getCreationDate));
     }
 
-    // Envia emails para todos os interessados associados a uma determinada solicitação, exceto a quem executou a ação
-    // Executado assincronamente para não bloquear a resposta ao cliente ao enviar email
-    @Async
+    /**
+     * Enfileira a notificação do último evento de uma solicitação para todos os interessados.
+     * A notificação é gravada na fila (outbox) na transação corrente, se houver, e enviada em
+     * segundo plano pelo NotificationDispatcher.
+     *
+     * @param solicitation   A solicitação cujo último evento será notificado.
+     * @param triggeringUser O usuário que executou a ação.
+     */
+    @Transactional
     public void sendNotificationForLatestEvent(Solicitation solicitation, User triggeringUser) {
-        Optional<Event> latestEventOptional = getLatestEventForSolicitation(solicitation);
-
-        latestEventOptional.ifPresent(latestEvent -> {
-            boolean canNotify = couldSendNotification(latestEvent.getType());
-
-            if (canNotify) {
-                // 1. Buscar todos os usuários interessados na solicitação, a depender do usuário que ativou o evento
-                // Caso este usuário seja o próprio sistema, o único interessado na notificação deve ser o dono da solicitação
-                Set<User> interestedUsers = getInterestedUsers(solicitation, triggeringUser);
-
-                // 2. Extrair os emails dos destinatários distintos
-                List<String> recipientEmails = interestedUsers.stream()
-                        .map(User::getEmail)
-                        .distinct()
-                        .toList();
-
-                if (!recipientEmails.isEmpty()) {
-                    String subject = "[Impressão CNAT] Notificação sobre solicitação";
-                    String body = generateHtmlContentForLatestEvent(solicitation, latestEvent);
-                    String[] toAddresses = recipientEmails.toArray(new String[0]);
-
-                    try {
-                        emailService.sendEmail(toAddresses, subject, body);
-                        logger.info("Notificação enviada com sucesso para a solicitação ID {} para {} usuários interessados.", solicitation.getId(), recipientEmails.size());
-                    } catch (MessagingException e) {
-                        logger.error("Erro ao enviar notificação para ID de solicitação {}: {}", solicitation.getId(), e.getMessage(), e);
-                    }
-                } else {
-                    logger.info("Nenhum outro usuário interessado a ser notificado para ID de solicitação {}.", solicitation.getId());
-                }
+        getLatestEventForSolicitation(solicitation)
+                .ifPresent(latestEvent -> sendNotificationForEvent(solicitation, triggeringUser, latestEvent));
+    }
+
+    /**
+     * Enfileira a notificação de um evento específico de uma solicitação para todos os interessados.
+     *
+     * @param solicitation   A solicitação à qual o evento pertence.
+     * @param triggeringUser O usuário que executou a ação.
+     * @param event          O evento a ser notificado.
+     */
+    @Transactional
+    public void sendNotificationForEvent(Solicitation solicitation, User triggeringUser, Event event) {
+        if (!couldSendNotification(event.getType())) return;
+
+        enqueueNotification(solicitation.getId(), getInterestedUsers(solicitation, triggeringUser, event.getType()), event.getUser(), event.getType(), event.getContent(), event.getCreationDate());
+    }
+
+    /**
+     * Enfileira as notificações de eventos do sistema de várias solicitações (e.g. arquivamento em lote),
+     * a partir dos IDs e das matrículas dos donos, sem carregar as solicitações. As inscrições de cada
+     * tipo de evento são consultadas uma única vez para todas as solicitações.
+     * Ações do sistema são notificadas apenas ao dono da solicitação.
+     *
+     * @param events Eventos do sistema, por ID da solicitação.
+     * @param owners Matrícula do dono, por ID da solicitação.
+     */
+    @Transactional
+    public void sendSystemNotifications(Map<Long, Event> events, Map<Long, String> owners) {
+        Map<EventType, List<Event>> eventsByType = events.values().stream()
+                .filter(event -> couldSendNotification(event.getType()))
+                .collect(Collectors.groupingBy(Event::getType));
+
+        eventsByType.forEach((eventType, typeEvents) -> {
+            Map<Long, List<User>> recipients = subscriptionService.findRecipients(
+                    typeEvents.stream().map(Event::getSolicitationId).toList(), eventType);
+
+            for (Event event : typeEvents) {
+                String owner = owners.get(event.getSolicitationId());
+                Set<User> interestedUsers = recipients.getOrDefault(event.getSolicitationId(), List.of()).stream()
+                        .filter(user -> owner != null && owner.equals(user.getRegistrationNumber()))
+                        .collect(Collectors.toSet());
+                enqueueNotification(event.getSolicitationId(), interestedUsers, event.getUser(), eventType,
+                        event.getContent(), event.getCreationDate());
             }
         });
     }
@@ -100,56 +164,67 @@ public class EventService {
     // Used primarilly to send notifications for deletion events,
     // since deletion events are not saved in the timeline,
     // because its gone
-    // Executado assincronamente para não bloquear a resposta ao cliente ao enviar email
-    @Async
+    @Transactional
     public void sendNotificationForLooseEvent(Solicitation solicitation, User triggeringUser, EventType eventType) {
-            Set<User> interestedUsers = getInterestedUsers(solicitation, triggeringUser);
-
-            List<String> recipientEmails = interestedUsers.stream()
-                    .map(User::getEmail)
-                    .distinct()
-                    .toList();
-
-            if (!recipientEmails.isEmpty()) {
-                String subject = "[Impressão CNAT] Notificação sobre solicitação";
-                String body = generateHtmlContentForLooseEvent(solicitation, triggeringUser, eventType);
-                String[] toAddresses = recipientEmails.toArray(new String[0]);
-
-                try {
-                    emailService.sendEmail(toAddresses, subject, body);
-                    logger.info("Notificação enviada com sucesso para a ID de solicitação {} (Tipo de evento: {}) para {} usuários interessados.", solicitation.getId(), eventType, recipientEmails.size());
-                } catch (MessagingException e) {
-                    logger.error("Erro ao enviar notificação para ID de solicitação {} (Tipo de evento: {}): {}", solicitation.getId(), eventType, e.getMessage(), e);
-                }
-            } else {
-                logger.info("Nenhum outro usuário interessado a ser notificado para o ID de solicitação {} (Tipo de evento: {}).", solicitation.getId(), eventType);
-            }
+        enqueueNotification(solicitation.getId(), getInterestedUsers(solicitation, triggeringUser, eventType), triggeringUser, eventType, null, LocalDateTime.now());
     }
 
-    public Set<User> getInterestedUsers(Solicitation solicitation, User triggeringUser) {
-        List<Event> events = solicitation.getTimeline(); // Get the list of events for the solicitation
-
-        if (events == null || events.isEmpty()) {
-            return Set.of(); // Return an empty set if there are no events
+    // Grava uma notificação na fila para cada interessado (emails distintos), exceto se não houver destinatários.
+    // Notificações de resumo aguardam a janela de agrupamento antes do envio; as demais são enviadas no próximo ciclo
+    private void enqueueNotification(Long solicitationId, Set<User> interestedUsers, User sender,
+                                     EventType eventType, String eventContent, LocalDateTime eventDate) {
+        List<String> recipientEmails = interestedUsers.stream()
+                .map(User::getEmail)
+                .filter(email -> email != null && !email.isBlank())
+                .distinct()
+                .toList();
+
+        if (recipientEmails.isEmpty()) {
+            logger.info("Nenhum outro usuário interessado a ser notificado para o ID de solicitação {} (Tipo de evento: {}).", solicitationId, eventType);
+            return;
         }
 
-        // Check if the user on the last event has a role of "system"
+        LocalDateTime now = LocalDateTime.now();
+        boolean digest = DIGEST_WINDOW_SECONDS > 0 && !IMMEDIATE_TYPES.contains(eventType);
+
+        notificationOutboxRepository.saveAll(recipientEmails.stream()
+                .map(email -> NotificationOutbox.builder()
+                        .solicitationId(solicitationId)
+                        .eventType(eventType)
+                        .eventContent(eventContent)
+                        .sender(sender)
+                        .recipient(email)
+                        .digest(digest)
+                        .subject(NOTIFICATION_SUBJECT)
+                        .createdAt(eventDate != null ? eventDate : now)
+                        .nextAttemptAt(digest ? now.plusSeconds(DIGEST_WINDOW_SECONDS) : now)
+                        .build())
+                .toList());
+    }
+
+    /**
+     * Retorna os usuários interessados em um evento de uma solicitação, a partir das inscrições ativas,
+     * respeitando as preferências de notificação de cada usuário.
+     *
+     * @param solicitation   A solicitação à qual o evento pertence.
+     * @param triggeringUser O usuário que executou a ação.
+     * @param eventType      O tipo do evento.
+     * @return Os usuários a serem notificados.
+     */
+    public Set<User> getInterestedUsers(Solicitation solicitation, User triggeringUser, EventType eventType) {
+        List<User> subscribers = subscriptionService.findRecipients(solicitation.getId(), eventType);
+
+        // Ações do sistema são notificadas apenas ao dono da solicitação
         if (triggeringUser.getRole() == Role.SYSTEM) {
-            // If so, the only interested user is the solicitation's owner
             User owner = solicitation.getUser();
-            if (owner != null) {
-                return Set.of(owner);
-            } else {
-                return Set.of();
-            }
+            if (owner == null) return Set.of();
+
+            return subscribers.stream()
+                    .filter(user -> Objects.equals(user.getRegistrationNumber(), owner.getRegistrationNumber()))
+                    .collect(Collectors.toSet());
         }
 
-        // Otherwise, extract the unique users from the list of events
-        return events.stream()
-                .map(Event::getUser) // Get the User from each Event
-                .filter(java.util.Objects::nonNull) // Ensure users are not null before collecting
-//                .filter(user -> !user.getRegistrationNumber().equals(triggeringUser.getRegistrationNumber())) // Excluir o próprio usuário que disparou a ação dos interessados
-                .collect(Collectors.toSet()); // Collect the unique users into a Set
+        return new HashSet<>(subscribers);
     }
 
     private boolean couldSendNotification(EventType eventType) {
@@ -159,72 +234,8 @@ public class EventService {
                 || eventType == EventType.REQUEST_CLOSING
                 || eventType == EventType.REQUEST_DELETING
                 || eventType == EventType.REQUEST_ARCHIVING
+                || eventType == EventType.REQUEST_PROCESSING_FAILED
                 //|| eventType == EventType.REQUEST_TOGGLE
                 || eventType == EventType.REQUEST_EDITING;
     }
-
-    // Gerar conteúdo do email
-    private String generateHtmlContent(Solicitation solicitation, User user, EventType eventType, String eventContent) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
-        String solicitationNumber = String.format("Nº%06d", solicitation.getId());
-        boolean systemNotification = user.getRole() == Role.SYSTEM;
-
-        final Context ctx = new Context();
-        ctx.setVariable("eventMessage", switch (eventType) {
-            case COMMENT -> "Um novo comentário foi adicionado à solicitação " + solicitationNumber + ".";
-            case REQUEST_TOGGLE -> "A status da solicitação " + solicitationNumber + " foi alterado.";
-            case REQUEST_OPENING -> "A solicitação " + solicitationNumber + " foi aberta.";
-            case REQUEST_CLOSING -> "A solicitação " + solicitationNumber + " foi fechada.";
-            case REQUEST_EDITING -> "A solicitação " + solicitationNumber + " foi editada.";
-            case REQUEST_DELETING -> "A solicitação " + solicitationNumber + " foi excluída.";
-            case REQUEST_ARCHIVING -> "A solicitação " + solicitationNumber + " foi arquivada.";
-            default -> "Uma atualização ocorreu na solicitação " + solicitationNumber + ".";
-        });
-
-        ctx.setVariable("sender", systemNotification ? "automaticamente" : "por " + user.getCommonName() + " " + user.getRegistrationNumber());
-        ctx.setVariable("eventDate", LocalDateTime.now().format(formatter)); // Default to now
-        ctx.setVariable("showContent", eventType == EventType.COMMENT);
-        ctx.setVariable("showRedirect", eventType != EventType.REQUEST_DELETING);
-        ctx.setVariable("eventContent", eventContent != null ? eventContent : "Nenhuma informação de conteúdo específica para este evento.");
-        ctx.setVariable("solicitationLink", frontendUrl + "/solicitacoes/ver/" + solicitation.getId().toString());
-        ctx.setVariable("currentYear", Year.now().getValue());
-
-        try {
-            Resource dtiResource = resourceLoader.getResource("classpath:static/images/logodti.png");
-            byte[] dtiBytes = dtiResource.getInputStream().readAllBytes();
-            String base64Dti = Base64.getEncoder().encodeToString(dtiBytes);
-            ctx.setVariable("logodti", "data:image/png;base64," + base64Dti);
-
-            Resource ifrnResource = resourceLoader.getResource("classpath:static/images/logoifrn.png");
-            byte[] ifrnBytes = ifrnResource.getInputStream().readAllBytes();
-            String base64Ifrn = Base64.getEncoder().encodeToString(ifrnBytes);
-            ctx.setVariable("logoifrn", "data:image/png;base64," + base64Ifrn);
-
-        } catch (IOException e) {
-            System.err.println("Erro ao carregar imagens: " + e.getMessage());
-            // Handle the error appropriately with fallback URL
-            ctx.setVariable("logodti", backendUrl + "/api/images/logodti.png"); // Fallback
-            ctx.setVariable("logoifrn", backendUrl + "/api/images/logoifrn.png"); // Fallback
-        }
-
-        return templateEngine.process("email_notification.html", ctx);
-    }
-
-    private String generateHtmlContentForLatestEvent(Solicitation solicitation, Event event) {
-        return generateHtmlContent(
-                solicitation,
-                event.getUser(),
-                event.getType(),
-                event.getContent()
-        );
-    }
-
-    private String generateHtmlContentForLooseEvent(Solicitation solicitation, User triggeringUser, EventType eventType) {
-        return generateHtmlContent(
-                solicitation,
-                triggeringUser,
-                eventType,
-                null // No specific content for loose events in the original method
-        );
-    }
 }
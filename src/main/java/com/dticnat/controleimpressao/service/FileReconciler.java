@@ -0,0 +1,164 @@
+package com.dticnat.controleimpressao.service;
+
+import com.dticnat.controleimpressao.config.ClusterLocked;
+import com.dticnat.controleimpressao.model.dto.CopyFileLocation;
+import com.dticnat.controleimpressao.model.dto.ReconciliationReport;
+import com.dticnat.controleimpressao.repository.CopyRepository;
+import com.dticnat.controleimpressao.storage.FileStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reconcilia o armazenamento de arquivos com as cópias registradas na base de dados.
+ *
+ * O armazenamento é varrido uma única vez (em paralelo, no armazenamento local) e as cópias digitais
+ * são percorridas em lotes por ID (keyset). Divergências na flag 'fileInDisk' são corrigidas com
+ * atualizações em lote, e arquivos sem cópia correspondente (órfãos) são movidos para quarentena
+ * em vez de removidos, permitindo recuperação manual.
+ */
+@Service
+public class FileReconciler {
+
+    private static final int BATCH_SIZE = 500;
+
+    // Prefixo oculto ('.'), ignorado pelas listagens do armazenamento
+    private static final String QUARANTINE_PREFIX = ".quarantine";
+
+    @Value("${arquivos.reconcile-on-startup}")
+    private boolean RECONCILE_ON_STARTUP;
+
+    @Autowired
+    private FileStore fileStore;
+
+    @Autowired
+    private CopyRepository copyRepository;
+
+    private static final Logger logger = LoggerFactory.getLogger(FileReconciler.class);
+
+    /**
+     * Executa a reconciliação ao iniciar a aplicação, em segundo plano, se habilitada por
+     * `arquivos.reconcile-on-startup`. Com várias instâncias, apenas uma reconcilia por vez.
+     */
+    @ClusterLocked
+    @Async("fileExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        if (!RECONCILE_ON_STARTUP) return;
+
+        try {
+            reconcile();
+        } catch (Exception e) {
+            logger.error("Falha na reconciliação de arquivos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reconcilia o armazenamento com a base de dados.
+     *
+     * @return O relatório da reconciliação.
+     * @throws IOException Se não for possível listar o armazenamento.
+     */
+    public ReconciliationReport reconcile() throws IOException {
+        long start = System.nanoTime();
+        logger.info("Iniciando reconciliação de arquivos...");
+
+        // 1. Varredura do armazenamento; ao final, restam apenas as chaves sem cópia correspondente
+        Set<String> unmatched = new HashSet<>();
+        for (String key : fileStore.list("")) {
+            if (!key.startsWith(".")) unmatched.add(key);
+        }
+        int filesScanned = unmatched.size();
+
+        // 2. Comparação com as cópias digitais, em lotes por ID
+        int copiesChecked = 0;
+        int markedPresent = 0;
+        int markedMissing = 0;
+        long lastId = 0L;
+        List<CopyFileLocation> batch;
+
+        do {
+            batch = copyRepository.findFileLocationsAfter(lastId, PageRequest.of(0, BATCH_SIZE));
+
+            List<Long> present = new ArrayList<>();
+            List<Long> missing = new ArrayList<>();
+            for (CopyFileLocation location : batch) {
+                String key = FileStore.key(location.getRegistrationNumber(), location.getSolicitationId(), location.getFileName());
+                boolean inStore = unmatched.remove(key);
+                boolean flaggedInStore = Boolean.TRUE.equals(location.getFileInDisk());
+
+                if (inStore && !flaggedInStore) {
+                    present.add(location.getCopyId());
+                } else if (!inStore && flaggedInStore && !fileStore.exists(key)) {
+                    // Verifica novamente: o arquivo pode ter sido gravado após a varredura
+                    missing.add(location.getCopyId());
+                }
+            }
+
+            if (!present.isEmpty()) markedPresent += copyRepository.updateFileInDisk(present, true);
+            if (!missing.isEmpty()) markedMissing += copyRepository.updateFileInDisk(missing, false);
+
+            copiesChecked += batch.size();
+            if (!batch.isEmpty()) lastId = batch.get(batch.size() - 1).getCopyId();
+        } while (batch.size() == BATCH_SIZE);
+
+        // 3. Quarentena dos arquivos órfãos
+        int quarantined = 0;
+        for (String key : unmatched) {
+            if (hasCopy(key)) continue;
+
+            try {
+                fileStore.rename(key, FileStore.key(QUARANTINE_PREFIX, key));
+                logger.info("Arquivo órfão movido para quarentena: {}", key);
+                quarantined++;
+            } catch (NoSuchFileException e) {
+                // Removido durante a reconciliação (e.g. edição da solicitação)
+            } catch (IOException e) {
+                logger.error("Falha ao mover arquivo órfão {} para quarentena: {}", key, e.getMessage());
+            }
+        }
+
+        ReconciliationReport report = ReconciliationReport
+                .builder()
+                .filesScanned(filesScanned)
+                .copiesChecked(copiesChecked)
+                .markedPresent(markedPresent)
+                .markedMissing(markedMissing)
+                .quarantined(quarantined)
+                .durationMillis((System.nanoTime() - start) / 1_000_000)
+                .build();
+
+        logger.info("Reconciliação de arquivos concluída em {} ms. [{}] arquivos varridos, [{}] cópias verificadas, " +
+                        "[{}] marcadas presentes, [{}] marcadas ausentes, [{}] órfãos em quarentena.",
+                report.getDurationMillis(), report.getFilesScanned(), report.getCopiesChecked(),
+                report.getMarkedPresent(), report.getMarkedMissing(), report.getQuarantined());
+
+        return report;
+    }
+
+    // Confirma na base de dados se a chave ainda não possui cópia: o arquivo de uma cópia nova
+    // é gravado pouco antes da cópia ser salva, então ela pode ter surgido após os lotes
+    private boolean hasCopy(String key) {
+        String[] segments = key.split("/", 3);
+        if (segments.length != 3) return false;
+
+        try {
+            return copyRepository.existsBySolicitationIdAndFileName(Long.parseLong(segments[1]), segments[2]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -1,101 +1,232 @@
 package com.dticnat.controleimpressao.service;
 
+import com.dticnat.controleimpressao.model.dto.PdfAnalysis;
 import org.apache.pdfbox.Loader;
-import org.apache.pdfbox.io.RandomAccessReadBuffer;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.tika.Tika;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 public class FileValidationService {
 
     private static final List<String> ALLOWED_MEDIA_TYPES = List.of("application/pdf");
-    private static final long MAX_FILE_SIZE_BYTES = 10 * 1024 * 1024; // 10MB
+    public static final long MAX_FILE_SIZE_BYTES = 10 * 1024 * 1024; // 10MB
+
+    // Tolerância (em pontos) ao comparar o tamanho da página com os formatos conhecidos
+    private static final float PAGE_SIZE_TOLERANCE = 5f;
+
+    // Formatos de papel conhecidos (largura x altura em pontos, orientação retrato)
+    private static final Map<String, PDRectangle> KNOWN_PAGE_SIZES = new LinkedHashMap<>(Map.of(
+            "A3", PDRectangle.A3,
+            "A4", PDRectangle.A4,
+            "A5", PDRectangle.A5,
+            "Carta", PDRectangle.LETTER,
+            "Ofício", PDRectangle.LEGAL
+    ));
+
+    // Tika é thread-safe, então uma única instância é reutilizada
+    private static final Tika TIKA = new Tika();
+
+    private static final Logger logger = LoggerFactory.getLogger(FileValidationService.class);
+
+    /**
+     * Analisa um arquivo multipart em uma única passada: valida tipo e integridade,
+     * e extrai o número real de páginas e os tamanhos de página.
+     * O conteúdo é lido uma única vez e reutilizado para a detecção de tipo e para o PDFBox.
+     *
+     * @param file Arquivo recebido.
+     * @return O resultado da análise ('valid == false' caso o arquivo seja inválido).
+     */
+    public PdfAnalysis analyzeFile(MultipartFile file) {
+        String originalFilename = file.getOriginalFilename();
 
-    public boolean validateAndProcessFile(MultipartFile file) {
         // 1. Basic Checks
-        if (file.isEmpty()) {
-            System.err.println("File is empty: " + file.getOriginalFilename());
-            return false;
+        if (!passesBasicChecks(file.getSize(), originalFilename)) return PdfAnalysis.invalid();
+
+        byte[] fileBytes;
+        try {
+            fileBytes = file.getBytes();
+        } catch (IOException e) {
+            logger.error("Erro ao ler o arquivo {}: {}", originalFilename, e.getMessage());
+            return PdfAnalysis.invalid();
         }
 
-        if (file.getSize() > MAX_FILE_SIZE_BYTES) {
-            System.err.println("File exceeds max size: " + file.getOriginalFilename());
-            return false;
+        // 2. File Type Detection (Magic Numbers)
+        String detectedMediaType = TIKA.detect(fileBytes, originalFilename);
+        if (!isAllowedMediaType(detectedMediaType, originalFilename)) return PdfAnalysis.invalid();
+
+        // 3. "Corrupted" and "Encrypted" Checks + extração de páginas
+        PdfAnalysis analysis = analyzePdf(() -> Loader.loadPDF(fileBytes), detectedMediaType, originalFilename);
+        if (analysis.isValid()) analysis.setContentHash(HexFormat.of().formatHex(newDigest().digest(fileBytes)));
+        return analysis;
+    }
+
+    /**
+     * Analisa um arquivo já presente em disco (e.g. staging de envio resumível) em uma única passada.
+     * O PDF é lido diretamente do arquivo, sem carregar todo o conteúdo em memória.
+     *
+     * @param path             Caminho do arquivo.
+     * @param originalFilename Nome original do arquivo.
+     * @return O resultado da análise ('valid == false' caso o arquivo seja inválido).
+     */
+    public PdfAnalysis analyzeFile(Path path, String originalFilename) {
+        // 1. Basic Checks
+        long size;
+        try {
+            size = Files.size(path);
+        } catch (IOException e) {
+            logger.error("Erro ao ler o arquivo {}: {}", originalFilename, e.getMessage());
+            return PdfAnalysis.invalid();
         }
 
+        if (!passesBasicChecks(size, originalFilename)) return PdfAnalysis.invalid();
+
         // 2. File Type Detection (Magic Numbers)
-        Tika tika = new Tika();
+        // Apenas o cabeçalho do arquivo é lido
         String detectedMediaType;
-        try (InputStream inputStream = file.getInputStream()) {
-            // It's good to pass a fresh InputStream to Tika if you plan to reuse it later
-            // Or read into a byte array first if files are small enough to hold in memory for multiple checks
-            // For large files, always stream and save to temp file first.
-            byte[] fileBytes = file.getBytes(); // Read once if small, or handle via temp file
-            try (InputStream tikaStream = new java.io.ByteArrayInputStream(fileBytes)) {
-                detectedMediaType = tika.detect(tikaStream, file.getOriginalFilename());
-            }
-
-            System.out.println("Detected media type for " + file.getOriginalFilename() + ": " + detectedMediaType);
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(path))) {
+            detectedMediaType = TIKA.detect(inputStream, originalFilename);
+        } catch (IOException e) {
+            logger.error("Erro ao ler o arquivo {}: {}", originalFilename, e.getMessage());
+            return PdfAnalysis.invalid();
+        }
 
-            if (!ALLOWED_MEDIA_TYPES.contains(detectedMediaType)) {
-                System.err.println("Disallowed media type: " + detectedMediaType);
-                return false;
-            }
+        if (!isAllowedMediaType(detectedMediaType, originalFilename)) return PdfAnalysis.invalid();
 
-            // 3. "Corrupted" and "Encrypted" Checks (based on detected type)
-            try (InputStream contentStream = new java.io.ByteArrayInputStream(fileBytes)) {
-                if ("application/pdf".equals(detectedMediaType)) {
-                    if (!isValidPdf(contentStream)) {
-                        System.err.println("Invalid or encrypted PDF: " + file.getOriginalFilename());
-                        return false;
-                    }
-                } else if (detectedMediaType.startsWith("image/")) {
-                    if (!isValidImage(contentStream)) {
-                        System.err.println("Invalid or corrupted image: " + file.getOriginalFilename());
-                        return false;
-                    }
-                }
-            }
+        // 3. "Corrupted" and "Encrypted" Checks + extração de páginas
+        PdfAnalysis analysis = analyzePdf(() -> Loader.loadPDF(path.toFile()), detectedMediaType, originalFilename);
+        if (!analysis.isValid()) return analysis;
 
+        try {
+            analysis.setContentHash(hashFile(path));
         } catch (IOException e) {
-            System.err.println("Error reading file: " + file.getOriginalFilename() + " - " + e.getMessage());
-            return false; // Could be I/O error, or fundamental unreadability
+            logger.error("Erro ao ler o arquivo {}: {}", originalFilename, e.getMessage());
+            return PdfAnalysis.invalid();
+        }
+        return analysis;
+    }
+
+    /**
+     * Calcula o hash SHA-256 (hexadecimal) do conteúdo de um arquivo em disco, lendo-o em streaming.
+     *
+     * @param path Caminho do arquivo.
+     * @return O hash do conteúdo.
+     * @throws IOException Se não for possível ler o arquivo.
+     */
+    public String hashFile(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream inputStream = new DigestInputStream(Files.newInputStream(path), digest)) {
+            inputStream.transferTo(java.io.OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private boolean passesBasicChecks(long size, String originalFilename) {
+        if (size == 0) {
+            logger.warn("Arquivo vazio: {}", originalFilename);
+            return false;
+        }
+
+        if (size > MAX_FILE_SIZE_BYTES) {
+            logger.warn("Arquivo excede o tamanho máximo: {}", originalFilename);
+            return false;
         }
 
-        // All checks pass
-        System.out.println("File " + file.getOriginalFilename() + " validated successfully.");
         return true;
     }
 
-    private boolean isValidPdf(InputStream inputStream) {
-        try (PDDocument document = Loader.loadPDF(RandomAccessReadBuffer.createBufferFromStream(inputStream))) {
+    private boolean isAllowedMediaType(String detectedMediaType, String originalFilename) {
+        logger.debug("Tipo detectado para {}: {}", originalFilename, detectedMediaType);
+
+        if (!ALLOWED_MEDIA_TYPES.contains(detectedMediaType)) {
+            logger.warn("Tipo de arquivo não permitido para {}: {}", originalFilename, detectedMediaType);
+            return false;
+        }
+        return true;
+    }
+
+    private PdfAnalysis analyzePdf(PdfLoader loader, String detectedMediaType, String originalFilename) {
+        try (PDDocument document = loader.load()) {
             // Basic check: if it loads, it's structurally a PDF.
             // It will throw InvalidPasswordException if password protected.
-            return document.getNumberOfPages() > 0; // Example: ensure it has pages
+            int pageCount = document.getNumberOfPages();
+            if (pageCount <= 0) {
+                logger.warn("PDF sem páginas: {}", originalFilename);
+                return PdfAnalysis.invalid();
+            }
+
+            // Tamanhos de página são lidos na mesma passada, a partir da árvore de páginas já carregada
+            Map<String, Integer> pageSizes = new LinkedHashMap<>();
+            for (PDPage page : document.getPages()) {
+                pageSizes.merge(classifyPageSize(page.getMediaBox()), 1, Integer::sum);
+            }
+
+            logger.debug("Arquivo {} validado com sucesso.", originalFilename);
+            return PdfAnalysis
+                    .builder()
+                    .valid(true)
+                    .mediaType(detectedMediaType)
+                    .pageCount(pageCount)
+                    .pageSizes(pageSizes.entrySet().stream()
+                            .map(entry -> entry.getKey() + ":" + entry.getValue())
+                            .collect(Collectors.joining(", ")))
+                    .build();
+
         } catch (org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException e) {
-            System.err.println("PDF is password protected (encrypted).");
-            return false; // Treat encrypted PDF as invalid for this example
+            logger.warn("PDF protegido por senha (encriptado): {}", originalFilename);
+            return PdfAnalysis.invalid();
         } catch (IOException e) {
-            System.err.println("Failed to parse PDF, likely corrupted: " + e.getMessage());
-            return false; // Corrupted
+            logger.warn("Falha ao ler o PDF {}, provavelmente corrompido: {}", originalFilename, e.getMessage());
+            return PdfAnalysis.invalid();
         }
     }
 
-    private boolean isValidImage(InputStream inputStream) {
+    // Identifica o formato de papel da página, independente da orientação
+    private String classifyPageSize(PDRectangle mediaBox) {
+        float shortSide = Math.min(mediaBox.getWidth(), mediaBox.getHeight());
+        float longSide = Math.max(mediaBox.getWidth(), mediaBox.getHeight());
+
+        for (Map.Entry<String, PDRectangle> entry : KNOWN_PAGE_SIZES.entrySet()) {
+            PDRectangle known = entry.getValue();
+            if (Math.abs(known.getWidth() - shortSide) <= PAGE_SIZE_TOLERANCE &&
+                    Math.abs(known.getHeight() - longSide) <= PAGE_SIZE_TOLERANCE)
+                return entry.getKey();
+        }
+
+        // Formato desconhecido: registra as dimensões em milímetros
+        return Math.round(shortSide * 25.4f / 72f) + "x" + Math.round(longSide * 25.4f / 72f) + "mm";
+    }
+
+    private static MessageDigest newDigest() {
         try {
-            BufferedImage image = ImageIO.read(inputStream);
-            return image != null && image.getWidth() > 0 && image.getHeight() > 0;
-        } catch (IOException e) {
-            System.err.println("Failed to read image, likely corrupted: " + e.getMessage());
-            return false;
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 é obrigatório em toda implementação da plataforma Java
+            throw new IllegalStateException(e);
         }
     }
-}
\ No newline at end of file
+
+    @FunctionalInterface
+    private interface PdfLoader {
+        PDDocument load() throws IOException;
+    }
+}
@@ -0,0 +1,124 @@
+package com.dticnat.controleimpressao.service;
+
+import com.dticnat.controleimpressao.repository.JobLockRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serviço de locks distribuídos para tarefas agendadas, baseado na tabela 'job_lock'.
+ *
+ * Com várias réplicas do backend, cada tarefa anotada com @ClusterLocked executa em apenas uma
+ * instância por ciclo. O lock é concedido com um lease e renovado (heartbeat) a cada terço do lease
+ * enquanto a tarefa executa; se a instância cair, o lease expira e o lock volta a ficar disponível.
+ * Ao final, o lock é mantido até completar o tempo mínimo desde o início da execução, para que
+ * instâncias com o agendamento ligeiramente atrasado não repitam o mesmo ciclo.
+ */
+@Service
+public class JobLockService {
+
+    @Autowired
+    private JobLockRepository jobLockRepository;
+
+    private final String hostName = hostName();
+
+    // Identificador desta instância: host e um sufixo aleatório (várias instâncias podem dividir o host)
+    private final String instanceId = hostName + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "job-lock-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Logger logger = LoggerFactory.getLogger(JobLockService.class);
+
+    /**
+     * Executa a tarefa somente se o lock puder ser adquirido, mantendo-o renovado durante a execução
+     * e liberando-o ao final.
+     *
+     * @param name    Nome do lock (da tarefa).
+     * @param lease   Duração do lease.
+     * @param minHold Tempo mínimo em que o lock permanece detido após o início da execução.
+     * @param task    Tarefa a ser executada.
+     * @return true se a tarefa foi executada, false se outra instância detém o lock.
+     * @throws Throwable Exceção lançada pela tarefa.
+     */
+    public boolean runLocked(String name, Duration lease, Duration minHold, LockedTask task) throws Throwable {
+        long leaseSeconds = Math.max(1, lease.toSeconds());
+
+        if (jobLockRepository.tryAcquire(name, instanceId, leaseSeconds) == 0) {
+            logger.info("Tarefa '{}' ignorada: lock detido por outra instância.", name);
+            return false;
+        }
+
+        long interval = Math.max(1, leaseSeconds * 1000 / 3);
+        ScheduledFuture<?> renewal = heartbeat.scheduleAtFixedRate(() -> {
+            try {
+                if (jobLockRepository.extend(name, instanceId, leaseSeconds) == 0)
+                    logger.warn("Lock da tarefa '{}' perdido durante a execução.", name);
+            } catch (Exception e) {
+                logger.warn("Falha ao renovar lock da tarefa '{}': {}", name, e.getMessage());
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+
+        try {
+            task.run();
+            return true;
+        } finally {
+            renewal.cancel(false);
+            try {
+                jobLockRepository.release(name, instanceId, minHold.toSeconds());
+            } catch (Exception e) {
+                // O lease expira sozinho
+                logger.warn("Falha ao liberar lock da tarefa '{}': {}", name, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Retorna o identificador desta instância do backend.
+     */
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Retorna o prefixo dos identificadores das instâncias deste host (o host seguido de '-').
+     */
+    public String getHostPrefix() {
+        return hostName + "-";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "desconhecido";
+        }
+    }
+
+    /**
+     * Tarefa executada sob um lock distribuído.
+     */
+    @FunctionalInterface
+    public interface LockedTask {
+        void run() throws Throwable;
+    }
+}
@@ -0,0 +1,243 @@
+package com.dticnat.controleimpressao.service;
+
+import com.dticnat.controleimpressao.model.NotificationOutbox;
+import com.dticnat.controleimpressao.model.enums.NotificationStatus;
+import com.dticnat.controleimpressao.repository.NotificationOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Despacha as notificações da fila (outbox) por email.
+ *
+ * Cada lote é assumido em uma transação curta: as notificações são bloqueadas com 'FOR UPDATE SKIP LOCKED'
+ * e marcadas como 'SENDING' por uma concessão de `notificacoes.lease-seconds`, então várias instâncias podem
+ * despachar ao mesmo tempo sem enviar a mesma notificação duas vezes. Os emails são enviados fora de
+ * transação, em paralelo no pool limitado 'notificationExecutor', e o resultado de cada email é registrado
+ * em uma segunda transação curta; notificações cuja concessão expira (e.g. a instância foi encerrada durante
+ * o envio) voltam a ser assumidas. Notificações de resumo (digest) de um mesmo
+ * destinatário são agrupadas em um único email, listando todas as atualizações. Falhas de envio são
+ * reagendadas com backoff exponencial (`notificacoes.backoff-seconds` × 2^tentativas) até
+ * `notificacoes.max-attempts`, quando a notificação é marcada como 'FAILED'.
+ *
+ * Métricas: 'notificacoes.pendentes' (tamanho da fila), 'notificacoes.latencia' (do evento ao envio),
+ * 'notificacoes.envio' (duração do envio SMTP) e 'notificacoes.falhas' (tentativas com erro).
+ */
+@Service
+public class NotificationDispatcher {
+
+    private static final String DIGEST_SUBJECT = "[Impressão CNAT] Resumo de atualizações nas solicitações";
+
+    // Limite do intervalo entre tentativas
+    private static final Duration MAX_BACKOFF = Duration.ofHours(6);
+
+    @Value("${notificacoes.batch-size}")
+    private int BATCH_SIZE;
+
+    @Value("${notificacoes.max-attempts}")
+    private int MAX_ATTEMPTS;
+
+    @Value("${notificacoes.backoff-seconds}")
+    private long BACKOFF_SECONDS;
+
+    @Value("${notificacoes.lease-seconds}")
+    private long LEASE_SECONDS;
+
+    @Autowired
+    private NotificationOutboxRepository notificationOutboxRepository;
+
+    @Autowired
+    private NotificationRenderer notificationRenderer;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    @Qualifier("notificationExecutor")
+    private TaskExecutor notificationExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final AtomicLong pending = new AtomicLong();
+    private Timer latencyTimer;
+    private Timer sendTimer;
+    private Counter failureCounter;
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("notificacoes.pendentes", pending, AtomicLong::get)
+                .description("Notificações aguardando envio na fila")
+                .register(meterRegistry);
+        latencyTimer = Timer.builder("notificacoes.latencia")
+                .description("Tempo entre o evento e o envio da notificação")
+                .register(meterRegistry);
+        sendTimer = Timer.builder("notificacoes.envio")
+                .description("Duração do envio da notificação ao servidor SMTP")
+                .register(meterRegistry);
+        failureCounter = Counter.builder("notificacoes.falhas")
+                .description("Tentativas de envio de notificação com erro")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Envia as notificações pendentes, em lotes, até esvaziar a fila de notificações prontas.
+     * Este é um metodo agendado em ScheduledTasks.
+     *
+     * @return O número de notificações enviadas com sucesso.
+     */
+    public int dispatchPending() {
+        int sent = 0;
+        int claimed;
+
+        do {
+            List<List<NotificationOutbox>> emails = new ArrayList<>();
+            Integer count = transactionTemplate.execute(status -> claimBatch(emails));
+            claimed = count != null ? count : 0;
+            if (!emails.isEmpty()) sent += sendAll(emails);
+        } while (claimed == BATCH_SIZE);
+
+        pending.set(notificationOutboxRepository.countByStatus(NotificationStatus.PENDING));
+        return sent;
+    }
+
+    // Assume um lote em uma transação curta: as notificações são marcadas como 'SENDING' com a concessão
+    // em 'next_attempt_at', e os bloqueios são liberados no commit, antes de qualquer envio.
+    // Preenche 'emails' com os grupos a enviar e retorna o número de notificações do lote
+    private int claimBatch(List<List<NotificationOutbox>> emails) {
+        List<NotificationOutbox> notifications = notificationOutboxRepository.lockPendingBatch(BATCH_SIZE);
+
+        // Cada email enviado é um grupo de notificações: as imediatas vão sozinhas; as de resumo de um
+        // destinatário vão juntas, incluindo as que ainda aguardam a janela (a primeira abre a janela)
+        Set<Long> grouped = new HashSet<>();
+        for (NotificationOutbox notification : notifications) {
+            if (!notification.isDigest()) {
+                emails.add(List.of(notification));
+            } else if (grouped.add(notification.getId())) {
+                // A notificação do lote pode ser uma concessão expirada ('SENDING'), que a consulta do resumo não retorna
+                List<NotificationOutbox> digest = new ArrayList<>(List.of(notification));
+                for (NotificationOutbox item : notificationOutboxRepository.lockPendingDigest(notification.getRecipient())) {
+                    if (grouped.add(item.getId())) digest.add(item);
+                }
+                emails.add(digest);
+            }
+        }
+
+        LocalDateTime leaseUntil = LocalDateTime.now().plusSeconds(LEASE_SECONDS);
+        for (List<NotificationOutbox> email : emails) {
+            for (NotificationOutbox notification : email) {
+                notification.setStatus(NotificationStatus.SENDING);
+                notification.setNextAttemptAt(leaseUntil);
+            }
+        }
+        return notifications.size();
+    }
+
+    // Envia os grupos assumidos em paralelo no pool de notificações, fora de transação; cada tarefa altera
+    // apenas as suas notificações (já desanexadas), e o resultado é registrado em uma transação curta por email
+    private int sendAll(List<List<NotificationOutbox>> emails) {
+        List<CompletableFuture<Integer>> sends = emails.stream()
+                .map(email -> CompletableFuture.supplyAsync(() -> send(email), notificationExecutor))
+                .toList();
+
+        int sent = 0;
+        for (CompletableFuture<Integer> send : sends) {
+            sent += send.join();
+        }
+        return sent;
+    }
+
+    // Envia um email com as notificações de um destinatário; em caso de falha, reagenda ou descarta todas.
+    // Retorna o número de notificações enviadas
+    private int send(List<NotificationOutbox> notifications) {
+        NotificationOutbox first = notifications.get(0);
+        boolean digest = notifications.size() > 1;
+        long start = System.nanoTime();
+        try {
+            String body = digest ? notificationRenderer.renderDigest(notifications) : notificationRenderer.render(first);
+            emailService.sendEmail(new String[]{first.getRecipient()}, digest ? DIGEST_SUBJECT : first.getSubject(), body,
+                    notificationRenderer.getInlineImages());
+            sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            failureCounter.increment();
+            notifications.forEach(notification -> reschedule(notification, e));
+            record(notifications);
+            return 0;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (NotificationOutbox notification : notifications) {
+            notification.setStatus(NotificationStatus.SENT);
+            notification.setSentAt(now);
+            notification.setLastError(null);
+            latencyTimer.record(Duration.between(notification.getCreatedAt(), now));
+        }
+        record(notifications);
+
+        if (digest) {
+            logger.info("Resumo com {} notificações enviado com sucesso para {}.", notifications.size(), first.getRecipient());
+        } else {
+            logger.info("Notificação enviada com sucesso para a solicitação ID {} (Tipo de evento: {}).",
+                    first.getSolicitationId(), first.getEventType());
+        }
+        return notifications.size();
+    }
+
+    // Registra o resultado do envio em uma transação curta. Se falhar, as notificações continuam em 'SENDING'
+    // e são assumidas novamente quando a concessão expirar
+    private void record(List<NotificationOutbox> notifications) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> notificationOutboxRepository.saveAll(notifications));
+        } catch (RuntimeException e) {
+            logger.error("Erro ao registrar o resultado do envio das notificações {}: {}",
+                    notifications.stream().map(NotificationOutbox::getId).toList(), e.getMessage());
+        }
+    }
+
+    private void reschedule(NotificationOutbox notification, Exception e) {
+        int attempts = notification.getAttempts() + 1;
+        String error = String.valueOf(e.getMessage());
+
+        notification.setAttempts(attempts);
+        notification.setLastError(error.length() > 512 ? error.substring(0, 512) : error);
+
+        if (attempts >= MAX_ATTEMPTS) {
+            notification.setStatus(NotificationStatus.FAILED);
+            logger.error("Notificação ID {} descartada após {} tentativas: {}", notification.getId(), attempts, error);
+            return;
+        }
+
+        Duration backoff = Duration.ofSeconds(BACKOFF_SECONDS).multipliedBy(1L << Math.min(attempts - 1, 20));
+        if (backoff.compareTo(MAX_BACKOFF) > 0) backoff = MAX_BACKOFF;
+        notification.setStatus(NotificationStatus.PENDING);
+        notification.setNextAttemptAt(LocalDateTime.now().plus(backoff));
+
+        logger.warn("Falha ao enviar notificação ID {} (tentativa {}), nova tentativa em {} s: {}",
+                notification.getId(), attempts, backoff.toSeconds(), error);
+    }
+}
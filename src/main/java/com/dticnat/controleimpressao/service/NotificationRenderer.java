@@ -0,0 +1,192 @@
+package com.dticnat.controleimpressao.service;
+
+import com.dticnat.controleimpressao.model.NotificationOutbox;
+import com.dticnat.controleimpressao.model.User;
+import com.dticnat.controleimpressao.model.enums.EventType;
+import com.dticnat.controleimpressao.model.enums.Role;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renderiza o corpo HTML das notificações por email.
+ *
+ * Os logotipos são carregados uma única vez e anexados às mensagens como partes inline (CID),
+ * referenciadas pelo template como 'cid:...', em vez de codificados em base64 no HTML de cada email.
+ * O template é processado pelo Thymeleaf com cache (`spring.thymeleaf.cache`), então apenas as
+ * variáveis do evento são avaliadas a cada renderização. Resumos (digest) usam um template próprio,
+ * que lista as atualizações de várias notificações em um único email.
+ */
+@Service
+public class NotificationRenderer {
+
+    private static final String TEMPLATE = "email_notification.html";
+    private static final String DIGEST_TEMPLATE = "email_digest.html";
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    // Identificador (Content-ID) -> recurso no classpath
+    private static final Map<String, String> LOGOS = Map.of(
+            "logodti", "classpath:static/images/logodti.png",
+            "logoifrn", "classpath:static/images/logoifrn.png");
+
+    @Value("${FRONTEND_URL}")
+    private String frontendUrl;
+
+    @Value("${BACKEND_URL}")
+    private String backendUrl;
+
+    @Autowired
+    private TemplateEngine templateEngine;
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    // Imagens inline compartilhadas por todas as mensagens
+    private Map<String, Resource> inlineImages = Map.of();
+
+    // Valor das variáveis de imagem no template: 'cid:...' ou, se a imagem não pôde ser carregada, a URL pública
+    private final Map<String, String> imageSources = new LinkedHashMap<>();
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationRenderer.class);
+
+    @PostConstruct
+    public void loadAssets() {
+        Map<String, Resource> images = new LinkedHashMap<>();
+
+        LOGOS.forEach((cid, location) -> {
+            try (InputStream content = resourceLoader.getResource(location).getInputStream()) {
+                images.put(cid, new ByteArrayResource(content.readAllBytes()));
+                imageSources.put(cid, "cid:" + cid);
+            } catch (IOException e) {
+                logger.error("Erro ao carregar imagem {} das notificações: {}", location, e.getMessage());
+                imageSources.put(cid, backendUrl + "/api/images/" + cid + ".png"); // Fallback
+            }
+        });
+
+        inlineImages = Collections.unmodifiableMap(images);
+    }
+
+    /**
+     * Retorna as imagens a serem anexadas inline às notificações, por Content-ID.
+     *
+     * @return As imagens inline (compartilhadas, somente leitura).
+     */
+    public Map<String, Resource> getInlineImages() {
+        return inlineImages;
+    }
+
+    /**
+     * Renderiza o conteúdo HTML de uma notificação enfileirada.
+     *
+     * @param notification A notificação da fila.
+     * @return O corpo do email.
+     */
+    public String render(NotificationOutbox notification) {
+        return render(
+                notification.getSolicitationId(),
+                notification.getSender(),
+                notification.getEventType(),
+                notification.getEventContent(),
+                notification.getCreatedAt()
+        );
+    }
+
+    /**
+     * Renderiza o conteúdo HTML de um resumo (digest), listando as notificações de um destinatário
+     * na ordem em que ocorreram.
+     *
+     * @param notifications As notificações da fila de um mesmo destinatário.
+     * @return O corpo do email.
+     */
+    public String renderDigest(List<NotificationOutbox> notifications) {
+        List<Map<String, Object>> items = notifications.stream()
+                .sorted(Comparator.comparing(NotificationOutbox::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder())))
+                .map(notification -> {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("eventMessage", eventMessage(notification.getSolicitationId(), notification.getEventType()));
+                    item.put("sender", senderDescription(notification.getSender()));
+                    item.put("eventDate", formatDate(notification.getCreatedAt()));
+                    item.put("showContent", showContent(notification.getEventType()) && notification.getEventContent() != null);
+                    item.put("eventContent", notification.getEventContent());
+                    item.put("showRedirect", notification.getEventType() != EventType.REQUEST_DELETING);
+                    item.put("solicitationLink", solicitationLink(notification.getSolicitationId()));
+                    return item;
+                })
+                .toList();
+
+        final Context ctx = new Context();
+        ctx.setVariable("items", items);
+        ctx.setVariable("currentYear", Year.now().getValue());
+        imageSources.forEach(ctx::setVariable);
+
+        return templateEngine.process(DIGEST_TEMPLATE, ctx);
+    }
+
+    // Gerar conteúdo do email
+    private String render(Long solicitationId, User user, EventType eventType, String eventContent, LocalDateTime eventDate) {
+        final Context ctx = new Context();
+        ctx.setVariable("eventMessage", eventMessage(solicitationId, eventType));
+        ctx.setVariable("sender", senderDescription(user));
+        ctx.setVariable("eventDate", formatDate(eventDate));
+        ctx.setVariable("showContent", showContent(eventType));
+        ctx.setVariable("showRedirect", eventType != EventType.REQUEST_DELETING);
+        ctx.setVariable("eventContent", eventContent != null ? eventContent : "Nenhuma informação de conteúdo específica para este evento.");
+        ctx.setVariable("solicitationLink", solicitationLink(solicitationId));
+        ctx.setVariable("currentYear", Year.now().getValue());
+        imageSources.forEach(ctx::setVariable);
+
+        return templateEngine.process(TEMPLATE, ctx);
+    }
+
+    private String eventMessage(Long solicitationId, EventType eventType) {
+        String solicitationNumber = String.format("Nº%06d", solicitationId);
+        return switch (eventType) {
+            case COMMENT -> "Um novo comentário foi adicionado à solicitação " + solicitationNumber + ".";
+            case REQUEST_TOGGLE -> "A status da solicitação " + solicitationNumber + " foi alterado.";
+            case REQUEST_OPENING -> "A solicitação " + solicitationNumber + " foi aberta.";
+            case REQUEST_CLOSING -> "A solicitação " + solicitationNumber + " foi fechada.";
+            case REQUEST_EDITING -> "A solicitação " + solicitationNumber + " foi editada.";
+            case REQUEST_DELETING -> "A solicitação " + solicitationNumber + " foi excluída.";
+            case REQUEST_ARCHIVING -> "A solicitação " + solicitationNumber + " foi arquivada.";
+            case REQUEST_PROCESSED -> "Os arquivos da solicitação " + solicitationNumber + " foram processados.";
+            case REQUEST_PROCESSING_FAILED -> "Não foi possível processar os arquivos da solicitação " + solicitationNumber + ".";
+            default -> "Uma atualização ocorreu na solicitação " + solicitationNumber + ".";
+        };
+    }
+
+    private String senderDescription(User user) {
+        boolean systemNotification = user == null || user.getRole() == Role.SYSTEM;
+        return systemNotification ? "automaticamente" : "por " + user.getCommonName() + " " + user.getRegistrationNumber();
+    }
+
+    private String formatDate(LocalDateTime date) {
+        return (date != null ? date : LocalDateTime.now()).format(DATE_FORMATTER);
+    }
+
+    private boolean showContent(EventType eventType) {
+        return eventType == EventType.COMMENT || eventType == EventType.REQUEST_PROCESSING_FAILED;
+    }
+
+    private String solicitationLink(Long solicitationId) {
+        return frontendUrl + "/solicitacoes/ver/" + solicitationId;
+    }
+}
@@ -0,0 +1,278 @@
+package com.dticnat.controleimpressao.service;
+
+import com.dticnat.controleimpressao.exception.ServiceUnavailableException;
+import com.dticnat.controleimpressao.storage.FileStore;
+import com.dticnat.controleimpressao.storage.LocalFile;
+import jakarta.annotation.PostConstruct;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Serviço de pré-visualização de páginas de arquivos PDF.
+ *
+ * As páginas são renderizadas com o {@link PDFRenderer} em um pool limitado ('previewExecutor') e
+ * armazenadas como PNG em um cache em disco com política LRU e orçamento de tamanho. A chave do cache
+ * é o hash do conteúdo do arquivo, a página e a largura, então cópias de mesmo conteúdo compartilham
+ * as renderizações e um arquivo substituído nunca serve uma imagem antiga.
+ */
+@Service
+public class PreviewService {
+
+    public static final int DEFAULT_WIDTH = 300;
+    private static final int MIN_WIDTH = 100;
+    private static final int MAX_WIDTH = 1600;
+    // As larguras são arredondadas para múltiplos deste passo, limitando as variações no cache
+    private static final int WIDTH_STEP = 50;
+
+    @Value("${arquivos.base-dir}")
+    private String BASE_DIR;
+
+    @Value("${previsualizacao.cache-size-mb}")
+    private long CACHE_SIZE_MB;
+
+    @Value("${previsualizacao.timeout-seconds}")
+    private long TIMEOUT_SECONDS;
+
+    @Autowired
+    private FileStore fileStore;
+
+    @Autowired
+    @Qualifier("previewExecutor")
+    private TaskExecutor previewExecutor;
+
+    private static final Logger logger = LoggerFactory.getLogger(PreviewService.class);
+
+    // Índice LRU (ordem de acesso) das renderizações em disco: nome do arquivo -> tamanho em bytes
+    private final LinkedHashMap<String, Long> cacheIndex = new LinkedHashMap<>(16, 0.75f, true);
+    private long cacheBytes = 0;
+
+    // Renderizações em andamento, para que requisições simultâneas da mesma página não a renderizem duas vezes
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    private Path cacheDir;
+
+    /**
+     * Reconstrói o índice do cache a partir dos arquivos em disco ao iniciar a aplicação,
+     * do mais antigo para o mais recente, e aplica o orçamento de tamanho.
+     */
+    @PostConstruct
+    public void loadCacheIndex() throws IOException {
+        cacheDir = Paths.get(BASE_DIR, ".previews");
+        Files.createDirectories(cacheDir);
+
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            files.filter(path -> path.getFileName().toString().endsWith(".png"))
+                    .sorted(Comparator.comparing(path -> path.toFile().lastModified()))
+                    .forEach(path -> register(path.getFileName().toString(), path.toFile().length()));
+        }
+
+        synchronized (cacheIndex) {
+            evictIfNeeded();
+            logger.info("Cache de pré-visualizações carregado: {} arquivo(s), {} bytes.", cacheIndex.size(), cacheBytes);
+        }
+    }
+
+    /**
+     * Retorna a pré-visualização (PNG) de uma página, renderizando-a caso não esteja em cache.
+     * A thread da requisição aguarda a renderização por no máximo `previsualizacao.timeout-seconds`.
+     *
+     * @param pdfPath     Caminho (chave) do arquivo PDF no armazenamento.
+     * @param contentHash Hash do conteúdo do arquivo.
+     * @param page        Número da página (a partir de 1).
+     * @param width       Largura desejada em pixels.
+     * @return O conteúdo da imagem PNG.
+     * @throws IOException                 Se não for possível ler o arquivo ou renderizar a página.
+     * @throws ServiceUnavailableException Se o pool de renderização estiver cheio ou a renderização exceder o tempo limite.
+     */
+    public byte[] getPreview(String pdfPath, String contentHash, int page, int width) throws IOException, ServiceUnavailableException {
+        String key = cacheKey(contentHash, page, normalizeWidth(width));
+
+        byte[] cached = readCached(key);
+        if (cached != null) return cached;
+
+        CompletableFuture<Path> rendering;
+        try {
+            rendering = submitRender(pdfPath, key, page, normalizeWidth(width));
+        } catch (TaskRejectedException e) {
+            throw new ServiceUnavailableException("Servidor ocupado renderizando pré-visualizações. Tente novamente em instantes.");
+        }
+
+        try {
+            return Files.readAllBytes(rendering.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        } catch (TimeoutException e) {
+            // A renderização continua e ficará disponível no cache para a próxima requisição
+            throw new ServiceUnavailableException("A pré-visualização ainda está sendo gerada. Tente novamente em instantes.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) throw ioException;
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Agenda a renderização antecipada da primeira página de um arquivo recém-salvo, na largura padrão.
+     * Não bloqueia o chamador; se o pool estiver cheio, a página será renderizada sob demanda.
+     *
+     * @param pdfPath     Caminho (chave) do arquivo PDF no armazenamento.
+     * @param contentHash Hash do conteúdo do arquivo.
+     */
+    public void prerender(String pdfPath, String contentHash) {
+        if (contentHash == null) return;
+
+        String key = cacheKey(contentHash, 1, DEFAULT_WIDTH);
+        synchronized (cacheIndex) {
+            if (cacheIndex.containsKey(key)) return;
+        }
+
+        try {
+            submitRender(pdfPath, key, 1, DEFAULT_WIDTH);
+        } catch (TaskRejectedException e) {
+            logger.info("Pré-visualização de {} não agendada: pool de renderização cheio.", pdfPath);
+        }
+    }
+
+// ============================================================= //
+//  Métodos auxiliares
+// ============================================================= //
+
+    private int normalizeWidth(int width) {
+        int clamped = Math.max(MIN_WIDTH, Math.min(MAX_WIDTH, width));
+        return Math.ceilDiv(clamped, WIDTH_STEP) * WIDTH_STEP;
+    }
+
+    private String cacheKey(String contentHash, int page, int width) {
+        return contentHash + "-p" + page + "-w" + width + ".png";
+    }
+
+    private byte[] readCached(String key) throws IOException {
+        synchronized (cacheIndex) {
+            // 'get' também marca a entrada como recentemente usada
+            if (cacheIndex.get(key) == null) return null;
+        }
+
+        try {
+            return Files.readAllBytes(cacheDir.resolve(key));
+        } catch (NoSuchFileException e) {
+            // Removido externamente (ou despejado entre a consulta e a leitura): renderiza novamente
+            forget(key);
+            return null;
+        }
+    }
+
+    private CompletableFuture<Path> submitRender(String pdfPath, String key, int page, int width) throws TaskRejectedException {
+        CompletableFuture<Path> rendering = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(key, rendering);
+        if (existing != null) return existing;
+
+        try {
+            previewExecutor.execute(() -> {
+                try {
+                    rendering.complete(render(pdfPath, key, page, width));
+                } catch (Throwable e) {
+                    logger.info("Erro ao renderizar pré-visualização de {}: {}", pdfPath, e.getMessage());
+                    rendering.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, rendering);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            inFlight.remove(key, rendering);
+            throw e;
+        }
+
+        return rendering;
+    }
+
+    private Path render(String pdfPath, String key, int page, int width) throws IOException {
+        Path target = cacheDir.resolve(key);
+
+        // O PDFBox exige acesso aleatório ao arquivo, então ele é disponibilizado localmente
+        try (LocalFile localFile = fileStore.openLocal(pdfPath);
+             PDDocument document = Loader.loadPDF(localFile.getPath().toFile())) {
+            if (page < 1 || page > document.getNumberOfPages())
+                throw new IllegalArgumentException("A página " + page + " não existe no arquivo (" + document.getNumberOfPages() + " páginas).");
+
+            // Escala para que a largura visível da página (considerando rotação) resulte em 'width' pixels
+            PDPage pdPage = document.getPage(page - 1);
+            PDRectangle cropBox = pdPage.getCropBox();
+            boolean rotated = pdPage.getRotation() % 180 != 0;
+            float pageWidth = rotated ? cropBox.getHeight() : cropBox.getWidth();
+
+            BufferedImage image = new PDFRenderer(document).renderImage(page - 1, width / pageWidth, ImageType.RGB);
+
+            // Escreve em arquivo temporário e move, para que leitores nunca vejam uma imagem parcial
+            Path temp = Files.createTempFile(cacheDir, key, ".tmp");
+            try {
+                ImageIO.write(image, "png", temp.toFile());
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        register(key, Files.size(target));
+        synchronized (cacheIndex) {
+            evictIfNeeded();
+        }
+        return target;
+    }
+
+    private void register(String key, long size) {
+        synchronized (cacheIndex) {
+            Long previous = cacheIndex.put(key, size);
+            cacheBytes += size - (previous != null ? previous : 0);
+        }
+    }
+
+    private void forget(String key) {
+        synchronized (cacheIndex) {
+            Long size = cacheIndex.remove(key);
+            if (size != null) cacheBytes -= size;
+        }
+    }
+
+    // Deve ser chamado com o lock de 'cacheIndex'
+    private void evictIfNeeded() {
+        long budget = CACHE_SIZE_MB * 1024 * 1024;
+        Iterator<Map.Entry<String, Long>> iterator = cacheIndex.entrySet().iterator();
+
+        // A iteração segue a ordem de acesso: as primeiras entradas são as menos usadas recentemente
+        while (cacheBytes > budget && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            cacheBytes -= eldest.getValue();
+
+            try {
+                Files.deleteIfExists(cacheDir.resolve(eldest.getKey()));
+            } catch (IOException e) {
+                logger.info("Erro ao remover pré-visualização do cache: {}", String.valueOf(e));
+            }
+        }
+    }
+}
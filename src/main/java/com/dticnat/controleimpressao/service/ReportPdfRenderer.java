@@ -0,0 +1,314 @@
+package com.dticnat.controleimpressao.service;
+
+import com.dticnat.controleimpressao.model.dto.ReportCopy;
+import com.dticnat.controleimpressao.model.dto.ReportSolicitation;
+import com.dticnat.controleimpressao.model.dto.ReportSummary;
+import jakarta.annotation.PostConstruct;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+
+/**
+ * Renderiza o relatório de solicitações em PDF diretamente com o PDFBox, sem motor de conversão de HTML.
+ *
+ * O resumo e as tabelas de solicitações (com as suas cópias) são desenhados nos content streams das páginas
+ * à medida que as linhas são consumidas, quebrando a página e repetindo o cabeçalho da tabela quando
+ * necessário. O conteúdo das páginas é mantido em memória até `relatorios.pdf.max-memory-mb` e, acima disso,
+ * em arquivo temporário (scratch file), então a memória não cresce com o número de páginas.
+ *
+ * As fontes TrueType (`relatorios.pdf.font` e `relatorios.pdf.font-bold`) são lidas uma única vez e
+ * embutidas em cada documento apenas com os glifos usados (subset). Se não puderem ser carregadas,
+ * são usadas as fontes padrão Helvetica, não embutidas.
+ */
+@Service
+public class ReportPdfRenderer {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+    // A4 em paisagem, para caber as colunas da tabela
+    private static final PDRectangle PAGE_SIZE = new PDRectangle(PDRectangle.A4.getHeight(), PDRectangle.A4.getWidth());
+    private static final float MARGIN = 36;
+    private static final float PADDING = 4;
+
+    private static final float TITLE_SIZE = 14;
+    private static final float TEXT_SIZE = 10;
+    private static final float ROW_SIZE = 9;
+    private static final float COPY_SIZE = 8;
+    private static final float ROW_HEIGHT = 16;
+    private static final float COPY_HEIGHT = 13;
+
+    // Colunas das solicitações: títulos e larguras (somam a largura útil da página)
+    private static final String[] COLUMNS = {"ID", "Usuário", "Matrícula", "Data de Criação", "Prazo (horas)", "Data de Conclusão", "Cópias", "Total de Páginas"};
+    private static final float[] WIDTHS = {55, 215, 90, 110, 60, 110, 60, 70};
+
+    // Colunas das cópias, recuadas sob a coluna de ID
+    private static final String[] COPY_COLUMNS = {"Arquivo", "Nº de Cópias", "Nº de Páginas", "Prévia de Folhas"};
+    private static final float[] COPY_WIDTHS = {415, 100, 100, 100};
+
+    @Value("${relatorios.pdf.font}")
+    private String FONT_LOCATION;
+
+    @Value("${relatorios.pdf.font-bold}")
+    private String BOLD_FONT_LOCATION;
+
+    @Value("${relatorios.pdf.max-memory-mb}")
+    private long MAX_MEMORY_MB;
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    // Conteúdo das fontes TrueType, compartilhado por todos os documentos (null: fonte padrão)
+    private byte[] regularFont;
+    private byte[] boldFont;
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportPdfRenderer.class);
+
+    @PostConstruct
+    public void loadFonts() {
+        regularFont = readFont(FONT_LOCATION);
+        boldFont = readFont(BOLD_FONT_LOCATION);
+    }
+
+    /**
+     * Renderiza o relatório em PDF e o escreve no stream informado.
+     *
+     * @param rows           Solicitações do relatório, com as suas cópias, consumidas uma única vez.
+     * @param summary        Totais do relatório.
+     * @param institutionName Nome da instituição, exibido no cabeçalho.
+     * @param generationDate Data de geração do relatório, exibida no cabeçalho.
+     * @param out            Destino do documento (e.g. o stream da resposta HTTP).
+     * @throws IOException Se não for possível gerar ou escrever o documento.
+     */
+    public void render(Iterator<ReportSolicitation> rows, ReportSummary summary,
+                       String institutionName, String generationDate, OutputStream out) throws IOException {
+        try (PDDocument document = new PDDocument(MemoryUsageSetting.setupMixed(MAX_MEMORY_MB * 1024 * 1024).streamCache)) {
+            PDFont regular = loadFont(document, regularFont, Standard14Fonts.FontName.HELVETICA);
+            PDFont bold = loadFont(document, boldFont, Standard14Fonts.FontName.HELVETICA_BOLD);
+
+            try (Layout layout = new Layout(document, regular, bold)) {
+                layout.summary(institutionName, generationDate, summary);
+                while (rows.hasNext()) layout.solicitation(rows.next());
+            }
+
+            document.save(out);
+        }
+        out.flush();
+    }
+
+// ============================================================= //
+//  Métodos auxiliares
+// ============================================================= //
+
+    private byte[] readFont(String location) {
+        if (location == null || location.isBlank()) return null;
+
+        try (InputStream content = resourceLoader.getResource(location).getInputStream()) {
+            return content.readAllBytes();
+        } catch (IOException e) {
+            logger.warn("Fonte {} dos relatórios em PDF não encontrada; usando fonte padrão: {}", location, e.getMessage());
+            return null;
+        }
+    }
+
+    private PDFont loadFont(PDDocument document, byte[] font, Standard14Fonts.FontName fallback) throws IOException {
+        if (font == null) return new PDType1Font(fallback);
+        return PDType0Font.load(document, new ByteArrayInputStream(font));
+    }
+
+    private static String formatDate(LocalDateTime date) {
+        return date != null ? date.format(DATE_FORMATTER) : "-";
+    }
+
+    private static String valueOf(Object value) {
+        return value != null ? String.valueOf(value) : "-";
+    }
+
+    /**
+     * Estado de desenho de um documento: página atual, seu content stream e a posição vertical.
+     */
+    private static class Layout implements AutoCloseable {
+        private final PDDocument document;
+        private final PDFont regular;
+        private final PDFont bold;
+        private PDPageContentStream content;
+        private float y;
+        private int pageNumber = 0;
+
+        Layout(PDDocument document, PDFont regular, PDFont bold) {
+            this.document = document;
+            this.regular = regular;
+            this.bold = bold;
+        }
+
+        void summary(String institutionName, String generationDate, ReportSummary summary) throws IOException {
+            newPage(false);
+
+            text(bold, TITLE_SIZE, MARGIN, y - TITLE_SIZE, institutionName, PAGE_SIZE.getWidth() - 2 * MARGIN);
+            y -= TITLE_SIZE + 10;
+            text(bold, TITLE_SIZE, MARGIN, y - TITLE_SIZE, "Relatório de Solicitações (" + summary.getTotalRequests() + ")", PAGE_SIZE.getWidth() - 2 * MARGIN);
+            y -= TITLE_SIZE + 12;
+            text(regular, TEXT_SIZE, MARGIN, y - TEXT_SIZE, "Relatório Gerado em: " + generationDate, PAGE_SIZE.getWidth() - 2 * MARGIN);
+            y -= TEXT_SIZE + 6;
+            text(regular, TEXT_SIZE, MARGIN, y - TEXT_SIZE, "Contagem Final de Páginas: " + summary.getTotalPageCount(), PAGE_SIZE.getWidth() - 2 * MARGIN);
+            y -= TEXT_SIZE + 14;
+
+            tableHeader();
+        }
+
+        void solicitation(ReportSolicitation solicitation) throws IOException {
+            // A linha da solicitação não é separada da sua primeira cópia
+            ensureSpace(ROW_HEIGHT + (solicitation.getCopies().isEmpty() ? 0 : 2 * COPY_HEIGHT));
+
+            content.setNonStrokingColor(0.92f, 0.92f, 0.92f);
+            content.addRect(MARGIN, y - ROW_HEIGHT, PAGE_SIZE.getWidth() - 2 * MARGIN, ROW_HEIGHT);
+            content.fill();
+            content.setNonStrokingColor(0f, 0f, 0f);
+
+            row(regular, ROW_SIZE, MARGIN, ROW_HEIGHT, WIDTHS,
+                    String.format("%06d", solicitation.getId()),
+                    solicitation.getCommonName(),
+                    solicitation.getRegistrationNumber(),
+                    formatDate(solicitation.getCreationDate()),
+                    String.valueOf(solicitation.getDeadline()),
+                    formatDate(solicitation.getConclusionDate()),
+                    String.valueOf(solicitation.getCopies().size()),
+                    String.valueOf(solicitation.getTotalPageCount()));
+
+            if (solicitation.getCopies().isEmpty()) return;
+
+            copyHeader();
+            for (ReportCopy copy : solicitation.getCopies()) {
+                if (ensureSpace(COPY_HEIGHT)) copyHeader();
+                row(regular, COPY_SIZE, MARGIN + WIDTHS[0], COPY_HEIGHT, COPY_WIDTHS,
+                        Boolean.TRUE.equals(copy.getIsPhysicalFile()) ? copy.getFileName() + " (Arquivo Físico)" : copy.getFileName(),
+                        valueOf(copy.getCopyCount()),
+                        valueOf(copy.getPageCount()),
+                        valueOf(copy.getSheetsTotal()));
+            }
+            y -= 4;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (content != null) finishPage();
+        }
+
+        private void tableHeader() throws IOException {
+            row(bold, ROW_SIZE, MARGIN, ROW_HEIGHT, WIDTHS, COLUMNS);
+            line(MARGIN, PAGE_SIZE.getWidth() - MARGIN);
+        }
+
+        private void copyHeader() throws IOException {
+            row(bold, COPY_SIZE, MARGIN + WIDTHS[0], COPY_HEIGHT, COPY_WIDTHS, COPY_COLUMNS);
+        }
+
+        // Quebra a página se não houver espaço; retorna true se uma nova página foi iniciada
+        private boolean ensureSpace(float height) throws IOException {
+            if (y - height >= MARGIN + COPY_HEIGHT) return false;
+            newPage(true);
+            return true;
+        }
+
+        private void newPage(boolean withHeader) throws IOException {
+            if (content != null) finishPage();
+
+            PDPage page = new PDPage(PAGE_SIZE);
+            document.addPage(page);
+            content = new PDPageContentStream(document, page);
+            pageNumber++;
+            y = PAGE_SIZE.getHeight() - MARGIN;
+
+            if (withHeader) tableHeader();
+        }
+
+        // Numera a página e fecha o seu content stream, liberando o conteúdo para o armazenamento temporário
+        private void finishPage() throws IOException {
+            text(regular, COPY_SIZE, PAGE_SIZE.getWidth() - MARGIN - 60, MARGIN / 2, "Página " + pageNumber, 60);
+            content.close();
+            content = null;
+        }
+
+        private void row(PDFont font, float size, float x, float height, float[] widths, String... values) throws IOException {
+            float baseline = y - height + (height - size) / 2 + 1;
+            for (int i = 0; i < values.length; i++) {
+                text(font, size, x + PADDING, baseline, values[i], widths[i] - 2 * PADDING);
+                x += widths[i];
+            }
+            y -= height;
+        }
+
+        private void line(float fromX, float toX) throws IOException {
+            content.setLineWidth(0.5f);
+            content.moveTo(fromX, y);
+            content.lineTo(toX, y);
+            content.stroke();
+        }
+
+        private void text(PDFont font, float size, float x, float baseline, String value, float maxWidth) throws IOException {
+            String text = fit(font, size, encodable(font, value != null ? value : "-"), maxWidth);
+            if (text.isEmpty()) return;
+
+            content.beginText();
+            content.setFont(font, size);
+            content.newLineAtOffset(x, baseline);
+            content.showText(text);
+            content.endText();
+        }
+
+        // Trunca o texto para a largura da coluna
+        private String fit(PDFont font, float size, String text, float maxWidth) throws IOException {
+            if (width(font, size, text) <= maxWidth) return text;
+
+            String ellipsis = "...";
+            int end = text.length();
+            while (end > 0 && width(font, size, text.substring(0, end) + ellipsis) > maxWidth) end--;
+            return end > 0 ? text.substring(0, end) + ellipsis : "";
+        }
+
+        private float width(PDFont font, float size, String text) throws IOException {
+            return font.getStringWidth(text) / 1000 * size;
+        }
+
+        // Substitui os caracteres sem glifo na fonte (e.g. fora do WinAnsi nas fontes padrão) e os de controle
+        private String encodable(PDFont font, String text) throws IOException {
+            try {
+                font.encode(text);
+                return text;
+            } catch (IllegalArgumentException e) {
+                StringBuilder result = new StringBuilder();
+                for (int i = 0; i < text.length(); ) {
+                    int codePoint = text.codePointAt(i);
+                    String character = new String(Character.toChars(codePoint));
+                    try {
+                        font.encode(character);
+                        result.append(character);
+                    } catch (IllegalArgumentException unsupported) {
+                        result.append('?');
+                    }
+                    i += Character.charCount(codePoint);
+                }
+                return result.toString();
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.dticnat.controleimpressao.service;
+
+import com.dticnat.controleimpressao.model.Copy;
+import com.dticnat.controleimpressao.model.Solicitation;
+import com.dticnat.controleimpressao.model.dto.ReportCopy;
+import com.dticnat.controleimpressao.model.dto.ReportSolicitation;
+import com.dticnat.controleimpressao.model.dto.ReportSummary;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.*;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+/**
+ * Serviço de geração de relatórios de solicitações.
+ *
+ * Os filtros são aplicados na base de dados (a mesma especificação da listagem de solicitações) e apenas
+ * os campos exibidos no relatório são consultados, por projeções: as solicitações em uma consulta e as
+ * suas cópias em outra, filtradas pela mesma especificação em uma subconsulta. Os totais são calculados
+ * com agregações SQL.
+ *
+ * As duas consultas são lidas por cursores (`relatorios.fetch-size` linhas por vez), ambas ordenadas por
+ * solicitação, e combinadas linha a linha enquanto o template é renderizado diretamente na resposta, que
+ * é enviada em partes. O tempo até o primeiro byte e a memória usada não dependem do tamanho do relatório.
+ */
+@Service
+public class ReportService {
+
+    public static final String INSTITUTION_NAME = "Instituto Federal do Rio Grande do Norte - Natal Central (IFRN - CNAT)";
+
+    private static final String TEMPLATE = "report";
+
+    // Solicitações renderizadas entre cada envio parcial da resposta
+    private static final int FLUSH_ROWS = 50;
+
+    @Value("${relatorios.fetch-size}")
+    private int FETCH_SIZE;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private TemplateEngine templateEngine;
+
+    @Autowired
+    private ReportPdfRenderer reportPdfRenderer;
+
+    /**
+     * Calcula os totais do relatório: número de solicitações e total de páginas.
+     *
+     * @param spec Especificação de filtragem das solicitações.
+     * @return Os totais do relatório.
+     */
+    @Transactional(readOnly = true)
+    public ReportSummary summarize(Specification<Solicitation> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Solicitation> solicitation = query.from(Solicitation.class);
+
+        query.multiselect(
+                        cb.count(solicitation),
+                        cb.coalesce(cb.sumAsLong(solicitation.get("totalPageCount")), 0L))
+                .where(spec.toPredicate(solicitation, query, cb));
+
+        Tuple totals = entityManager.createQuery(query).getSingleResult();
+        return new ReportSummary(totals.get(0, Long.class), totals.get(1, Long.class));
+    }
+
+    /**
+     * Renderiza o relatório em HTML (template "report.html") diretamente no writer informado.
+     * As solicitações são lidas da base de dados e renderizadas uma a uma, e o writer é descarregado
+     * a cada {@value #FLUSH_ROWS} solicitações, enviando o relatório em partes.
+     *
+     * @param spec   Especificação de filtragem das solicitações.
+     * @param writer Destino do relatório (e.g. o writer da resposta HTTP).
+     * @throws IOException Se não for possível escrever o relatório.
+     */
+    @Transactional(readOnly = true)
+    public void writeHtmlReport(Specification<Solicitation> spec, Writer writer) throws IOException {
+        ReportSummary summary = summarize(spec);
+
+        try (Stream<ReportSolicitation> solicitations = stream(solicitationsQuery(spec));
+             Stream<ReportCopy> copies = stream(copiesQuery(spec))) {
+            Iterator<ReportSolicitation> rows = new ReportRows(solicitations.iterator(), copies.iterator(), writer);
+
+            Context context = new Context();
+            context.setVariable("institutionName", INSTITUTION_NAME);
+            context.setVariable("reportGenerationDate", generationDate());
+            context.setVariable("totalPageCount", summary.getTotalPageCount());
+            context.setVariable("totalRequests", summary.getTotalRequests());
+            context.setVariable("solicitations", rows);
+
+            templateEngine.process(TEMPLATE, context, writer);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Gera o relatório em PDF (ver {@link ReportPdfRenderer}) e o escreve no stream informado.
+     * As solicitações são lidas da base de dados pelos mesmos cursores do relatório em HTML.
+     *
+     * @param spec Especificação de filtragem das solicitações.
+     * @param out  Destino do documento (e.g. o stream da resposta HTTP).
+     * @throws IOException Se não for possível gerar ou escrever o documento.
+     */
+    @Transactional(readOnly = true)
+    public void writePdfReport(Specification<Solicitation> spec, OutputStream out) throws IOException {
+        ReportSummary summary = summarize(spec);
+
+        try (Stream<ReportSolicitation> solicitations = stream(solicitationsQuery(spec));
+             Stream<ReportCopy> copies = stream(copiesQuery(spec))) {
+            Iterator<ReportSolicitation> rows = new ReportRows(solicitations.iterator(), copies.iterator(), null);
+            reportPdfRenderer.render(rows, summary, INSTITUTION_NAME, generationDate(), out);
+        }
+    }
+
+    /**
+     * Retorna a data de geração de um relatório, no formato exibido.
+     */
+    public String generationDate() {
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"));
+    }
+
+// ============================================================= //
+//  Métodos auxiliares
+// ============================================================= //
+
+    // Lê o resultado por cursor: sem o fetch size, o driver do PostgreSQL carrega todas as linhas na memória
+    private <T> Stream<T> stream(CriteriaQuery<T> query) {
+        return entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .getResultStream();
+    }
+
+    private CriteriaQuery<ReportSolicitation> solicitationsQuery(Specification<Solicitation> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ReportSolicitation> query = cb.createQuery(ReportSolicitation.class);
+        Root<Solicitation> solicitation = query.from(Solicitation.class);
+
+        return query.select(cb.construct(ReportSolicitation.class,
+                        solicitation.get("id"),
+                        solicitation.get("user").get("commonName"),
+                        solicitation.get("user").get("registrationNumber"),
+                        solicitation.get("creationDate"),
+                        solicitation.get("deadline"),
+                        solicitation.get("conclusionDate"),
+                        solicitation.get("totalPageCount")))
+                .where(spec.toPredicate(solicitation, query, cb))
+                .orderBy(cb.asc(solicitation.get("id")));
+    }
+
+    // Cópias das solicitações filtradas, na mesma ordem das solicitações e, em cada uma, por ID (como na entidade)
+    private CriteriaQuery<ReportCopy> copiesQuery(Specification<Solicitation> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ReportCopy> query = cb.createQuery(ReportCopy.class);
+        Root<Copy> copy = query.from(Copy.class);
+
+        Subquery<Long> solicitationIds = query.subquery(Long.class);
+        Root<Solicitation> solicitation = solicitationIds.from(Solicitation.class);
+        solicitationIds.select(solicitation.get("id")).where(spec.toPredicate(solicitation, query, cb));
+
+        return query.select(cb.construct(ReportCopy.class,
+                        copy.get("solicitationId"),
+                        copy.get("fileName"),
+                        copy.get("isPhysicalFile"),
+                        copy.get("printConfig").get("copyCount"),
+                        copy.get("pageCount"),
+                        copy.get("printConfig").get("sheetsTotal")))
+                .where(copy.get("solicitationId").in(solicitationIds))
+                .orderBy(cb.asc(copy.get("solicitationId")), cb.asc(copy.get("id")));
+    }
+
+    /**
+     * Combina os cursores de solicitações e de cópias (ambos ordenados por solicitação), associando a cada
+     * solicitação as suas cópias à medida que é consumida, e descarrega o writer (se houver) periodicamente.
+     */
+    private static class ReportRows implements Iterator<ReportSolicitation> {
+        private final Iterator<ReportSolicitation> solicitations;
+        private final Iterator<ReportCopy> copies;
+        private final Writer writer;
+        private ReportCopy nextCopy;
+        private int count = 0;
+
+        ReportRows(Iterator<ReportSolicitation> solicitations, Iterator<ReportCopy> copies, Writer writer) {
+            this.solicitations = solicitations;
+            this.copies = copies;
+            this.writer = writer;
+            this.nextCopy = copies.hasNext() ? copies.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return solicitations.hasNext();
+        }
+
+        @Override
+        public ReportSolicitation next() {
+            if (!solicitations.hasNext()) throw new NoSuchElementException();
+
+            // A solicitação anterior já foi renderizada: envia o que estiver pronto
+            if (writer != null && count > 0 && count % FLUSH_ROWS == 0) {
+                try {
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            count++;
+
+            ReportSolicitation solicitation = solicitations.next();
+            List<ReportCopy> solicitationCopies = new ArrayList<>();
+
+            // Cópias de solicitações anteriores não existem no cursor de solicitações (e.g. removidas durante a leitura)
+            while (nextCopy != null && nextCopy.getSolicitationId() < solicitation.getId())
+                nextCopy = copies.hasNext() ? copies.next() : null;
+            while (nextCopy != null && nextCopy.getSolicitationId().equals(solicitation.getId())) {
+                solicitationCopies.add(nextCopy);
+                nextCopy = copies.hasNext() ? copies.next() : null;
+            }
+
+            solicitation.setCopies(solicitationCopies);
+            return solicitation;
+        }
+    }
+}
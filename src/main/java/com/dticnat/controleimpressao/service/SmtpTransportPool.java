@@ -0,0 +1,191 @@
+package com.dticnat.controleimpressao.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Pool de conexões SMTP autenticadas, reutilizadas entre envios.
+ *
+ * Abrir uma conexão SMTP envolve handshake TCP, STARTTLS e autenticação, o que domina o tempo de envio
+ * de muitas mensagens pequenas. As conexões são mantidas abertas e reutilizadas (no máximo
+ * `notificacoes.pool-size` simultâneas), descartadas após `notificacoes.smtp.max-messages-per-connection`
+ * mensagens ou `notificacoes.smtp.max-idle-seconds` sem uso, e reabertas automaticamente em caso de falha.
+ */
+@Service
+public class SmtpTransportPool {
+
+    @Value("${notificacoes.pool-size}")
+    private int POOL_SIZE;
+
+    @Value("${notificacoes.smtp.max-idle-seconds}")
+    private long MAX_IDLE_SECONDS;
+
+    @Value("${notificacoes.smtp.max-messages-per-connection}")
+    private int MAX_MESSAGES_PER_CONNECTION;
+
+    @Autowired
+    private JavaMailSenderImpl mailSender;
+
+    // Conexões ociosas; as mais recentes no início, para que as antigas expirem no fim da fila
+    private final LinkedBlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+
+    private Semaphore permits;
+
+    private static final Logger logger = LoggerFactory.getLogger(SmtpTransportPool.class);
+
+    /**
+     * Envia uma mensagem por uma conexão do pool. Se a conexão reutilizada tiver sido encerrada pelo
+     * servidor, a mensagem é reenviada uma vez por uma nova conexão.
+     *
+     * @param message A mensagem a ser enviada.
+     * @throws MessagingException Se não for possível enviar a mensagem.
+     */
+    public void send(MimeMessage message) throws MessagingException {
+        message.saveChanges();
+
+        acquirePermit();
+        try {
+            PooledTransport pooled = borrow();
+            try {
+                pooled.send(message);
+            } catch (SendFailedException e) {
+                // Destinatários inválidos: a conexão continua utilizável
+                giveBack(pooled);
+                throw e;
+            } catch (MessagingException | IllegalStateException e) {
+                // Conexão encerrada pelo servidor (e.g. timeout de inatividade): tenta uma vez com nova conexão
+                pooled.close();
+                logger.info("Conexão SMTP descartada ({}), reenviando por nova conexão.", e.getMessage());
+                pooled = open();
+                try {
+                    pooled.send(message);
+                } catch (SendFailedException retryException) {
+                    giveBack(pooled);
+                    throw retryException;
+                } catch (MessagingException | IllegalStateException retryException) {
+                    // A nova conexão também falhou: não volta ao pool
+                    pooled.close();
+                    throw retryException;
+                }
+            }
+            giveBack(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Fecha as conexões ociosas há mais de `notificacoes.smtp.max-idle-seconds`.
+     * Este é um metodo agendado em ScheduledTasks.
+     *
+     * @return O número de conexões fechadas.
+     */
+    public int evictIdle() {
+        long now = System.currentTimeMillis();
+        List<PooledTransport> expired = new ArrayList<>();
+        idle.removeIf(pooled -> {
+            boolean isExpired = pooled.isIdleExpired(now);
+            if (isExpired) expired.add(pooled);
+            return isExpired;
+        });
+        expired.forEach(PooledTransport::close);
+        return expired.size();
+    }
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(Math.max(1, POOL_SIZE));
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) pooled.close();
+    }
+
+// ============================================================= //
+//  Métodos auxiliares
+// ============================================================= //
+
+    // Limita o número de conexões simultâneas ao servidor SMTP
+    private void acquirePermit() throws MessagingException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Envio interrompido.", e);
+        }
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        long now = System.currentTimeMillis();
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (!pooled.isIdleExpired(now) && pooled.isConnected()) return pooled;
+            pooled.close();
+        }
+        return open();
+    }
+
+    private void giveBack(PooledTransport pooled) {
+        if (pooled.sent >= MAX_MESSAGES_PER_CONNECTION) {
+            pooled.close();
+            return;
+        }
+        pooled.lastUsed = System.currentTimeMillis();
+        idle.offerFirst(pooled);
+    }
+
+    private PooledTransport open() throws MessagingException {
+        Transport transport = mailSender.getSession().getTransport(mailSender.getProtocol());
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        return new PooledTransport(transport);
+    }
+
+    // Conexão SMTP do pool, com a contagem de mensagens enviadas e o instante do último uso
+    private class PooledTransport {
+        private final Transport transport;
+        private int sent = 0;
+        private long lastUsed = System.currentTimeMillis();
+
+        PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+
+        void send(MimeMessage message) throws MessagingException {
+            transport.sendMessage(message, message.getAllRecipients());
+            sent++;
+        }
+
+        boolean isConnected() {
+            return transport.isConnected();
+        }
+
+        boolean isIdleExpired(long now) {
+            return now - lastUsed > MAX_IDLE_SECONDS * 1000;
+        }
+
+        void close() {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                // A conexão já pode ter sido encerrada pelo servidor
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.dticnat.controleimpressao.service;
+
+import com.dticnat.controleimpressao.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Locks por solicitação em torno das alterações dos arquivos no armazenamento (gravação, remoção e
+ * limpeza da pasta de uma solicitação), evitando que uma edição e uma remoção (ou o arquivamento)
+ * intercalem operações sobre a mesma pasta.
+ *
+ * Os locks são particionados (striped): o ID da solicitação escolhe um de `arquivos.lock.stripes`
+ * ReentrantLocks, então solicitações diferentes raramente disputam o mesmo lock e a memória é constante.
+ * Com `arquivos.lock.distributed`, o lock local é complementado por um advisory lock do PostgreSQL
+ * (em uma conexão dedicada durante a operação), coordenando várias réplicas do backend. Como o trabalho
+ * feito sob o lock também usa conexões do pool, no máximo `arquivos.lock.distributed-max-concurrent`
+ * operações (sempre menos que o tamanho do pool) detêm uma conexão de lock ao mesmo tempo.
+ *
+ * Métrica: 'arquivos.lock.espera' (tempo de espera pelo lock, por operação e resultado).
+ */
+@Service
+public class SolicitationLockService {
+
+    // Namespace dos advisory locks de solicitações (primeira chave de pg_try_advisory_lock(int, int))
+    private static final int ADVISORY_NAMESPACE = 0x534f4c;
+
+    // Intervalo entre tentativas de aquisição do advisory lock
+    private static final long ADVISORY_POLL_MILLIS = 50;
+
+    @Value("${arquivos.lock.stripes}")
+    private int STRIPES;
+
+    @Value("${arquivos.lock.distributed}")
+    private boolean DISTRIBUTED;
+
+    @Value("${arquivos.lock.timeout-seconds}")
+    private long TIMEOUT_SECONDS;
+
+    @Value("${arquivos.lock.distributed-max-concurrent}")
+    private int DISTRIBUTED_MAX_CONCURRENT;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int POOL_SIZE;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ReentrantLock[] stripes;
+
+    // Limita as conexões detidas por advisory locks, para não esgotar o pool
+    private Semaphore advisoryPermits;
+
+    // Solicitações cujo lock já é detido pela thread, para que chamadas aninhadas não aguardem a si mesmas
+    private final ThreadLocal<Set<Long>> held = ThreadLocal.withInitial(HashSet::new);
+
+    private static final Logger logger = LoggerFactory.getLogger(SolicitationLockService.class);
+
+    @PostConstruct
+    public void init() {
+        stripes = new ReentrantLock[Math.max(1, STRIPES)];
+        for (int i = 0; i < stripes.length; i++) stripes[i] = new ReentrantLock();
+
+        int permits = Math.max(1, Math.min(DISTRIBUTED_MAX_CONCURRENT, POOL_SIZE - 1));
+        if (DISTRIBUTED && permits < DISTRIBUTED_MAX_CONCURRENT)
+            logger.warn("arquivos.lock.distributed-max-concurrent ({}) reduzido para {}: deve ser menor que o pool de conexões ({}).",
+                    DISTRIBUTED_MAX_CONCURRENT, permits, POOL_SIZE);
+        advisoryPermits = new Semaphore(permits);
+    }
+
+    /**
+     * Executa a tarefa detendo o lock da solicitação.
+     *
+     * @param solicitationId ID da solicitação.
+     * @param operation      Nome da operação (tag da métrica).
+     * @param task           Tarefa a ser executada.
+     * @throws ServiceUnavailableException Se o lock não puder ser adquirido em `arquivos.lock.timeout-seconds`.
+     * @throws E                           Exceção lançada pela tarefa.
+     */
+    public <E extends Exception> void runLocked(Long solicitationId, String operation, LockedTask<E> task) throws E {
+        callLocked(solicitationId, operation, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Executa a tarefa detendo o lock da solicitação e retorna o seu resultado.
+     *
+     * @param solicitationId ID da solicitação.
+     * @param operation      Nome da operação (tag da métrica).
+     * @param call           Tarefa a ser executada.
+     * @return O resultado da tarefa.
+     * @throws ServiceUnavailableException Se o lock não puder ser adquirido em `arquivos.lock.timeout-seconds`.
+     * @throws E                           Exceção lançada pela tarefa.
+     */
+    public <T, E extends Exception> T callLocked(Long solicitationId, String operation, LockedCall<T, E> call) throws E {
+        Set<Long> heldIds = held.get();
+        if (heldIds.contains(solicitationId)) return call.call();
+
+        ReentrantLock lock = stripeFor(solicitationId);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+
+        try {
+            if (!lock.tryLock(TIMEOUT_SECONDS, TimeUnit.SECONDS)) throw timeout(solicitationId, operation, start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Operação interrompida aguardando os arquivos da solicitação.");
+        }
+
+        boolean permit = false;
+        Connection connection = null;
+        try {
+            if (DISTRIBUTED) {
+                permit = acquirePermit(deadline);
+                if (!permit) throw timeout(solicitationId, operation, start);
+                connection = acquireAdvisory(solicitationId, deadline);
+                if (connection == null) throw timeout(solicitationId, operation, start);
+            }
+            recordWait(operation, "adquirido", start);
+
+            heldIds.add(solicitationId);
+            try {
+                return call.call();
+            } finally {
+                heldIds.remove(solicitationId);
+            }
+        } finally {
+            if (connection != null) releaseAdvisory(connection, solicitationId);
+            if (permit) advisoryPermits.release();
+            lock.unlock();
+        }
+    }
+
+// ============================================================= //
+//  Métodos auxiliares
+// ============================================================= //
+
+    private ReentrantLock stripeFor(Long solicitationId) {
+        // Espalha os bits do ID, já que IDs de sequência são consecutivos
+        int hash = Long.hashCode(solicitationId) * 0x9E3779B9;
+        return stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+    }
+
+    // Aguarda, até o prazo, uma das conexões de lock disponíveis
+    private boolean acquirePermit(long deadline) {
+        try {
+            return advisoryPermits.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Tenta adquirir o advisory lock até o prazo; retorna a conexão que o detém, ou null se o prazo expirar
+    private Connection acquireAdvisory(Long solicitationId, long deadline) {
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            try (PreparedStatement statement = connection.prepareStatement("select pg_try_advisory_lock(?, ?)")) {
+                statement.setInt(1, ADVISORY_NAMESPACE);
+                statement.setInt(2, Long.hashCode(solicitationId));
+
+                while (true) {
+                    try (ResultSet result = statement.executeQuery()) {
+                        if (result.next() && result.getBoolean(1)) return connection;
+                    }
+                    if (System.nanoTime() >= deadline) break;
+                    Thread.sleep(ADVISORY_POLL_MILLIS);
+                }
+            }
+        } catch (SQLException e) {
+            closeQuietly(connection);
+            throw new ServiceUnavailableException("Não foi possível obter o lock da solicitação: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        closeQuietly(connection);
+        return null;
+    }
+
+    private void releaseAdvisory(Connection connection, Long solicitationId) {
+        try (PreparedStatement statement = connection.prepareStatement("select pg_advisory_unlock(?, ?)")) {
+            statement.setInt(1, ADVISORY_NAMESPACE);
+            statement.setInt(2, Long.hashCode(solicitationId));
+            statement.executeQuery().close();
+        } catch (SQLException e) {
+            // Advisory locks de sessão são liberados pelo PostgreSQL quando a conexão é encerrada
+            logger.warn("Falha ao liberar lock da solicitação ID {}: {}", solicitationId, e.getMessage());
+        } finally {
+            closeQuietly(connection);
+        }
+    }
+
+    private void closeQuietly(Connection connection) {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("Falha ao devolver conexão do lock de solicitação: {}", e.getMessage());
+        }
+    }
+
+    private ServiceUnavailableException timeout(Long solicitationId, String operation, long start) {
+        recordWait(operation, "esgotado", start);
+        logger.warn("Tempo esgotado aguardando o lock da solicitação ID {} ({}).", solicitationId, operation);
+        return new ServiceUnavailableException("Os arquivos da solicitação estão sendo alterados por outra operação. Tente novamente em instantes.");
+    }
+
+    private void recordWait(String operation, String outcome, long start) {
+        Timer.builder("arquivos.lock.espera")
+                .description("Tempo de espera pelo lock dos arquivos de uma solicitação")
+                .tag("operacao", operation)
+                .tag("resultado", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Tarefa executada sob o lock de uma solicitação.
+     */
+    @FunctionalInterface
+    public interface LockedTask<E extends Exception> {
+        void run() throws E;
+    }
+
+    /**
+     * Tarefa com resultado executada sob o lock de uma solicitação.
+     */
+    @FunctionalInterface
+    public interface LockedCall<T, E extends Exception> {
+        T call() throws E;
+    }
+}
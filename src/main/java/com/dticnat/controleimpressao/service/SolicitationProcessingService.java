@@ -0,0 +1,220 @@
+package com.dticnat.controleimpressao.service;
+
+import com.dticnat.controleimpressao.model.Copy;
+import com.dticnat.controleimpressao.model.Solicitation;
+import com.dticnat.controleimpressao.model.User;
+import com.dticnat.controleimpressao.model.enums.ProcessingStatus;
+import com.dticnat.controleimpressao.repository.SolicitationRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processamento em segundo plano dos arquivos de solicitações criadas em modo assíncrono.
+ *
+ * Cada solicitação em processamento pertence a uma instância do backend ('processing_owner'), que renova
+ * a posse ('processing_claimed_at') periodicamente enquanto processa. Com várias réplicas, a retomada
+ * de solicitações pendentes assume, com um único UPDATE, apenas as solicitações cuja posse não é renovada
+ * há mais de `processamento.retomada-minutos` (e.g. a instância dona foi encerrada), e uma instância
+ * que perdeu a posse não as processa.
+ *
+ * Os arquivos enviados ficam no staging local do host que recebeu a requisição, então apenas instâncias do
+ * mesmo host retomam uma solicitação. Solicitações de outro host abandonadas há mais de
+ * `arquivos.upload-expiration-hours` (quando o staging já teria expirado) são marcadas como 'FAILED'.
+ */
+@Service
+public class SolicitationProcessingService {
+
+    private static final String CLAIM_STALE_SQL = "update solicitation set processing_owner = :owner, processing_claimed_at = localtimestamp " +
+            "where processing_status = 'PROCESSING' and (processing_claimed_at is null " +
+            "or processing_claimed_at < localtimestamp - make_interval(mins => :staleMinutes)) " +
+            "and (processing_owner is null or left(processing_owner, :hostPrefixLength) = :hostPrefix) " +
+            "returning id";
+
+    private static final String CLAIM_ORPHANED_SQL = "update solicitation set processing_owner = :owner, processing_claimed_at = localtimestamp " +
+            "where processing_status = 'PROCESSING' and processing_claimed_at < localtimestamp - make_interval(hours => :expirationHours) " +
+            "returning id";
+
+    private static final String RENEW_SQL = "update solicitation set processing_claimed_at = localtimestamp " +
+            "where id = :id and processing_owner = :owner and processing_status = 'PROCESSING'";
+
+    @Value("${processamento.retomada-minutos}")
+    private int RESUME_MINUTES;
+
+    @Value("${arquivos.upload-expiration-hours}")
+    private int UPLOAD_EXPIRATION_HOURS;
+
+    @Autowired
+    private SolicitationRepository solicitationRepository;
+
+    @Autowired
+    private SolicitationService solicitationService;
+
+    @Autowired
+    private CopyService copyService;
+
+    @Autowired
+    private UploadService uploadService;
+
+    @Autowired
+    private JobLockService jobLockService;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    @Qualifier("solicitationProcessingExecutor")
+    private TaskExecutor processingExecutor;
+
+    // Renova a posse das solicitações em processamento, inclusive durante a validação de um arquivo longo
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "processing-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Logger logger = LoggerFactory.getLogger(SolicitationProcessingService.class);
+
+    /**
+     * Agenda o processamento dos arquivos de uma solicitação criada em modo assíncrono.
+     * A solicitação já pertence a esta instância desde a criação.
+     *
+     * @param solicitationId ID da solicitação.
+     */
+    public void submit(Long solicitationId) {
+        processingExecutor.execute(() -> process(solicitationId));
+    }
+
+    /**
+     * Retoma o processamento de solicitações que ficaram pendentes (e.g. a instância dona foi reiniciada
+     * antes de concluir o processamento), ao iniciar a aplicação e periodicamente (ver ScheduledTasks).
+     * Apenas as solicitações deste host sem posse renovada há `processamento.retomada-minutos` são assumidas,
+     * então solicitações em processamento em outra réplica não são processadas novamente.
+     * Os arquivos continuam no staging deste host, então basta reagendá-las.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePending() {
+        String hostPrefix = jobLockService.getHostPrefix();
+        List<Long> pendingIds = namedParameterJdbcTemplate.queryForList(CLAIM_STALE_SQL,
+                new MapSqlParameterSource()
+                        .addValue("owner", jobLockService.getInstanceId())
+                        .addValue("staleMinutes", RESUME_MINUTES)
+                        .addValue("hostPrefix", hostPrefix)
+                        .addValue("hostPrefixLength", hostPrefix.length()),
+                Long.class);
+        if (!pendingIds.isEmpty()) {
+            logger.info("Retomando processamento de {} solicitação(ões) pendente(s).", pendingIds.size());
+            pendingIds.forEach(this::submit);
+        }
+
+        failOrphaned();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+    }
+
+    /**
+     * Processa os arquivos de uma solicitação: finaliza (valida) cada sessão de envio
+     * e move os arquivos para o diretório da solicitação.
+     * Em caso de falha, as sessões restantes são descartadas e a solicitação é marcada como 'FAILED'.
+     *
+     * @param solicitationId ID da solicitação.
+     */
+    public void process(Long solicitationId) {
+        Optional<Solicitation> optSolicitation = solicitationRepository.findById(solicitationId);
+
+        // A solicitação pode ter sido removida enquanto aguardava na fila
+        if (optSolicitation.isEmpty()) {
+            logger.info("Solicitação ID {} não encontrada para processamento.", solicitationId);
+            return;
+        }
+
+        Solicitation solicitation = optSolicitation.get();
+        if (solicitation.getProcessingStatus() != ProcessingStatus.PROCESSING) return;
+
+        // A solicitação pode ter sido assumida por outra instância enquanto aguardava na fila
+        if (!renewClaim(solicitationId)) {
+            logger.info("Solicitação ID {} assumida por outra instância; processamento ignorado.", solicitationId);
+            return;
+        }
+
+        // As sessões de envio pertencem ao dono da solicitação, que as criou na requisição
+        User owner = solicitation.getUser();
+        List<Copy> copies = copyService.findAllBySolicitationId(solicitationId, "")
+                .stream()
+                .filter(copy -> copy.getUploadId() != null)
+                .toList();
+
+        long interval = Math.max(1, RESUME_MINUTES * 60L / 3);
+        ScheduledFuture<?> renewal = heartbeat.scheduleAtFixedRate(() -> {
+            try {
+                if (!renewClaim(solicitationId))
+                    logger.warn("Posse da solicitação ID {} perdida durante o processamento.", solicitationId);
+            } catch (Exception e) {
+                logger.warn("Falha ao renovar a posse da solicitação ID {}: {}", solicitationId, e.getMessage());
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+
+        try {
+            for (Copy copy : copies) {
+                uploadService.finalizeSession(copy.getUploadId(), owner);
+            }
+
+            solicitationService.attachUploadedFiles(solicitation, copies, owner);
+            solicitationService.refreshTotalPageCount(solicitation);
+            solicitationService.finishProcessing(solicitation, ProcessingStatus.READY, null);
+            logger.info("Solicitação ID {} processada com sucesso.", solicitationId);
+
+        } catch (Exception e) {
+            copies.forEach(copy -> uploadService.discardIfExists(copy.getUploadId()));
+            String detail = e.getMessage() != null ? e.getMessage() : "Falha ao processar os arquivos da solicitação.";
+            solicitationService.finishProcessing(solicitation, ProcessingStatus.FAILED, detail);
+            logger.error("Falha ao processar solicitação ID {}: {}", solicitationId, e.getMessage());
+        } finally {
+            renewal.cancel(false);
+        }
+    }
+
+    // Marca como 'FAILED' as solicitações abandonadas por outro host há mais tempo que a expiração do staging:
+    // os arquivos enviados não estão disponíveis neste host e não serão mais processados por aquele
+    private void failOrphaned() {
+        List<Long> orphanedIds = namedParameterJdbcTemplate.queryForList(CLAIM_ORPHANED_SQL,
+                new MapSqlParameterSource()
+                        .addValue("owner", jobLockService.getInstanceId())
+                        .addValue("expirationHours", UPLOAD_EXPIRATION_HOURS),
+                Long.class);
+
+        for (Long solicitationId : orphanedIds) {
+            solicitationRepository.findById(solicitationId).ifPresent(solicitation -> {
+                solicitationService.finishProcessing(solicitation, ProcessingStatus.FAILED,
+                        "Os arquivos enviados não estão mais disponíveis para processamento.");
+                logger.warn("Solicitação ID {} abandonada por outra instância marcada como falha.", solicitationId);
+            });
+        }
+    }
+
+    // Renova a posse da solicitação por esta instância; retorna false se ela pertence a outra instância
+    private boolean renewClaim(Long solicitationId) {
+        return namedParameterJdbcTemplate.update(RENEW_SQL, new MapSqlParameterSource()
+                .addValue("id", solicitationId)
+                .addValue("owner", jobLockService.getInstanceId())) > 0;
+    }
+}
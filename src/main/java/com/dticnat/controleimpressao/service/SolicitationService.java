@@ -1,28 +1,41 @@
 package com.dticnat.controleimpressao.service;
 
+import com.dticnat.controleimpressao.exception.ConflictException;
 import com.dticnat.controleimpressao.exception.FileGoneException;
 import com.dticnat.controleimpressao.exception.ForbiddenException;
 import com.dticnat.controleimpressao.exception.PhysicalFileException;
+import com.dticnat.controleimpressao.exception.ServiceUnavailableException;
 import com.dticnat.controleimpressao.exception.UnauthorizedException;
 import com.dticnat.controleimpressao.model.Copy;
 import com.dticnat.controleimpressao.model.Event;
 import com.dticnat.controleimpressao.model.Solicitation;
+import com.dticnat.controleimpressao.model.UploadSession;
 import com.dticnat.controleimpressao.model.User;
 import com.dticnat.controleimpressao.model.dto.CommentDTO;
+import com.dticnat.controleimpressao.model.dto.PdfAnalysis;
+import com.dticnat.controleimpressao.model.dto.ProcessingStatusDTO;
+import com.dticnat.controleimpressao.model.dto.SolicitationSummary;
 import com.dticnat.controleimpressao.model.dto.SolicitationDTO;
 import com.dticnat.controleimpressao.model.enums.EventType;
+import com.dticnat.controleimpressao.model.enums.ProcessingStatus;
 import com.dticnat.controleimpressao.model.enums.Role;
+import com.dticnat.controleimpressao.repository.EventRepository;
 import com.dticnat.controleimpressao.repository.SolicitationRepository;
+import com.dticnat.controleimpressao.storage.FileStore;
+import com.dticnat.controleimpressao.storage.LocalFile;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.criteria.*;
 import jakarta.validation.Valid;
 import org.apache.coyote.BadRequestException;
-import org.apache.tomcat.util.http.fileupload.FileUtils;
+import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.InputStreamResource;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -31,40 +44,69 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
-import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 
 @Service
 public class SolicitationService {
 
+    // Tentativas das operações idempotentes (alternar status, comentar) em caso de conflito de versão
+    private static final int MAX_CONFLICT_ATTEMPTS = 3;
+    private static final String CONFLICT_MESSAGE = "A solicitação foi alterada por outro usuário. Recarregue-a e tente novamente.";
+
     @Autowired
     private SolicitationRepository solicitationRepository;
 
     @Autowired
     private CopyService copyService;
 
+    @Autowired
+    private SubscriptionService subscriptionService;
+
     @Autowired
     private AuthService authService;
 
     @Autowired
     private EventService eventService;
 
+    @Autowired
+    private EventRepository eventRepository;
+
     @Autowired
     private FileValidationService fileValidationService;
 
-    @Value("${arquivos.base-dir}")
-    private String BASE_DIR;
+    @Autowired
+    private UploadService uploadService;
+
+    @Autowired
+    private PreviewService previewService;
+
+    @Autowired
+    private FileStore fileStore;
+
+    @Autowired
+    private SolicitationLockService solicitationLockService;
+
+    @Autowired
+    private JobLockService jobLockService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
 
-    @Value("${arquivos.cleanup-rate-hours}")
-    private Long CLEANUP_RATE_HOURS;
+    @PersistenceContext
+    private EntityManager entityManager;
 
     private static final Logger logger = LoggerFactory.getLogger(SolicitationService.class);
 
@@ -79,14 +121,17 @@ public class SolicitationService {
      * @param query            Termo de pesquisa para filtrar por texto em campos relevantes (opcional).
      * @param is_concluded     Booleano para filtrar solicitações concluídas (true) ou pendentes (false) (opcional).
      * @param userRegistration Registro do usuário para filtrar solicitações por usuário (opcional).
-     * @return Uma lista de solicitações que correspondem aos critérios de filtragem, ordenadas por ID em ordem ascendente.
+     * @return Uma lista de solicitações (sem a linha do tempo) que correspondem aos critérios de filtragem, ordenadas por ID em ordem ascendente.
      */
-    public List<Solicitation> findAll(LocalDateTime startDate, LocalDateTime endDate, String query, Boolean is_concluded, String userRegistration) {
+    public List<SolicitationSummary> findAll(LocalDateTime startDate, LocalDateTime endDate, String query, Boolean is_concluded, String userRegistration) {
         Specification<Solicitation> spec = filterRequests(startDate, endDate, query, is_concluded, userRegistration);
-        return solicitationRepository.findAll(spec, Sort.by(Sort.Direction.ASC, "id"));
+        return solicitationRepository.findAll(spec, Sort.by(Sort.Direction.ASC, "id"))
+                .stream()
+                .map(this::summarize)
+                .toList();
     }
 
-    public Page<Solicitation> findPage(LocalDateTime startDate, LocalDateTime endDate,
+    public Page<SolicitationSummary> findPage(LocalDateTime startDate, LocalDateTime endDate,
                                        String query, Boolean is_concluded, String userRegistration,
                                        int pageNo, int pageSize,
                                        String sortingColumn, String sortingDirection) {
@@ -109,7 +154,7 @@ public class SolicitationService {
 
         Pageable pageable = PageRequest.of(pageNo, pageSize, sort);
         Specification<Solicitation> spec = filterRequests(startDate, endDate, query, is_concluded, userRegistration);
-        return solicitationRepository.findAll(spec, pageable);
+        return solicitationRepository.findAll(spec, pageable).map(this::summarize);
     }
 
     /**
@@ -201,32 +246,43 @@ public class SolicitationService {
      * a data de conclusão é definida como zero, marcando-a como pendente. Caso contrário, a data de
      * conclusão é definida como a data atual, marcando-a como concluída.
      *
+     * A alteração é condicionada à versão da solicitação: em caso de conflito com outra alteração simultânea,
+     * a solicitação é recarregada e a operação repetida. Se outro usuário já tiver aplicado a mesma
+     * alteração (e.g. dois operadores fechando a mesma solicitação), nada é feito.
+     *
      * @param solicitation A solicitação a ser atualizada.
      * @throws EntityNotFoundException Se a solicitação com o ID especificado não for encontrada.
      * @throws ForbiddenException      Se a solicitação estiver arquivada (stale), impedindo a alteração do status.
+     * @throws ConflictException       Se o conflito persistir após as tentativas.
      */
-    public void toggleConclusionDate(Solicitation solicitation, boolean sendNotification, User user) throws ForbiddenException {
-        // Não atualize o status de solicitações obsoletas/arquivadas
-        if (solicitation.isArchived()) throw new ForbiddenException();
-
+    public void toggleConclusionDate(Solicitation solicitation, boolean sendNotification, User user) throws ForbiddenException, ConflictException {
         // Se estiver aberto, feche (null). Se estiver fechado (null), abra.
-        LocalDateTime newConclusionDate = solicitation.getConclusionDate() == null ? LocalDateTime.now() : null;
-        EventType eventType = newConclusionDate != null ? EventType.REQUEST_CLOSING : EventType.REQUEST_OPENING;
+        boolean closing = solicitation.getConclusionDate() == null;
 
-        // Adicionar evento de toggle à timeline
-        solicitation.setConclusionDate(newConclusionDate);
-        solicitation.getTimeline().add(Event.builder()
-                .solicitationId(solicitation.getId())
-                .user(user)
-                .type(eventType)
-                .creationDate(LocalDateTime.now())
-                .build());
+        retryOnConflict("alternar-status", solicitation, current -> {
+            // Não atualize o status de solicitações obsoletas/arquivadas
+            if (current.isArchived()) throw new ForbiddenException();
+
+            // Outro usuário já aplicou a mesma alteração
+            if ((current.getConclusionDate() == null) != closing) return;
+
+            LocalDateTime newConclusionDate = closing ? LocalDateTime.now() : null;
+            EventType eventType = closing ? EventType.REQUEST_CLOSING : EventType.REQUEST_OPENING;
 
-        Solicitation updatedSolicitation = solicitationRepository.save(solicitation);
+            // Atualiza apenas a data de conclusão e adiciona evento de toggle à timeline
+            if (solicitationRepository.updateConclusionDate(current.getId(), newConclusionDate, current.getVersion()) == 0)
+                throw new ConflictException(CONFLICT_MESSAGE);
 
-        // Envia a notificação de edição, caso flag de notificação seja true
-        if (sendNotification)
-            eventService.sendNotificationForLatestEvent(updatedSolicitation, user);
+            Event event = eventService.appendEvent(current, Event.builder()
+                    .user(user)
+                    .type(eventType)
+                    .creationDate(LocalDateTime.now())
+                    .build());
+
+            // Envia a notificação de edição, caso flag de notificação seja true
+            if (sendNotification)
+                eventService.sendNotificationForEvent(current, user, event);
+        });
     }
 
     /**
@@ -238,20 +294,38 @@ public class SolicitationService {
      * @return O objeto Request persistido na base de dados, incluindo o ID gerado.
      */
     public Solicitation create(SolicitationDTO solicitationDTO, User user) {
+        return create(solicitationDTO, user, false);
+    }
+
+    /**
+     * Cria uma nova solicitação na base de dados, opcionalmente em modo assíncrono.
+     * Em modo assíncrono a solicitação inicia com status de processamento 'PROCESSING',
+     * e os arquivos são validados e finalizados em segundo plano.
+     *
+     * @param solicitationDTO O objeto Request contendo os dados da solicitação a ser criada.
+     * @param async           Flag indicando se os arquivos serão processados assincronamente.
+     * @return O objeto Request persistido na base de dados, incluindo o ID gerado.
+     */
+    public Solicitation create(SolicitationDTO solicitationDTO, User user, boolean async) {
         // Cria base da solicitação
-        // TODO: Verificar número de páginas total para cópias
         Solicitation newSolicitation = Solicitation
                 .builder()
                 .deadline(solicitationDTO.getDeadline())
                 .creationDate(LocalDateTime.now())
                 .user(user)
-                .totalPageCount(solicitationDTO.getTotalPageCount())
+                .processingStatus(async ? ProcessingStatus.PROCESSING : ProcessingStatus.READY)
+                .processingOwner(async ? jobLockService.getInstanceId() : null)
+                .processingClaimedAt(async ? LocalDateTime.now() : null)
                 .build();
 
         // Intancia arquivos e associa à solicitação
         List<Copy> copies = copyService.instanceCopiesFromRequest(newSolicitation, solicitationDTO.getCopies());
         newSolicitation.setCopies(copies);
 
+        // O total de páginas é calculado no servidor, ignorando o valor enviado pelo cliente
+        // Para arquivos digitais, é recalculado após a análise dos PDFs (ver 'refreshTotalPageCount')
+        newSolicitation.setTotalPageCount(copyService.computeTotalPageCount(copies));
+
         // Cria e associa evento inicial de criação à linha do tempo
         Event creationEvent = Event
                 .builder()
@@ -261,9 +335,20 @@ public class SolicitationService {
                 .build();
         List<Event> events = List.of(creationEvent);
         newSolicitation.setTimeline(events);
+        newSolicitation.setLastEventType(creationEvent.getType());
+        newSolicitation.setLastEventAt(creationEvent.getCreationDate());
+        newSolicitation.setLastEventBy(eventService.lastEventBy(user));
 
         // Persistir a solicitação no banco de dados
-        return solicitationRepository.save(newSolicitation);
+        Solicitation savedSolicitation = solicitationRepository.save(newSolicitation);
+
+        // O ID do evento de criação só é conhecido após a persistência em cascata
+        solicitationRepository.initLastEventId(savedSolicitation.getId(), creationEvent.getId());
+
+        // Inscreve o dono nas notificações da solicitação
+        subscriptionService.subscribe(savedSolicitation.getId(), user);
+
+        return savedSolicitation;
     }
 
     /**
@@ -275,61 +360,176 @@ public class SolicitationService {
      *
      * @param id              O ID da solicitação a ser atualizada.
      * @param newSolicitation O objeto Request contendo os dados a serem atualizados.
+     * A edição substitui a solicitação inteira, então é rejeitada como conflito se a solicitação foi alterada
+     * desde a versão informada pelo cliente (se houver) ou desde a sua leitura.
+     *
      * @return O objeto Request atualizado e persistido na base de dados.
      * @throws EntityNotFoundException Se a solicitação com o ID especificado não for encontrada.
+     * @throws ConflictException       Se a solicitação foi alterada simultaneamente.
      */
-    public Solicitation patch(Long id, Solicitation newSolicitation, User user) throws EntityNotFoundException {
+    @Transactional
+    public Solicitation patch(Long id, Solicitation newSolicitation, User user) throws EntityNotFoundException, ConflictException {
         Solicitation solicitation = findById(id).orElseThrow(EntityNotFoundException::new);
 
+        // A edição deve partir da versão atual da solicitação
+        checkVersion(newSolicitation, solicitation);
+        newSolicitation.setVersion(solicitation.getVersion());
+
         // Garante que campos imutáveis não sejam alterados
         newSolicitation.setId(solicitation.getId());
         newSolicitation.setArchived(solicitation.isArchived());
         newSolicitation.setUser(newSolicitation.getUser());
         newSolicitation.setCreationDate(solicitation.getCreationDate());
         newSolicitation.setConclusionDate(solicitation.getConclusionDate());
-
-        // Adiciona evento de edição à linha do tempo
-        solicitation.getTimeline().add(
-                Event
-                        .builder()
-                        .solicitationId(newSolicitation.getId())
-                        .user(user)
-                        .type(EventType.REQUEST_EDITING)
-                        .creationDate(LocalDateTime.now())
-                        .build()
-        );
+        newSolicitation.setProcessingStatus(solicitation.getProcessingStatus());
+        newSolicitation.setProcessingOwner(solicitation.getProcessingOwner());
+        newSolicitation.setProcessingClaimedAt(solicitation.getProcessingClaimedAt());
+        newSolicitation.setLastEventId(solicitation.getLastEventId());
+        newSolicitation.setLastEventType(solicitation.getLastEventType());
+        newSolicitation.setLastEventAt(solicitation.getLastEventAt());
+        newSolicitation.setLastEventBy(solicitation.getLastEventBy());
+
+        // Número de páginas e tamanhos de arquivos já analisados não podem ser alterados pelo cliente
+        // Cópias novas já foram analisadas em 'saveFiles'; as demais herdam a análise da versão original
+        Map<String, Copy> originalCopies = solicitation.getCopies().stream()
+                .collect(Collectors.toMap(Copy::getFileName, copy -> copy, (first, second) -> first));
+        for (Copy copy : newSolicitation.getCopies()) {
+            Copy original = originalCopies.get(copy.getFileName());
+            if (copy.getContentHash() == null && original != null && original.getPageSizes() != null) {
+                copy.setPageCount(original.getPageCount());
+                copy.setPageSizes(original.getPageSizes());
+                copy.setContentHash(original.getContentHash());
+            }
+            copy.getPrintConfig().setSheetsTotal(copyService.computeSheets(copy.getPrintConfig(), copy.getPageCount()));
+        }
+        newSolicitation.setTotalPageCount(copyService.computeTotalPageCount(newSolicitation.getCopies()));
 
         newSolicitation.setTimeline(solicitation.getTimeline());
 
-        // Salva solicitação editada
-        Solicitation updatedSolicitation = solicitationRepository.save(newSolicitation);
+        // Salva solicitação editada; o UPDATE é condicionado à versão lida
+        Solicitation updatedSolicitation;
+        try {
+            updatedSolicitation = solicitationRepository.saveAndFlush(newSolicitation);
+        } catch (OptimisticLockingFailureException e) {
+            countConflict("editar", "rejeitado");
+            throw new ConflictException(CONFLICT_MESSAGE);
+        }
+
+        // Adiciona evento de edição à linha do tempo
+        Event event = eventService.appendEvent(updatedSolicitation, Event
+                .builder()
+                .user(user)
+                .type(EventType.REQUEST_EDITING)
+                .creationDate(LocalDateTime.now())
+                .build());
 
         // Envia notificação de edição às partes interessadas
-        eventService.sendNotificationForLatestEvent(updatedSolicitation, user);
+        eventService.sendNotificationForEvent(updatedSolicitation, user, event);
 
+        // Recarrega a versão e o último evento, atualizados diretamente na base de dados
+        entityManager.refresh(updatedSolicitation);
         return updatedSolicitation;
     }
 
+    /**
+     * Edita uma solicitação e os seus arquivos como uma única operação, sob o lock da solicitação.
+     * A versão informada pelo cliente é verificada antes de qualquer alteração nos arquivos. Os arquivos
+     * novos e a edição são gravados em uma transação: se a edição falhar (e.g. conflito de versão), as
+     * cópias novas são desfeitas e os arquivos gravados são removidos. Os arquivos das cópias removidas
+     * só são apagados após a confirmação da edição.
+     *
+     * @param id              O ID da solicitação a ser atualizada.
+     * @param newSolicitation O objeto Request contendo os dados a serem atualizados.
+     * @param files           A lista de arquivos anexados (MultipartFile).
+     * @param user            Usuário que está editando a solicitação.
+     * @return O objeto Request atualizado e persistido na base de dados.
+     * @throws IOException                 Se ocorrer um erro ao salvar os arquivos no sistema de arquivos.
+     * @throws BadRequestException         Se o número de arquivos enviados não corresponder ao número de cópias a serem carregadas.
+     * @throws EntityNotFoundException     Se a solicitação com o ID especificado não for encontrada.
+     * @throws ConflictException           Se a solicitação foi alterada desde a versão informada ou simultaneamente.
+     * @throws ServiceUnavailableException Se os arquivos da solicitação estiverem ocupados por outra operação.
+     */
+    public Solicitation patchWithFiles(Long id, Solicitation newSolicitation, List<MultipartFile> files, User user) throws
+            IOException,
+            BadRequestException,
+            EntityNotFoundException,
+            ConflictException,
+            ServiceUnavailableException {
+        return solicitationLockService.callLocked(id, "editar", () -> {
+            // Rejeita edições de versões antigas antes de tocar nos arquivos
+            Solicitation current = solicitationRepository.findById(id).orElseThrow(EntityNotFoundException::new);
+            checkVersion(newSolicitation, current);
+
+            String requestPath = getRequestPath(current.getUser().getRegistrationNumber(), id);
+            List<List<Copy>> changes = new ArrayList<>();
+
+            Solicitation updatedSolicitation;
+            try {
+                updatedSolicitation = transactionTemplate.execute(status -> {
+                    try {
+                        Map<String, List<Copy>> written = writeFiles(newSolicitation, files, false, user);
+                        changes.add(written.get("toUpload"));
+                        changes.add(written.get("toDelete"));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return patch(id, newSolicitation, user);
+                });
+            } catch (UncheckedIOException e) {
+                // 'writeFiles' já removeu os arquivos que gravou
+                throw e.getCause();
+            } catch (RuntimeException e) {
+                // Edição desfeita: remove os arquivos gravados para as cópias novas
+                if (!changes.isEmpty()) deleteFiles(changes.get(0), requestPath);
+                throw e;
+            }
+
+            // Edição confirmada: remove os arquivos das cópias que deixaram a solicitação
+            deleteFiles(changes.get(1), requestPath);
+            return updatedSolicitation;
+        });
+    }
+
     /**
      * Salva os arquivos anexados a uma solicitação.
      * Este metodo recebe uma solicitação e uma lista de arquivos anexados, e os salva no sistema de arquivos.
      * Para solicitações novas, todos os arquivos anexados são salvos. Para edições de solicitações existentes,
      * compara os arquivos existentes com os novos e salva apenas os arquivos novos ou modificados, além de
      * remover os arquivos obsoletos.
+     * Cópias que informam 'uploadId' têm seu arquivo anexado a partir da sessão de envio resumível
+     * correspondente (sem nova cópia dos dados) e não consomem arquivos da lista 'files'.
+     * Executa sob o lock da solicitação, serializando-se com outras alterações dos seus arquivos.
      *
      * @param solicitation A solicitação à qual os arquivos estão anexados.
      * @param files        A lista de arquivos anexados (MultipartFile).
      * @param isNewRequest Flag indicando se a solicitação é nova (true) ou uma edição (false).
+     * @param user         Usuário que está enviando os arquivos (dono das sessões de envio).
      * @throws IOException             Se ocorrer um erro ao salvar os arquivos no sistema de arquivos.
      * @throws BadRequestException     Se o número de arquivos enviados não corresponder ao número de cópias a serem carregadas.
      * @throws EntityNotFoundException Se a solicitação existente não for encontrada durante uma edição.
+     * @throws ServiceUnavailableException Se os arquivos da solicitação estiverem ocupados por outra operação.
      */
-    public void saveFiles(Solicitation solicitation, List<MultipartFile> files, Boolean isNewRequest) throws
+    public void saveFiles(Solicitation solicitation, List<MultipartFile> files, Boolean isNewRequest, User user) throws
+            IOException,
+            BadRequestException,
+            EntityNotFoundException,
+            ServiceUnavailableException {
+        solicitationLockService.runLocked(solicitation.getId(), "salvar", () -> {
+            Map<String, List<Copy>> written = writeFiles(solicitation, files, isNewRequest, user);
+
+            // Em edições, remove os arquivos obsoletos após salvar os novos
+            if (!isNewRequest) deleteFiles(written.get("toDelete"), getRequestPath(solicitation.getUser().getRegistrationNumber(), solicitation.getId()));
+        });
+    }
+
+    // Grava os arquivos das cópias novas, sem remover os obsoletos; retorna as cópias gravadas ("toUpload")
+    // e as que deixaram a solicitação ("toDelete"). Se a gravação falhar, os arquivos já gravados são removidos
+    private Map<String, List<Copy>> writeFiles(Solicitation solicitation, List<MultipartFile> files, Boolean isNewRequest, User user) throws
             IOException,
             BadRequestException,
             EntityNotFoundException {
         List<Copy> copiesToUpload = solicitation.getCopies();
-        List<Copy> copiesToDelete = null;
+        List<Copy> copiesToDelete = List.of();
 
         // Se não é uma nova solicitação, é edição de uma solicitação existente
         if (!isNewRequest) {
@@ -345,38 +545,47 @@ public class SolicitationService {
             copiesToDelete = result.get("toDelete");
         }
 
+        // Separar cópias cujo arquivo já foi enviado por sessão de envio resumível
+        List<Copy> copiesFromUploads = copiesToUpload.stream().filter(copy -> copy.getUploadId() != null).toList();
+        List<Copy> copiesFromMultipart = copiesToUpload.stream().filter(copy -> copy.getUploadId() == null).toList();
+
         // Checar se o número de arquivos anexados é igual ao número de objetos de cópia
         // Aqui significa que não foram enviados arquivos anexos suficientes
-        if (files.size() < copiesToUpload.size())
-            throw new BadRequestException("O número de arquivos enviados (" + files.size() + ") não corresponde ao número de cópias a carregar (" + copiesToUpload.size() + ").");
+        if (files.size() < copiesFromMultipart.size())
+            throw new BadRequestException("O número de arquivos enviados (" + files.size() + ") não corresponde ao número de cópias a carregar (" + copiesFromMultipart.size() + ").");
 
         // Aqui significa que arquivo(s) anexado(s) de mesmo nome já existe(m) na solicitação
         // Retorne sem sobreescrever
-        if (files.size() > copiesToUpload.size()) return;
+        if (files.size() > copiesFromMultipart.size()) return Map.of("toUpload", List.of(), "toDelete", copiesToDelete);
 
-        String requestPath = BASE_DIR + solicitation.getUser().getRegistrationNumber() + '/' + solicitation.getId();
+        String requestPath = getRequestPath(solicitation.getUser().getRegistrationNumber(), solicitation.getId());
 
         try {
-            // Cria o diretório do usuário, se necessário
-            java.nio.file.Files.createDirectories(java.nio.file.Paths.get(requestPath));
-
             // Itera sobre os arquivos e salva
             for (int i = 0; i < files.size(); i++) {
                 MultipartFile file = files.get(i);
-                Copy copy = copiesToUpload.get(i);
+                Copy copy = copiesFromMultipart.get(i);
 
-                // Define o caminho do arquivo
-                String filePath = requestPath + "/" + copy.getFileName();
+                // Define o caminho (chave) do arquivo no armazenamento
+                String filePath = FileStore.key(requestPath, copy.getFileName());
 
-                // Salva o arquivo no disco, caso o arquivo não seja nulo
+                // Salva o arquivo no armazenamento, caso o arquivo não seja nulo
                 boolean fileExists = file != null && file.getSize() > 0;
                 if (fileExists) {
-                    if (!fileValidationService.validateAndProcessFile(file)) {
+                    // Valida, conta páginas e extrai tamanhos de página em uma única passada
+                    PdfAnalysis analysis = fileValidationService.analyzeFile(file);
+                    if (!analysis.isValid()) {
                         String originalFilename = file.getOriginalFilename();
                         String errorMessage = "O arquivo enviado '" + (originalFilename != null ? originalFilename : "nome_desconhecido") + "' está encriptado ou corrompido.";
                         throw new BadRequestException(errorMessage);
                     }
-                    file.transferTo(new File(filePath));
+                    copyService.applyAnalysis(copy, analysis);
+                    try (InputStream content = file.getInputStream()) {
+                        fileStore.put(filePath, content, file.getSize());
+                    }
+
+                    // Renderiza antecipadamente a primeira página, sem bloquear a requisição
+                    previewService.prerender(filePath, copy.getContentHash());
                 }
 
                 // Atualize o status de existência do arquivo
@@ -385,14 +594,158 @@ public class SolicitationService {
                 copyService.save(copy);
             }
 
+            // Anexa os arquivos das sessões de envio finalizadas (já validados na finalização)
+            attachUploads(copiesFromUploads, requestPath, user);
+
+            // Em edições o total é recalculado em 'patch', junto com o restante da solicitação
+            if (isNewRequest) refreshTotalPageCount(solicitation);
+
         } catch (Exception e) {
             // Se salvar um arquivo da solicitação dá erro, aborte operação e delete os salvos anteriormente 'copiesToUpload'
+            // Os arquivos obsoletos 'copiesToDelete' são mantidos, já que a edição não será aplicada
             deleteFiles(copiesToUpload, requestPath);
             throw e;
-        } finally {
-            // Após salvar arquivo(s), caso seja operação de edição (patch), remover arquivos obsoletos 'copiesToDelete'
-            if (!isNewRequest) deleteFiles(copiesToDelete, requestPath);
         }
+
+        return Map.of("toUpload", copiesToUpload, "toDelete", copiesToDelete);
+    }
+
+    /**
+     * Grava os arquivos multipart de uma nova solicitação no staging, sem validá-los.
+     * Usado pelo modo assíncrono de criação: cada arquivo vira uma sessão de envio associada
+     * à sua cópia ('uploadId'), e a validação e finalização ocorrem depois, em segundo plano.
+     * Cópias sem arquivo (vazio) são registradas como arquivos físicos.
+     *
+     * @param solicitation A solicitação recém-criada.
+     * @param files        A lista de arquivos anexados (MultipartFile).
+     * @param user         Usuário que está enviando os arquivos.
+     * @throws IOException         Se ocorrer um erro ao gravar os arquivos no staging.
+     * @throws BadRequestException Se o número de arquivos enviados for menor que o número de cópias a serem carregadas.
+     */
+    public void stageFiles(Solicitation solicitation, List<MultipartFile> files, User user) throws
+            IOException,
+            BadRequestException {
+        List<Copy> copiesFromMultipart = solicitation.getCopies().stream().filter(copy -> copy.getUploadId() == null).toList();
+
+        if (files.size() < copiesFromMultipart.size())
+            throw new BadRequestException("O número de arquivos enviados (" + files.size() + ") não corresponde ao número de cópias a carregar (" + copiesFromMultipart.size() + ").");
+
+        List<String> stagedUploads = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < copiesFromMultipart.size(); i++) {
+                MultipartFile file = files.get(i);
+                Copy copy = copiesFromMultipart.get(i);
+
+                boolean fileExists = file != null && file.getSize() > 0;
+                if (fileExists) {
+                    String uploadId = uploadService.stage(file, user).getId();
+                    stagedUploads.add(uploadId);
+                    copy.setUploadId(uploadId);
+                }
+
+                // O arquivo só estará em disco após o processamento
+                copy.setFileInDisk(false);
+                copy.setIsPhysicalFile(!fileExists);
+                copyService.save(copy);
+            }
+        } catch (Exception e) {
+            stagedUploads.forEach(uploadService::discardIfExists);
+            throw e;
+        }
+    }
+
+    /**
+     * Anexa às cópias os arquivos de sessões de envio finalizadas, movendo-os para o diretório da solicitação.
+     * Se algum arquivo falhar, os arquivos já anexados são removidos.
+     *
+     * @param solicitation A solicitação à qual as cópias pertencem.
+     * @param copies       As cópias que possuem 'uploadId'.
+     * @param user         Dono das sessões de envio.
+     * @throws IOException         Se ocorrer um erro ao mover os arquivos.
+     * @throws BadRequestException Se alguma sessão não existir ou não estiver finalizada.
+     * @throws ServiceUnavailableException Se os arquivos da solicitação estiverem ocupados por outra operação.
+     */
+    public void attachUploadedFiles(Solicitation solicitation, List<Copy> copies, User user) throws
+            IOException,
+            BadRequestException,
+            ServiceUnavailableException {
+        String requestPath = getRequestPath(solicitation.getUser().getRegistrationNumber(), solicitation.getId());
+
+        solicitationLockService.runLocked(solicitation.getId(), "anexar", () -> {
+            try {
+                attachUploads(copies, requestPath, user);
+            } catch (Exception e) {
+                deleteFiles(copies, requestPath);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Recalcula o número total de páginas de uma solicitação a partir das suas cópias persistidas
+     * (com o número real de páginas dos arquivos já analisados) e o atualiza na base de dados.
+     *
+     * @param solicitation A solicitação a ser atualizada.
+     */
+    public void refreshTotalPageCount(Solicitation solicitation) {
+        int totalPageCount = copyService.computeTotalPageCount(copyService.findAllBySolicitationId(solicitation.getId(), ""));
+        solicitation.setTotalPageCount(totalPageCount);
+        solicitationRepository.updateTotalPageCount(solicitation.getId(), totalPageCount);
+    }
+
+    /**
+     * Conclui o processamento assíncrono de uma solicitação, registrando o resultado na linha do tempo.
+     * Em caso de falha, o dono da solicitação é notificado com o motivo.
+     *
+     * @param solicitation A solicitação processada.
+     * @param status       O status final ('READY' ou 'FAILED').
+     * @param detail       Motivo da falha (opcional).
+     */
+    @Transactional
+    public void finishProcessing(Solicitation solicitation, ProcessingStatus status, String detail) {
+        // Usuário do sistema
+        User system = User.builder()
+                .role(Role.SYSTEM)
+                .build();
+
+        // Atualiza apenas o status de processamento e adiciona o evento à timeline
+        solicitationRepository.updateProcessingStatus(solicitation.getId(), status);
+        Event event = eventService.appendEvent(solicitation, Event.builder()
+                .user(system)
+                .type(status == ProcessingStatus.READY ? EventType.REQUEST_PROCESSED : EventType.REQUEST_PROCESSING_FAILED)
+                .content(detail != null && detail.length() > 512 ? detail.substring(0, 512) : detail)
+                .creationDate(LocalDateTime.now())
+                .build());
+
+        if (status == ProcessingStatus.FAILED)
+            eventService.sendNotificationForEvent(solicitation, system, event);
+    }
+
+    /**
+     * Monta o recurso de status de processamento de uma solicitação.
+     *
+     * @param solicitation A solicitação consultada.
+     * @return O status de processamento e, em caso de falha, o motivo.
+     */
+    public ProcessingStatusDTO getProcessingStatus(Solicitation solicitation) {
+        ProcessingStatus status = solicitation.getProcessingStatus() != null ? solicitation.getProcessingStatus() : ProcessingStatus.READY;
+
+        String detail = null;
+        if (status == ProcessingStatus.FAILED && solicitation.getTimeline() != null) {
+            detail = solicitation.getTimeline().stream()
+                    .filter(event -> event.getType() == EventType.REQUEST_PROCESSING_FAILED)
+                    .max(Comparator.comparing(Event::getCreationDate))
+                    .map(Event::getContent)
+                    .orElse(null);
+        }
+
+        return ProcessingStatusDTO
+                .builder()
+                .solicitationId(solicitation.getId())
+                .status(status)
+                .detail(detail)
+                .build();
     }
 
     /**
@@ -403,22 +756,36 @@ public class SolicitationService {
      *
      * @param id O ID da solicitação a ser removida.
      * @throws EntityNotFoundException Se a solicitação com o ID especificado não for encontrada.
+     * @throws ConflictException       Se a solicitação foi alterada desde a sua leitura.
+     * @throws ServiceUnavailableException Se os arquivos da solicitação estiverem ocupados por outra operação.
      */
-    public void removeRequest(Long id, boolean sendNotification, User triggeringUser) throws EntityNotFoundException {
+    public void removeRequest(Long id, boolean sendNotification, User triggeringUser) throws EntityNotFoundException, ConflictException, ServiceUnavailableException {
         // Busca a solicitação pelo ID
         Solicitation solicitation = solicitationRepository.findById(id).orElseThrow(EntityNotFoundException::new);
+        String solicitationPath = getRequestPath(solicitation.getUser().getRegistrationNumber(), solicitation.getId());
+
+        // A remoção aguarda gravações em andamento nos arquivos da solicitação (e.g. uma edição simultânea)
+        solicitationLockService.runLocked(id, "remover", () -> {
+            // Remove a solicitação do banco de dados; o DELETE é condicionado à versão lida
+            try {
+                solicitationRepository.delete(solicitation);
+            } catch (OptimisticLockingFailureException e) {
+                countConflict("remover", "rejeitado");
+                throw new ConflictException(CONFLICT_MESSAGE);
+            }
 
-        // Define o caminho da pasta de arquivos associada à solicitação e a remove
-        String solicitationPath = BASE_DIR + solicitation.getUser().getRegistrationNumber() + '/' + solicitation.getId();
-        removeFolder(solicitationPath);
-
-        // Remove a solicitação do banco de dados
-        solicitationRepository.delete(solicitation);
+            // Remove a pasta de arquivos associada à solicitação
+            // Removida após a base de dados: uma falha aqui deixa apenas arquivos órfãos, tratados pela reconciliação
+            removeFolder(solicitationPath);
+        });
 
         // Envia a notificação assincronamente após a exclusão, se a flag estiver true
         if (sendNotification) {
             eventService.sendNotificationForLooseEvent(solicitation, triggeringUser, EventType.REQUEST_DELETING);
         }
+
+        // Remove as inscrições após a notificação de exclusão, que depende delas
+        subscriptionService.removeAll(solicitation.getId());
     }
 
     /**
@@ -451,21 +818,63 @@ public class SolicitationService {
         // Buscar a solicitação no banco
         Solicitation solicitation = findById(solicitationId).orElseThrow(EntityNotFoundException::new);
 
-        // Verificar se o usuário tem permissão para acessar o arquivo
-        // Lança UnauthorizedException caso usuário não tenha permissão necessária
-        String solicitationOwnerRegistration = solicitation.getUser().getRegistrationNumber();
-        if (!user.isAdminOrManager() && !user.getRegistrationNumber().equals(solicitationOwnerRegistration))
-            throw new UnauthorizedException();
-
-        // Buscar se o arquivo existe dentro da solicitação
-        Copy copy = solicitation.getCopies()
-                .stream()
-                .filter(c -> Objects.equals(c.getFileName(), fileName))
-                .findFirst()
-                .orElseThrow(FileNotFoundException::new);
+        // Verificar permissão e buscar se o arquivo existe dentro da solicitação
+        Copy copy = findAccessibleCopy(user, solicitation, fileName);
 
         // Criar resposta com o arquivo
-        return buildFileResponse(solicitationId, solicitationOwnerRegistration, copy);
+        return buildFileResponse(solicitationId, solicitation.getUser().getRegistrationNumber(), copy);
+    }
+
+    /**
+     * Gera (ou busca no cache) a pré-visualização de uma página de um arquivo de uma solicitação.
+     * As mesmas regras de acesso do download se aplicam.
+     *
+     * @param user           Dados do usuário autenticado.
+     * @param solicitationId ID da solicitação.
+     * @param fileName       Nome do arquivo.
+     * @param page           Número da página (a partir de 1).
+     * @param width          Largura desejada em pixels.
+     * @return O conteúdo da imagem PNG.
+     * @throws EntityNotFoundException     Se a solicitação com o ID especificado não for encontrada.
+     * @throws UnauthorizedException       Se o usuário não tiver permissão para acessar o arquivo da solicitação.
+     * @throws FileNotFoundException       Se o arquivo especificado não for encontrado dentro da solicitação.
+     * @throws PhysicalFileException       Se o arquivo for físico.
+     * @throws FileGoneException           Se o arquivo não estiver mais disponível.
+     * @throws NoSuchFileException         Se o arquivo não for encontrado no sistema de arquivos.
+     * @throws IllegalArgumentException    Se a página não existir no arquivo.
+     * @throws ServiceUnavailableException Se o pool de renderização estiver cheio ou a renderização demorar demais.
+     * @throws IOException                 Se ocorrer um erro ao ler o arquivo ou renderizar a página.
+     */
+    public byte[] getPreview(User user, Long solicitationId, String fileName, int page, int width) throws
+            PhysicalFileException,
+            FileGoneException,
+            IOException,
+            EntityNotFoundException,
+            FileNotFoundException,
+            UnauthorizedException,
+            NoSuchFileException,
+            ServiceUnavailableException {
+
+        Solicitation solicitation = findById(solicitationId).orElseThrow(EntityNotFoundException::new);
+        Copy copy = findAccessibleCopy(user, solicitation, fileName);
+
+        if (copy.getIsPhysicalFile()) throw new PhysicalFileException();
+        if (!copy.getFileInDisk()) throw new FileGoneException();
+
+        if (page < 1 || (copy.getPageCount() != null && page > copy.getPageCount()))
+            throw new IllegalArgumentException("A página " + page + " não existe no arquivo (" + copy.getPageCount() + " páginas).");
+
+        String filePath = getFile(solicitationId, solicitation.getUser().getRegistrationNumber(), copy);
+
+        // Arquivos salvos antes do cálculo de hash têm o hash calculado no primeiro acesso
+        if (copy.getContentHash() == null) {
+            try (LocalFile localFile = fileStore.openLocal(filePath)) {
+                copy.setContentHash(fileValidationService.hashFile(localFile.getPath()));
+            }
+            copyService.save(copy);
+        }
+
+        return previewService.getPreview(filePath, copy.getContentHash(), page, width);
     }
 
     /**
@@ -493,6 +902,13 @@ public class SolicitationService {
         if (eventType != EventType.REQUEST_VIEWING && solicitation.isArchived())
             throw new ForbiddenException();
 
+        // Proíbe edição, alteração de status e remoção enquanto os arquivos da solicitação estão em processamento
+        // (a remoção apagaria as cópias e os arquivos que o processamento ainda vai anexar)
+        if ((eventType == EventType.REQUEST_EDITING || eventType == EventType.REQUEST_TOGGLE ||
+                eventType == EventType.REQUEST_DELETING) &&
+                solicitation.getProcessingStatus() == ProcessingStatus.PROCESSING)
+            throw new ForbiddenException();
+
         // Apenas ADMIN/MANAGER podem alterar status de solicitações
         if (eventType == EventType.REQUEST_TOGGLE && !user.isAdminOrManager())
             throw new ForbiddenException();
@@ -516,106 +932,215 @@ public class SolicitationService {
     }
 
     /**
-     * Escaneia todas as solicitações fechadas que já passaram do período de obsolescência.
-     * Este é um metodo agendado em ScheduledTasks, cronometrada pela variavel de ambiente CLEANUP_RATE_FR.
-     * Ele itera por todas as solicitações, verifica se estão fechadas e se o tempo decorrido desde a
-     * conclusão ultrapassou o período de obsolescência. Para as solicitações obsoletas identificadas,
-     * os arquivos associados são removidos do disco, a pasta da solicitação é excluída e o
-     * status da solicitação é atualizado para 'stale = true' (obsoleta/arquivada).
-     *
-     * @return O número total de arquivos removidos durante a execução da tarefa.
+     * Prepara uma solicitação para exibição com a sua linha do tempo, consultando apenas as partições
+     * de eventos a partir da criação da solicitação (a tabela de eventos é particionada por data de criação),
+     * em vez de carregar a associação, que é consultada apenas pelo ID em todas as partições.
+     * A solicitação é desanexada do contexto de persistência, já que a linha do tempo é substituída apenas
+     * para a resposta.
+     *
+     * @param solicitation A solicitação a ser exibida.
+     * @return A solicitação, com as cópias e a linha do tempo carregadas.
      */
-    public int removeStaleFiles() {
-        List<Solicitation> solicitations = solicitationRepository.findAll();
-        LocalDateTime now = LocalDateTime.now();
-        AtomicInteger deletedTotal = new AtomicInteger();
-
-        solicitations.forEach((solicitation) -> {
-            // Se a solicitação já é obsoleta, ignora.
-            // Se a solicitação está fechada (conclusionDate != MIN) e o período de remoção já passou...
-            if (!solicitation.isArchived() &&
-                    solicitation.getConclusionDate() != null &&
-                    solicitation.getConclusionDate().plusHours(CLEANUP_RATE_HOURS).isBefore(now)) {
-
-                // Busca todas as cópias associadas à solicitação
-                List<Copy> copies = copyService.findAllBySolicitationId(solicitation.getId(), "");
-                // Define o caminho da pasta da solicitação
-                String requestPath = BASE_DIR + solicitation.getUser().getRegistrationNumber() + '/' + solicitation.getId();
-
-                // Remover/atualizar arquivos e remover pasta da requisição
-                int numDeleted = deleteFiles(copies, requestPath);
-                removeFolder(requestPath);
-
-                // Atualizar status de obsolência da solicitação
-                solicitation.setArchived(true);
-
-                // Usuário do sistema
-                User system = User.builder()
-                        .role(Role.SYSTEM)
-                        .build();
-
-                // Adicionar evento de arquivamento à timeline
-                solicitation.getTimeline().add(Event.builder()
-                        .solicitationId(solicitation.getId())
-                        .user(system)
-                        .type(EventType.REQUEST_ARCHIVING)
-                        .creationDate(LocalDateTime.now())
-                        .build());
-
-                Solicitation archivedSolicitation = solicitationRepository.save(solicitation);
-                eventService.sendNotificationForLatestEvent(archivedSolicitation, system);
-
-                deletedTotal.addAndGet(numDeleted);
-            }
-        });
-
-        return deletedTotal.get();
-    }
+    public Solicitation withTimeline(Solicitation solicitation) {
+        if (solicitation.getCreationDate() == null) return solicitation;
 
-    public void addNewComment(@Valid CommentDTO comment, Solicitation solicitation, User user) {
-        // Adicionar evento de comentario à timeline
-        solicitation.getTimeline().add(Event.builder()
-                .solicitationId(solicitation.getId())
-                .user(user)
-                .type(EventType.COMMENT)
-                .content(comment.getMessage())
-                .creationDate(LocalDateTime.now())
-                .build());
+        Hibernate.initialize(solicitation.getCopies());
+        entityManager.detach(solicitation);
 
-        // Atualiza solicitação com novo comentário
-        Solicitation updatedSolicitation = solicitationRepository.save(solicitation);
+        // Tolerância para diferenças de relógio entre as instâncias que registraram os eventos
+        LocalDateTime since = solicitation.getCreationDate().minusDays(1);
+        solicitation.setTimeline(eventRepository.findTimeline(solicitation.getId(), since));
+        return solicitation;
+    }
 
-        // Notifica novo comentário às partes interessadas
-        eventService.sendNotificationForLatestEvent(updatedSolicitation, user);
+    /**
+     * Adiciona um comentário à linha do tempo de uma solicitação e notifica as partes interessadas.
+     * Em caso de conflito de versão, a solicitação é recarregada e o comentário gravado novamente.
+     *
+     * @param comment      O comentário.
+     * @param solicitation A solicitação comentada.
+     * @param user         O autor do comentário.
+     * @throws ConflictException Se o conflito persistir após as tentativas.
+     */
+    public void addNewComment(@Valid CommentDTO comment, Solicitation solicitation, User user) throws ConflictException {
+        retryOnConflict("comentar", solicitation, current -> {
+            // Adicionar evento de comentario à timeline, sem salvar novamente a solicitação
+            Event event = eventService.appendEvent(current, Event.builder()
+                    .user(user)
+                    .type(EventType.COMMENT)
+                    .content(comment.getMessage())
+                    .creationDate(LocalDateTime.now())
+                    .build());
+
+            // Notifica novo comentário às partes interessadas
+            eventService.sendNotificationForEvent(current, user, event);
+        });
     }
 
 // ============================================================= //
 //  Métodos auxiliares
 // ============================================================= //
 
+    /**
+     * Move os arquivos das sessões de envio para o diretório da solicitação e atualiza as cópias.
+     *
+     * @param copies      As cópias que possuem 'uploadId'.
+     * @param requestPath O caminho (prefixo de chave) da solicitação no armazenamento.
+     * @param user        Dono das sessões de envio.
+     */
+    private void attachUploads(List<Copy> copies, String requestPath, User user) throws IOException, BadRequestException {
+        for (Copy copy : copies) {
+            String filePath = FileStore.key(requestPath, copy.getFileName());
+            UploadSession session = uploadService.attach(copy.getUploadId(), user, filePath);
+
+            // Aplica a análise feita na finalização da sessão (sessões antigas podem não tê-la)
+            if (session.getPageCount() != null)
+                copyService.applyAnalysis(copy, session.getPageCount(), session.getPageSizes(), session.getContentHash());
+
+            copy.setUploadId(null);
+            copy.setFileInDisk(true);
+            copy.setIsPhysicalFile(false);
+            copyService.save(copy);
+
+            previewService.prerender(filePath, copy.getContentHash());
+        }
+    }
+
+    /**
+     * Monta o caminho (prefixo de chave) dos arquivos de uma solicitação no armazenamento.
+     *
+     * @param requestOwnerRegistration O registro do proprietário da solicitação.
+     * @param solicitationId           O ID da solicitação.
+     * @return O caminho da solicitação, no formato "{matrícula}/{idSolicitação}".
+     */
+    private String getRequestPath(String requestOwnerRegistration, Long solicitationId) {
+        return FileStore.key(requestOwnerRegistration, solicitationId);
+    }
+
+    /**
+     * Executa uma operação idempotente em uma transação, repetindo-a com a solicitação recarregada
+     * em caso de conflito de versão, até MAX_CONFLICT_ATTEMPTS tentativas.
+     *
+     * @param operation    Nome da operação (tag da métrica de conflitos).
+     * @param solicitation A solicitação lida antes da operação.
+     * @param action       A operação, aplicada à versão mais recente da solicitação.
+     * @throws ConflictException Se o conflito persistir após as tentativas.
+     */
+    private void retryOnConflict(String operation, Solicitation solicitation, Consumer<Solicitation> action) throws ConflictException {
+        Solicitation current = solicitation;
+        for (int attempt = 1; ; attempt++) {
+            Solicitation target = current;
+            try {
+                transactionTemplate.executeWithoutResult(status -> action.accept(target));
+                return;
+            } catch (ConflictException | OptimisticLockingFailureException e) {
+                if (attempt >= MAX_CONFLICT_ATTEMPTS) {
+                    countConflict(operation, "rejeitado");
+                    throw new ConflictException(CONFLICT_MESSAGE);
+                }
+                countConflict(operation, "repetido");
+                logger.info("Conflito de versão na solicitação ID {} ({}), tentativa {}.", solicitation.getId(), operation, attempt);
+                current = reload(current);
+            }
+        }
+    }
+
+    // Relê apenas a linha da solicitação da base de dados, ignorando o estado em cache no contexto de persistência.
+    // A instância em cache é desanexada em vez de atualizada com 'refresh', que se propagaria (cascade)
+    // às cópias e à linha do tempo carregadas, tornando o custo da nova tentativa proporcional ao histórico
+    private Solicitation reload(Solicitation stale) {
+        return transactionTemplate.execute(status -> {
+            if (entityManager.contains(stale)) entityManager.detach(stale);
+
+            Solicitation solicitation = entityManager.find(Solicitation.class, stale.getId());
+            if (solicitation == null) throw new EntityNotFoundException();
+            return solicitation;
+        });
+    }
+
+    // Rejeita a edição se o cliente informou uma versão diferente da atual
+    private void checkVersion(Solicitation newSolicitation, Solicitation current) throws ConflictException {
+        if (newSolicitation.getVersion() != null && !newSolicitation.getVersion().equals(current.getVersion())) {
+            countConflict("editar", "rejeitado");
+            throw new ConflictException(CONFLICT_MESSAGE);
+        }
+    }
+
+    // Solicitação de uma listagem, sem a linha do tempo (que não é carregada)
+    private SolicitationSummary summarize(Solicitation solicitation) {
+        return SolicitationSummary
+                .builder()
+                .id(solicitation.getId())
+                .version(solicitation.getVersion())
+                .deadline(solicitation.getDeadline())
+                .creationDate(solicitation.getCreationDate())
+                .conclusionDate(solicitation.getConclusionDate())
+                .archived(solicitation.isArchived())
+                .processingStatus(solicitation.getProcessingStatus())
+                .user(solicitation.getUser())
+                .lastEventId(solicitation.getLastEventId())
+                .lastEventType(solicitation.getLastEventType())
+                .lastEventAt(solicitation.getLastEventAt())
+                .lastEventBy(solicitation.getLastEventBy())
+                .totalPageCount(solicitation.getTotalPageCount())
+                .copies(solicitation.getCopies())
+                .build();
+    }
+
+    private void countConflict(String operation, String outcome) {
+        meterRegistry.counter("solicitacoes.conflitos", "operacao", operation, "resultado", outcome).increment();
+    }
+
     /**
      * Tenta remover o diretório especificado pelo caminho.
-     * Este metodo utiliza a biblioteca Apache Commons IO para remover o diretório e
-     * todo o seu conteúdo. Se ocorrer um erro durante a remoção, o erro é logado
+     * Este metodo remove do armazenamento todos os arquivos sob o caminho informado.
+     * Se ocorrer um erro durante a remoção, o erro é logado
      * como informação, mas a exceção não é propagada.
      *
      * @param path O caminho do diretório a ser removido.
      */
     private void removeFolder(String path) {
         try {
-            FileUtils.deleteDirectory(new File(path));
+            fileStore.deletePrefix(path);
             logger.info("Diretório removido: {}", path);
         } catch (IOException e) {
             logger.info("Erro ao deletar diretório: {}", String.valueOf(e));
         }
     }
 
+    /**
+     * Verifica se o usuário pode acessar os arquivos da solicitação e busca a cópia pelo nome do arquivo.
+     *
+     * @param user         Usuário autenticado.
+     * @param solicitation A solicitação.
+     * @param fileName     Nome do arquivo.
+     * @return A cópia correspondente.
+     * @throws UnauthorizedException Se o usuário não tiver permissão para acessar o arquivo da solicitação.
+     * @throws FileNotFoundException Se o arquivo especificado não for encontrado dentro da solicitação.
+     */
+    private Copy findAccessibleCopy(User user, Solicitation solicitation, String fileName) throws
+            UnauthorizedException,
+            FileNotFoundException {
+        // Verificar se o usuário tem permissão para acessar o arquivo
+        // Lança UnauthorizedException caso usuário não tenha permissão necessária
+        String solicitationOwnerRegistration = solicitation.getUser().getRegistrationNumber();
+        if (!user.isAdminOrManager() && !user.getRegistrationNumber().equals(solicitationOwnerRegistration))
+            throw new UnauthorizedException();
+
+        // Buscar se o arquivo existe dentro da solicitação
+        return solicitation.getCopies()
+                .stream()
+                .filter(c -> Objects.equals(c.getFileName(), fileName))
+                .findFirst()
+                .orElseThrow(FileNotFoundException::new);
+    }
+
     /**
      * Verifica a disponibilidade do arquivo e constrói a resposta HTTP para download.
      * Este método verifica se o arquivo associado à cópia está disponível para download.
      * Se o arquivo for físico ou não estiver no disco, lança a exceção apropriada.
-     * Caso contrário, lê o arquivo do sistema de arquivos e constrói um ResponseEntity
-     * com o arquivo para download.
+     * Caso contrário, abre o arquivo no armazenamento e constrói um ResponseEntity
+     * que transmite o arquivo em streaming, sem carregá-lo inteiro em memória.
      *
      * @param solicitationId           O ID da solicitação associada ao arquivo.
      * @param requestOwnerRegistration O registro do proprietário da solicitação.
@@ -637,39 +1162,40 @@ public class SolicitationService {
         // Verifica se o arquivo foi removido do disco
         if (!copy.getFileInDisk()) throw new FileGoneException();
 
-        // Obtém o arquivo do sistema de arquivos
-        File downloadFile = getFile(solicitationId, requestOwnerRegistration, copy);
+        // Obtém o arquivo do armazenamento
+        String downloadFile = getFile(solicitationId, requestOwnerRegistration, copy);
 
-        // Lê o conteúdo do arquivo para um ByteArrayInputStream
+        // Abre o conteúdo do arquivo em streaming (fechado pelo Spring após a escrita da resposta)
         // Define os headers da resposta HTTP
-        ByteArrayInputStream in = new ByteArrayInputStream(Files.readAllBytes(downloadFile.toPath()));
+        long size = fileStore.size(downloadFile);
+        InputStream in = fileStore.get(downloadFile);
         HttpHeaders headers = new HttpHeaders();
         headers.add("Content-Disposition", "attachment; filename=" + copy.getFileName());
         headers.add("Content-Type", copy.getFileType());
+        headers.setContentLength(size);
 
         return ResponseEntity.ok().headers(headers).body(new InputStreamResource(in));
     }
 
     /**
-     * Obtém o arquivo do sistema de arquivos com base nos dados da solicitação e da cópia.
-     * Este metodo constrói o caminho completo para o arquivo com base no ID da solicitação,
+     * Obtém o arquivo do armazenamento com base nos dados da solicitação e da cópia.
+     * Este metodo constrói a chave completa do arquivo com base no ID da solicitação,
      * registro do proprietário e nome do arquivo da cópia. Em seguida, verifica se o
-     * arquivo existe no sistema de arquivos.
+     * arquivo existe no armazenamento.
      *
      * @param solicitationId           O ID da solicitação associada ao arquivo.
      * @param requestOwnerRegistration O registro do proprietário da solicitação.
      * @param copy                     O objeto Copy que representa o arquivo.
-     * @return O objeto File representando o arquivo no sistema de arquivos.
-     * @throws NoSuchFileException Se o arquivo não for encontrado no sistema de arquivos.
+     * @return A chave do arquivo no armazenamento.
+     * @throws NoSuchFileException Se o arquivo não for encontrado no armazenamento.
      */
-    private File getFile(Long solicitationId, String requestOwnerRegistration, Copy copy) throws NoSuchFileException {
-        String fileLocation = BASE_DIR + requestOwnerRegistration + "/" + solicitationId + "/" + copy.getFileName();
-        File downloadFile = new File(fileLocation);
+    private String getFile(Long solicitationId, String requestOwnerRegistration, Copy copy) throws NoSuchFileException {
+        String fileLocation = FileStore.key(getRequestPath(requestOwnerRegistration, solicitationId), copy.getFileName());
 
-        // Verifica se o arquivo existe no sistema de arquivos
-        if (!downloadFile.exists()) throw new NoSuchFileException(null);
+        // Verifica se o arquivo existe no armazenamento
+        if (!fileStore.exists(fileLocation)) throw new NoSuchFileException(null);
 
-        return downloadFile;
+        return fileLocation;
     }
 
     /**
@@ -718,7 +1244,7 @@ public class SolicitationService {
 
     /**
      * Remove os arquivos associados às cópias, se existirem no caminho base especificado.
-     * Este metodo itera sobre a lista de cópias fornecida e tenta deletar o arquivo do sistema de arquivos.
+     * Este metodo itera sobre a lista de cópias fornecida e tenta deletar o arquivo do armazenamento.
      * O status 'fileInDisk' da cópia é atualizado para 'false'.
      *
      * @param copies   A lista de objetos Copy representando os arquivos a serem removidos.
@@ -729,26 +1255,24 @@ public class SolicitationService {
         int deleted = 0;
         if (copies != null && !copies.isEmpty()) {
             for (Copy copy : copies) {
-                String filePath = basePath + "/" + copy.getFileName();
-                File fileToDelete = new File(filePath);
+                String filePath = FileStore.key(basePath, copy.getFileName());
 
-                if (fileToDelete.exists()) {
-                    if (fileToDelete.delete()) {
+                try {
+                    if (fileStore.delete(filePath)) {
                         // Arquivo associado deletado com sucesso
                         logger.info("Arquivo removido: {}", filePath);
                         deleted++;
-
                     } else {
-                        logger.error("Falha ao remover arquivo: {}", filePath);
+                        logger.info("Arquivo não encontrado: {}", filePath);
                     }
-                } else {
-                    logger.info("Arquivo não encontrado: {}", filePath);
+                } catch (IOException e) {
+                    logger.error("Falha ao remover arquivo: {}", filePath);
                 }
-
-                // Se cópia ainda existir (solicitação não foi deletada), atualizar status da cópia
-                // Neste caso, como arquivo foi removido, flag 'fileInDisk' será setada para 'false'
-                copyService.updateFileStatus(copy.getId(), false);
             }
+
+            // Se as cópias ainda existirem (solicitação não foi deletada), atualizar o status delas
+            // em uma única operação. Como os arquivos foram removidos, flag 'fileInDisk' será setada para 'false'
+            copyService.updateFileStatus(copies.stream().map(Copy::getId).filter(Objects::nonNull).toList(), false);
         }
         return deleted;
     }
@@ -0,0 +1,170 @@
+package com.dticnat.controleimpressao.service;
+
+import com.dticnat.controleimpressao.model.NotificationPreference;
+import com.dticnat.controleimpressao.model.Subscription;
+import com.dticnat.controleimpressao.model.User;
+import com.dticnat.controleimpressao.model.dto.NotificationPreferenceDTO;
+import com.dticnat.controleimpressao.model.enums.EventType;
+import com.dticnat.controleimpressao.model.enums.Role;
+import com.dticnat.controleimpressao.repository.NotificationPreferenceRepository;
+import com.dticnat.controleimpressao.repository.SubscriptionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Serviço de inscrições em notificações e preferências de notificação dos usuários.
+ *
+ * Os interessados em uma solicitação são mantidos na tabela de inscrições à medida que interagem com
+ * ela, então os destinatários de uma notificação são obtidos com uma única consulta indexada, que já
+ * exclui os usuários que desabilitaram os emails ou silenciaram o tipo de evento.
+ */
+@Service
+public class SubscriptionService {
+
+    @Autowired
+    private SubscriptionRepository subscriptionRepository;
+
+    @Autowired
+    private NotificationPreferenceRepository notificationPreferenceRepository;
+
+    /**
+     * Inscreve automaticamente um usuário que interagiu com uma solicitação (criação, comentário ou ação).
+     * Usuários do sistema não são inscritos, e uma inscrição cancelada pelo usuário não é reativada.
+     *
+     * @param solicitationId ID da solicitação.
+     * @param user           Usuário que interagiu.
+     */
+    public void subscribe(Long solicitationId, User user) {
+        if (user == null || user.getRole() == Role.SYSTEM || user.getRegistrationNumber() == null) return;
+        upsert(solicitationId, user, false);
+    }
+
+    /**
+     * Inscreve explicitamente um usuário nas notificações de uma solicitação, reativando uma inscrição cancelada.
+     *
+     * @param solicitationId ID da solicitação.
+     * @param user           Usuário autenticado.
+     */
+    public void subscribeExplicitly(Long solicitationId, User user) {
+        upsert(solicitationId, user, true);
+    }
+
+    /**
+     * Cancela a inscrição de um usuário nas notificações de uma solicitação.
+     *
+     * @param solicitationId ID da solicitação.
+     * @param user           Usuário autenticado.
+     */
+    public void unsubscribe(Long solicitationId, User user) {
+        // Garante que a inscrição exista antes de desativá-la, para que interações futuras não a recriem ativa
+        upsert(solicitationId, user, false);
+        subscriptionRepository.deactivate(solicitationId, user.getRegistrationNumber());
+    }
+
+    /**
+     * Retorna os usuários a serem notificados de um evento de uma solicitação: inscrições ativas cujos
+     * usuários aceitam notificações por email do tipo de evento.
+     *
+     * @param solicitationId ID da solicitação.
+     * @param eventType      Tipo do evento notificado.
+     * @return Os usuários a serem notificados.
+     */
+    public List<User> findRecipients(Long solicitationId, EventType eventType) {
+        return subscriptionRepository.findNotifiable(solicitationId, eventType.name()).stream()
+                .map(Subscription::getUser)
+                .toList();
+    }
+
+    /**
+     * Retorna os usuários a serem notificados de um evento em várias solicitações, com uma única consulta.
+     *
+     * @param solicitationIds IDs das solicitações.
+     * @param eventType       Tipo do evento notificado.
+     * @return Os usuários a serem notificados, por ID da solicitação.
+     */
+    public Map<Long, List<User>> findRecipients(Collection<Long> solicitationIds, EventType eventType) {
+        if (solicitationIds.isEmpty()) return Map.of();
+
+        return subscriptionRepository.findAllNotifiable(solicitationIds, eventType.name()).stream()
+                .collect(Collectors.groupingBy(Subscription::getSolicitationId,
+                        Collectors.mapping(Subscription::getUser, Collectors.toList())));
+    }
+
+    /**
+     * Remove todas as inscrições de uma solicitação (e.g. após a sua exclusão).
+     *
+     * @param solicitationId ID da solicitação.
+     */
+    public void removeAll(Long solicitationId) {
+        subscriptionRepository.deleteBySolicitationId(solicitationId);
+    }
+
+    /**
+     * Retorna as preferências de notificação de um usuário, ou as preferências padrão se não houver registro.
+     *
+     * @param registrationNumber Matrícula do usuário.
+     * @return As preferências de notificação.
+     */
+    public NotificationPreferenceDTO getPreference(String registrationNumber) {
+        return notificationPreferenceRepository.findById(registrationNumber)
+                .map(this::toDTO)
+                .orElseGet(() -> toDTO(NotificationPreference.builder().registrationNumber(registrationNumber).build()));
+    }
+
+    /**
+     * Atualiza as preferências de notificação de um usuário.
+     *
+     * @param registrationNumber Matrícula do usuário.
+     * @param preferenceDTO      Novas preferências.
+     * @return As preferências atualizadas.
+     */
+    public NotificationPreferenceDTO updatePreference(String registrationNumber, NotificationPreferenceDTO preferenceDTO) {
+        Set<EventType> muted = preferenceDTO.getMutedEventTypes();
+
+        NotificationPreference preference = NotificationPreference
+                .builder()
+                .registrationNumber(registrationNumber)
+                .emailEnabled(preferenceDTO.isEmailEnabled())
+                .mutedEventTypes(muted == null || muted.isEmpty() ? null : muted.stream()
+                        .map(EventType::name)
+                        .sorted()
+                        .collect(Collectors.joining(",")))
+                .updatedAt(LocalDateTime.now())
+                .build();
+
+        return toDTO(notificationPreferenceRepository.save(preference));
+    }
+
+// ============================================================= //
+//  Métodos auxiliares
+// ============================================================= //
+
+    private void upsert(Long solicitationId, User user, boolean reactivate) {
+        subscriptionRepository.upsert(solicitationId, user.getRegistrationNumber(), user.getCommonName(),
+                user.getEmail(), user.getRole() != null ? user.getRole().name() : null, reactivate);
+    }
+
+    private NotificationPreferenceDTO toDTO(NotificationPreference preference) {
+        Set<EventType> muted = EnumSet.noneOf(EventType.class);
+        if (preference.getMutedEventTypes() != null) {
+            Arrays.stream(preference.getMutedEventTypes().split(","))
+                    .filter(type -> !type.isBlank())
+                    .forEach(type -> muted.add(EventType.valueOf(type)));
+        }
+
+        return NotificationPreferenceDTO
+                .builder()
+                .emailEnabled(preference.isEmailEnabled())
+                .mutedEventTypes(muted)
+                .build();
+    }
+}
@@ -0,0 +1,331 @@
+package com.dticnat.controleimpressao.service;
+
+import com.dticnat.controleimpressao.exception.ConflictException;
+import com.dticnat.controleimpressao.exception.ForbiddenException;
+import com.dticnat.controleimpressao.model.UploadSession;
+import com.dticnat.controleimpressao.model.User;
+import com.dticnat.controleimpressao.model.dto.PdfAnalysis;
+import com.dticnat.controleimpressao.model.dto.UploadSessionDTO;
+import com.dticnat.controleimpressao.repository.UploadSessionRepository;
+import com.dticnat.controleimpressao.storage.FileStore;
+import jakarta.persistence.EntityNotFoundException;
+import org.apache.coyote.BadRequestException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+public class UploadService {
+
+    // Tamanho do buffer usado para copiar o corpo da requisição para o arquivo de staging
+    private static final int CHUNK_BUFFER_BYTES = 64 * 1024;
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private FileValidationService fileValidationService;
+
+    @Value("${arquivos.base-dir}")
+    private String BASE_DIR;
+
+    @Autowired
+    private FileStore fileStore;
+
+    @Value("${arquivos.upload-expiration-hours}")
+    private Long UPLOAD_EXPIRATION_HOURS;
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadService.class);
+
+    /**
+     * Cria uma nova sessão de envio resumível e o arquivo de staging vazio associado.
+     *
+     * @param uploadSessionDTO Dados do arquivo a ser enviado (nome, tipo e tamanho total).
+     * @param user             Usuário autenticado, dono da sessão.
+     * @return A sessão criada, com offset zero.
+     * @throws BadRequestException Se o tamanho declarado exceder o limite de tamanho de arquivo.
+     * @throws IOException         Se não for possível criar o arquivo de staging.
+     */
+    public UploadSession create(UploadSessionDTO uploadSessionDTO, User user) throws BadRequestException, IOException {
+        if (uploadSessionDTO.getFileSize() > FileValidationService.MAX_FILE_SIZE_BYTES)
+            throw new BadRequestException("O arquivo '" + uploadSessionDTO.getFileName() + "' excede o tamanho máximo permitido.");
+
+        UploadSession session = UploadSession
+                .builder()
+                .id(UUID.randomUUID().toString())
+                .fileName(uploadSessionDTO.getFileName())
+                .fileType(uploadSessionDTO.getFileType())
+                .fileSize(uploadSessionDTO.getFileSize())
+                .ownerRegistration(user.getRegistrationNumber())
+                .creationDate(LocalDateTime.now())
+                .build();
+
+        Path stagingPath = getStagingPath(session.getId());
+        Files.createDirectories(stagingPath.getParent());
+        Files.createFile(stagingPath);
+
+        return uploadSessionRepository.save(session);
+    }
+
+    /**
+     * Cria uma sessão de envio já completa a partir de um arquivo multipart.
+     * Usado pelo modo assíncrono de criação de solicitações: o arquivo é apenas gravado no staging
+     * durante a requisição, e a validação ocorre depois, na finalização da sessão.
+     *
+     * @param file Arquivo multipart recebido.
+     * @param user Usuário autenticado, dono da sessão.
+     * @return A sessão criada (ainda não finalizada).
+     * @throws BadRequestException Se o arquivo exceder o limite de tamanho de arquivo.
+     * @throws IOException         Se não for possível gravar o arquivo de staging.
+     */
+    public UploadSession stage(MultipartFile file, User user) throws BadRequestException, IOException {
+        UploadSession session = create(UploadSessionDTO
+                .builder()
+                .fileName(file.getOriginalFilename())
+                .fileType(file.getContentType())
+                .fileSize(file.getSize())
+                .build(), user);
+
+        // O multipart normalmente já está em um arquivo temporário, então 'transferTo' tende a ser um rename
+        Path stagingPath = getStagingPath(session.getId());
+        Files.delete(stagingPath);
+        file.transferTo(stagingPath);
+
+        session.setReceivedBytes(file.getSize());
+        return session;
+    }
+
+    /**
+     * Busca uma sessão de envio e preenche o offset atual (bytes já recebidos).
+     *
+     * @param uploadId ID da sessão.
+     * @param user     Usuário autenticado.
+     * @return A sessão com o offset atual.
+     * @throws EntityNotFoundException Se a sessão não existir.
+     * @throws ForbiddenException      Se a sessão não pertencer ao usuário.
+     * @throws IOException             Se não for possível ler o arquivo de staging.
+     */
+    public UploadSession getSession(String uploadId, User user) throws EntityNotFoundException, ForbiddenException, IOException {
+        UploadSession session = findOwned(uploadId, user);
+        session.setReceivedBytes(Files.size(getStagingPath(uploadId)));
+        return session;
+    }
+
+    /**
+     * Escreve uma parte (chunk) do arquivo no staging a partir do offset informado.
+     * A escrita é posicional (NIO), então reenviar uma parte já recebida apenas a sobrescreve.
+     * O offset não pode ser maior que o número de bytes já recebidos, evitando lacunas no arquivo.
+     *
+     * @param uploadId ID da sessão.
+     * @param user     Usuário autenticado.
+     * @param offset   Posição no arquivo a partir da qual a parte deve ser escrita.
+     * @param data     Conteúdo da parte (corpo da requisição).
+     * @return A sessão com o novo offset.
+     * @throws BadRequestException Se o offset for inválido ou a parte ultrapassar o tamanho declarado.
+     * @throws ConflictException   Se a sessão já foi finalizada ou outra parte está sendo escrita simultaneamente.
+     * @throws IOException         Se ocorrer um erro ao escrever no arquivo de staging.
+     */
+    public UploadSession writeChunk(String uploadId, User user, long offset, InputStream data) throws
+            BadRequestException,
+            ConflictException,
+            IOException {
+        UploadSession session = findOwned(uploadId, user);
+        if (session.isFinalized()) throw new ConflictException("O envio já foi finalizado.");
+
+        Path stagingPath = getStagingPath(uploadId);
+
+        try (FileChannel channel = FileChannel.open(stagingPath, StandardOpenOption.WRITE);
+             FileLock lock = tryLock(channel)) {
+
+            // A sessão pode ter sido finalizada entre a consulta acima e a aquisição do lock
+            if (uploadSessionRepository.existsByIdAndFinalizedTrue(uploadId))
+                throw new ConflictException("O envio já foi finalizado.");
+
+            long receivedBytes = channel.size();
+            if (offset < 0 || offset > receivedBytes)
+                throw new BadRequestException("Offset inválido (" + offset + "). Bytes já recebidos: " + receivedBytes + ".");
+
+            ReadableByteChannel source = Channels.newChannel(data);
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BUFFER_BYTES);
+            long position = offset;
+
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                if (position + buffer.remaining() > session.getFileSize()) {
+                    // Descarta o excedente para não corromper o que já foi recebido
+                    channel.truncate(Math.max(receivedBytes, position));
+                    throw new BadRequestException("A parte enviada ultrapassa o tamanho declarado do arquivo (" + session.getFileSize() + " bytes).");
+                }
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                buffer.clear();
+            }
+
+            channel.force(false);
+            session.setReceivedBytes(channel.size());
+        }
+
+        return session;
+    }
+
+    /**
+     * Finaliza uma sessão de envio, executando a validação e análise (páginas e tamanhos) do arquivo recebido.
+     * A validação ocorre sob o lock do arquivo de staging, o mesmo das escritas de partes, então nenhuma parte
+     * é escrita no arquivo durante a validação nem após a finalização.
+     * Se o arquivo for inválido (corrompido, encriptado ou de tipo não permitido), a sessão é descartada.
+     *
+     * @param uploadId ID da sessão.
+     * @param user     Usuário autenticado.
+     * @return A sessão finalizada.
+     * @throws BadRequestException Se o arquivo estiver incompleto ou for inválido.
+     * @throws ConflictException   Se uma parte está sendo escrita ou a sessão foi finalizada simultaneamente.
+     * @throws IOException         Se não for possível ler o arquivo de staging.
+     */
+    public UploadSession finalizeSession(String uploadId, User user) throws BadRequestException, ConflictException, IOException {
+        UploadSession session = getSession(uploadId, user);
+        if (session.isFinalized()) return session;
+
+        Path stagingPath = getStagingPath(uploadId);
+
+        try (FileChannel channel = FileChannel.open(stagingPath, StandardOpenOption.WRITE);
+             FileLock lock = tryLock(channel)) {
+
+            if (uploadSessionRepository.existsByIdAndFinalizedTrue(uploadId))
+                throw new ConflictException("O envio já foi finalizado.");
+
+            session.setReceivedBytes(channel.size());
+            if (session.getReceivedBytes() != session.getFileSize())
+                throw new BadRequestException("Envio incompleto: " + session.getReceivedBytes() + " de " + session.getFileSize() + " bytes recebidos.");
+
+            PdfAnalysis analysis = fileValidationService.analyzeFile(stagingPath, session.getFileName());
+            if (analysis.isValid()) {
+                // Guarda o resultado da análise para aplicá-lo à cópia no momento do anexo, sem reabrir o arquivo.
+                // Salva ainda sob o lock, para que uma escrita que aguardava o lock encontre a sessão finalizada
+                session.setPageCount(analysis.getPageCount());
+                session.setPageSizes(analysis.getPageSizes());
+                session.setContentHash(analysis.getContentHash());
+                session.setFinalized(true);
+                return uploadSessionRepository.save(session);
+            }
+        }
+
+        discard(session);
+        throw new BadRequestException("O arquivo enviado '" + session.getFileName() + "' está encriptado ou corrompido.");
+    }
+
+    /**
+     * Anexa o arquivo de uma sessão finalizada ao caminho definitivo da cópia no armazenamento.
+     * No armazenamento local o arquivo de staging é movido (rename), sem copiar os dados novamente,
+     * e a sessão é removida.
+     *
+     * @param uploadId   ID da sessão.
+     * @param user       Usuário que está anexando o arquivo (deve ser o dono da sessão).
+     * @param targetPath Caminho (chave) definitivo do arquivo da cópia no armazenamento.
+     * @return A sessão anexada, com o resultado da análise do arquivo.
+     * @throws BadRequestException Se a sessão não existir, não pertencer ao usuário ou ainda não foi finalizada.
+     * @throws IOException         Se não for possível mover o arquivo.
+     */
+    public UploadSession attach(String uploadId, User user, String targetPath) throws BadRequestException, IOException {
+        // Sessões inexistentes ou de outro usuário invalidam a requisição da solicitação como um todo
+        UploadSession session = uploadSessionRepository.findById(uploadId)
+                .filter(s -> s.getOwnerRegistration().equals(user.getRegistrationNumber()))
+                .orElseThrow(() -> new BadRequestException("Sessão de envio '" + uploadId + "' não encontrada."));
+
+        if (!session.isFinalized())
+            throw new BadRequestException("O envio do arquivo '" + session.getFileName() + "' ainda não foi finalizado.");
+
+        fileStore.moveIn(targetPath, getStagingPath(uploadId));
+
+        uploadSessionRepository.delete(session);
+        return session;
+    }
+
+    /**
+     * Cancela uma sessão de envio, removendo o arquivo de staging.
+     *
+     * @param uploadId ID da sessão.
+     * @param user     Usuário autenticado.
+     */
+    public void cancel(String uploadId, User user) {
+        discard(findOwned(uploadId, user));
+    }
+
+    /**
+     * Descarta uma sessão de envio, se ela ainda existir, independentemente do dono.
+     * Usado internamente para limpar sessões de solicitações cujo processamento falhou.
+     *
+     * @param uploadId ID da sessão.
+     */
+    public void discardIfExists(String uploadId) {
+        uploadSessionRepository.findById(uploadId).ifPresent(this::discard);
+    }
+
+    /**
+     * Remove sessões de envio abandonadas há mais tempo que `arquivos.upload-expiration-hours`.
+     * Sessões de cópias de solicitações ainda em processamento não são removidas, mesmo que antigas:
+     * o processamento ainda vai finalizá-las e anexar os arquivos.
+     *
+     * @return O número de sessões removidas.
+     */
+    public int removeExpiredSessions() {
+        List<UploadSession> expired = uploadSessionRepository.findExpired(
+                LocalDateTime.now().minusHours(UPLOAD_EXPIRATION_HOURS));
+        expired.forEach(this::discard);
+        return expired.size();
+    }
+
+// ============================================================= //
+//  Métodos auxiliares
+// ============================================================= //
+
+    private UploadSession findOwned(String uploadId, User user) throws EntityNotFoundException, ForbiddenException {
+        UploadSession session = uploadSessionRepository.findById(uploadId).orElseThrow(EntityNotFoundException::new);
+        if (!session.getOwnerRegistration().equals(user.getRegistrationNumber())) throw new ForbiddenException();
+        return session;
+    }
+
+    private FileLock tryLock(FileChannel channel) throws IOException, ConflictException {
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock == null) throw new ConflictException("Outra parte deste envio está sendo recebida ou o envio está sendo finalizado.");
+            return lock;
+        } catch (OverlappingFileLockException e) {
+            throw new ConflictException("Outra parte deste envio está sendo recebida ou o envio está sendo finalizado.");
+        }
+    }
+
+    private void discard(UploadSession session) {
+        try {
+            Files.deleteIfExists(getStagingPath(session.getId()));
+        } catch (IOException e) {
+            logger.error("Falha ao remover arquivo de staging da sessão {}: {}", session.getId(), e.getMessage());
+        }
+        uploadSessionRepository.delete(session);
+    }
+
+    // O staging fica dentro de BASE_DIR para que, no armazenamento local, o 'move' final seja um rename no mesmo sistema de arquivos
+    // O staging é sempre local: com várias réplicas, as partes de um mesmo envio devem chegar à mesma instância
+    private Path getStagingPath(String uploadId) {
+        return Paths.get(BASE_DIR, ".uploads", uploadId + ".part");
+    }
+}
@@ -0,0 +1,25 @@
+package com.dticnat.controleimpressao.storage;
+
+/**
+ * Resultado de uma remoção em lote no {@link FileStore}: quantidade de arquivos e bytes liberados.
+ */
+public class DeletedFiles {
+
+    public static final DeletedFiles NONE = new DeletedFiles(0, 0);
+
+    private final int count;
+    private final long bytes;
+
+    public DeletedFiles(int count, long bytes) {
+        this.count = count;
+        this.bytes = bytes;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+}
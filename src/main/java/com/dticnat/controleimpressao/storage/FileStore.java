@@ -0,0 +1,143 @@
+package com.dticnat.controleimpressao.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Abstração do armazenamento dos arquivos das solicitações.
+ *
+ * Os arquivos são endereçados por chaves relativas no formato "{matrícula}/{idSolicitação}/{nomeArquivo}".
+ * A implementação é escolhida pela propriedade `arquivos.storage`: 'local' (sistema de arquivos,
+ * padrão) ou 's3' (qualquer serviço compatível com S3, e.g. AWS S3 ou MinIO), o que permite executar
+ * várias réplicas do backend compartilhando os mesmos arquivos.
+ */
+public interface FileStore {
+
+    /**
+     * Grava o conteúdo de um stream sob a chave informada, substituindo o conteúdo existente.
+     * A gravação é atômica: leitores veem o conteúdo anterior ou o novo completo, nunca um arquivo parcial.
+     *
+     * @param key     Chave do arquivo.
+     * @param content Conteúdo do arquivo.
+     * @param size    Tamanho do conteúdo em bytes.
+     * @throws IOException Se não for possível gravar o arquivo.
+     */
+    void put(String key, InputStream content, long size) throws IOException;
+
+    /**
+     * Transfere um arquivo local para o armazenamento sob a chave informada.
+     * O arquivo de origem é consumido: no armazenamento local é movido (rename), sem copiar os dados.
+     *
+     * @param key    Chave do arquivo.
+     * @param source Arquivo local de origem.
+     * @throws IOException Se não for possível transferir o arquivo.
+     */
+    void moveIn(String key, Path source) throws IOException;
+
+    /**
+     * Abre o conteúdo completo de um arquivo para leitura em streaming.
+     *
+     * @param key Chave do arquivo.
+     * @return Stream do conteúdo (deve ser fechado pelo chamador).
+     * @throws NoSuchFileException Se o arquivo não existir.
+     * @throws IOException         Se não for possível ler o arquivo.
+     */
+    InputStream get(String key) throws IOException;
+
+    /**
+     * Abre um intervalo de bytes de um arquivo para leitura em streaming.
+     *
+     * @param key   Chave do arquivo.
+     * @param start Posição do primeiro byte (inclusivo).
+     * @param end   Posição do último byte (inclusivo).
+     * @return Stream do intervalo (deve ser fechado pelo chamador).
+     * @throws NoSuchFileException Se o arquivo não existir.
+     * @throws IOException         Se não for possível ler o arquivo.
+     */
+    InputStream getRange(String key, long start, long end) throws IOException;
+
+    /**
+     * Retorna o tamanho de um arquivo em bytes.
+     *
+     * @param key Chave do arquivo.
+     * @return O tamanho do arquivo.
+     * @throws NoSuchFileException Se o arquivo não existir.
+     * @throws IOException         Se não for possível consultar o arquivo.
+     */
+    long size(String key) throws IOException;
+
+    /**
+     * Verifica se um arquivo existe.
+     *
+     * @param key Chave do arquivo.
+     * @return true se o arquivo existir, false caso contrário.
+     */
+    boolean exists(String key);
+
+    /**
+     * Remove um arquivo, se existir.
+     *
+     * @param key Chave do arquivo.
+     * @return true se o arquivo foi removido, false se não existia.
+     * @throws IOException Se não for possível remover o arquivo.
+     */
+    boolean delete(String key) throws IOException;
+
+    /**
+     * Move um arquivo para outra chave dentro do armazenamento (e.g. para quarentena).
+     *
+     * @param sourceKey Chave atual do arquivo.
+     * @param targetKey Nova chave do arquivo.
+     * @throws NoSuchFileException Se o arquivo não existir.
+     * @throws IOException         Se não for possível mover o arquivo.
+     */
+    void rename(String sourceKey, String targetKey) throws IOException;
+
+    /**
+     * Remove todos os arquivos cujas chaves começam com o prefixo informado (e.g. a pasta de uma solicitação).
+     *
+     * @param prefix Prefixo das chaves.
+     * @return O número de arquivos removidos e o total de bytes liberados.
+     * @throws IOException Se não for possível remover os arquivos.
+     */
+    DeletedFiles deletePrefix(String prefix) throws IOException;
+
+    /**
+     * Lista as chaves de todos os arquivos cujas chaves começam com o prefixo informado.
+     *
+     * @param prefix Prefixo das chaves ("" para todos os arquivos).
+     * @return As chaves encontradas.
+     * @throws IOException Se não for possível listar os arquivos.
+     */
+    List<String> list(String prefix) throws IOException;
+
+    /**
+     * Disponibiliza um arquivo no sistema de arquivos local, para bibliotecas que exigem acesso
+     * aleatório (e.g. PDFBox). No armazenamento local é o próprio arquivo; nos demais, uma cópia
+     * temporária removida ao fechar o {@link LocalFile}.
+     *
+     * @param key Chave do arquivo.
+     * @return O arquivo local (deve ser fechado pelo chamador).
+     * @throws NoSuchFileException Se o arquivo não existir.
+     * @throws IOException         Se não for possível obter o arquivo.
+     */
+    LocalFile openLocal(String key) throws IOException;
+
+    /**
+     * Monta a chave de um arquivo a partir dos seus segmentos, e.g. matrícula, ID da solicitação e nome do arquivo.
+     *
+     * @param segments Segmentos da chave.
+     * @return A chave, com os segmentos separados por '/'.
+     */
+    static String key(Object... segments) {
+        StringBuilder key = new StringBuilder();
+        for (Object segment : segments) {
+            if (!key.isEmpty()) key.append('/');
+            key.append(segment);
+        }
+        return key.toString();
+    }
+}
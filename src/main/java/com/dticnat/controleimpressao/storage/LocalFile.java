@@ -0,0 +1,29 @@
+package com.dticnat.controleimpressao.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Arquivo disponibilizado no sistema de arquivos local por um {@link FileStore}.
+ * Se for uma cópia temporária, é removido ao ser fechado.
+ */
+public class LocalFile implements AutoCloseable {
+
+    private final Path path;
+    private final boolean temporary;
+
+    public LocalFile(Path path, boolean temporary) {
+        this.path = path;
+        this.temporary = temporary;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (temporary) Files.deleteIfExists(path);
+    }
+}
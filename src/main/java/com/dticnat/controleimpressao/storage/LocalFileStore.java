@@ -0,0 +1,251 @@
+package com.dticnat.controleimpressao.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Armazenamento de arquivos no sistema de arquivos local, sob `arquivos.base-dir`.
+ * Diretórios iniciados por '.' (e.g. staging de envios e cache de pré-visualizações) são internos
+ * e não fazem parte das chaves listadas.
+ *
+ * Gravações vão para um arquivo temporário no mesmo diretório, sincronizado em disco (fsync) e então
+ * movido atomicamente para o caminho final, de forma que uma queda no meio da escrita nunca deixe um
+ * arquivo truncado no caminho referenciado pela base de dados.
+ */
+@Component
+@ConditionalOnProperty(name = "arquivos.storage", havingValue = "local", matchIfMissing = true)
+public class LocalFileStore implements FileStore {
+
+    @Value("${arquivos.base-dir}")
+    private String BASE_DIR;
+
+    @Override
+    public void put(String key, InputStream content, long size) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+
+        // Temporário oculto ('.') no mesmo diretório: não aparece nas listagens e o 'move' é um rename
+        Path temp = target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                content.transferTo(Channels.newOutputStream(channel));
+                channel.force(true);
+            }
+            moveAtomically(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void moveIn(String key, Path source) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        moveAtomically(source, target);
+    }
+
+    @Override
+    public void rename(String sourceKey, String targetKey) throws IOException {
+        Path source = resolve(sourceKey);
+        if (!Files.isRegularFile(source)) throw new NoSuchFileException(sourceKey);
+
+        Path target = resolve(targetKey);
+        Files.createDirectories(target.getParent());
+        moveAtomically(source, target);
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public InputStream getRange(String key, long start, long end) throws IOException {
+        SeekableByteChannel channel = Files.newByteChannel(resolve(key), StandardOpenOption.READ);
+        channel.position(start);
+        return new LimitedInputStream(Channels.newInputStream(channel), end - start + 1);
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return Files.size(resolve(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        return Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public DeletedFiles deletePrefix(String prefix) throws IOException {
+        Path directory = resolve(prefix);
+        if (!Files.exists(directory)) return DeletedFiles.NONE;
+
+        int deleted = 0;
+        long bytes = 0;
+        // Remove do mais profundo para o mais raso, para que os diretórios estejam vazios ao serem removidos
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                if (Files.isRegularFile(path)) {
+                    long size = Files.size(path);
+                    if (Files.deleteIfExists(path)) {
+                        deleted++;
+                        bytes += size;
+                    }
+                } else {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+        return new DeletedFiles(deleted, bytes);
+    }
+
+    @Override
+    public List<String> list(String prefix) throws IOException {
+        Path root = getRoot();
+        Path directory = resolve(prefix);
+        if (!Files.isDirectory(directory)) return List.of();
+
+        // Cada subdiretório de primeiro nível (e.g. a pasta de um usuário) é percorrido em paralelo
+        List<Path> entries;
+        try (Stream<Path> children = Files.list(directory)) {
+            entries = children.filter(path -> !isHidden(path)).toList();
+        }
+
+        try {
+            return entries.parallelStream()
+                    .flatMap(entry -> find(entry).stream())
+                    .map(path -> root.relativize(path).toString().replace('\\', '/'))
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public LocalFile openLocal(String key) throws IOException {
+        Path path = resolve(key);
+        if (!Files.isRegularFile(path)) throw new NoSuchFileException(key);
+        return new LocalFile(path, false);
+    }
+
+    // Busca os arquivos regulares de uma subárvore, ignorando arquivos e diretórios ocultos
+    private List<Path> find(Path start) {
+        if (Files.isRegularFile(start)) return List.of(start);
+
+        List<Path> files = new ArrayList<>();
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return isHidden(dir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && !isHidden(file)) files.add(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    // Arquivos removidos durante a varredura são ignorados
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return files;
+    }
+
+    private boolean isHidden(Path path) {
+        return path.getFileName().toString().startsWith(".");
+    }
+
+    // Move atomicamente e sincroniza o diretório, para que o rename também sobreviva a uma queda
+    private void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        try (FileChannel directory = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // Nem todo sistema operacional permite abrir diretórios (e.g. Windows); o fsync do diretório é opcional
+        }
+    }
+
+    private Path getRoot() {
+        return Paths.get(BASE_DIR).toAbsolutePath().normalize();
+    }
+
+    // Resolve a chave dentro do diretório base, impedindo acesso fora dele (e.g. "../")
+    private Path resolve(String key) {
+        Path root = getRoot();
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root)) throw new IllegalArgumentException("Chave de arquivo inválida: " + key);
+        return path;
+    }
+
+    // Limita a leitura a um número de bytes, para leituras de intervalos
+    private static class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = super.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) return -1;
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) remaining -= read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.dticnat.controleimpressao.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Armazenamento de arquivos em um serviço compatível com S3 (AWS S3, MinIO etc.).
+ *
+ * Arquivos maiores que o tamanho de parte são enviados com multipart upload, e leituras de
+ * intervalos usam GET com cabeçalho 'Range', sem baixar o objeto inteiro.
+ * Para desenvolvimento local, o perfil 'minio' do docker-compose provê um serviço compatível.
+ */
+@Component
+@ConditionalOnProperty(name = "arquivos.storage", havingValue = "s3")
+public class S3FileStore implements FileStore {
+
+    // Tamanho de cada parte do multipart upload (mínimo de 5MB exigido pelo S3, exceto a última)
+    private static final int PART_SIZE = 8 * 1024 * 1024;
+
+    // Número máximo de chaves por requisição de remoção em lote
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    @Value("${arquivos.s3.bucket}")
+    private String bucket;
+
+    @Value("${arquivos.s3.endpoint}")
+    private String endpoint;
+
+    @Value("${arquivos.s3.region}")
+    private String region;
+
+    @Value("${arquivos.s3.access-key}")
+    private String accessKey;
+
+    @Value("${arquivos.s3.secret-key}")
+    private String secretKey;
+
+    @Value("${arquivos.s3.path-style}")
+    private boolean pathStyle;
+
+    private static final Logger logger = LoggerFactory.getLogger(S3FileStore.class);
+
+    private S3Client client;
+
+    @PostConstruct
+    public void init() {
+        // Sem credenciais explícitas, usa a cadeia padrão (variáveis de ambiente, perfil, IAM role)
+        AwsCredentialsProvider credentials = accessKey == null || accessKey.isBlank()
+                ? DefaultCredentialsProvider.create()
+                : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+
+        var builder = S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(pathStyle).build());
+
+        // Endpoint customizado para serviços compatíveis (e.g. MinIO)
+        if (endpoint != null && !endpoint.isBlank()) builder.endpointOverride(URI.create(endpoint));
+
+        client = builder.build();
+        ensureBucket();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (client != null) client.close();
+    }
+
+    @Override
+    public void put(String key, InputStream content, long size) throws IOException {
+        if (size <= PART_SIZE) {
+            try {
+                client.putObject(PutObjectRequest.builder().bucket(bucket).key(key).contentLength(size).build(),
+                        RequestBody.fromInputStream(content, size));
+            } catch (S3Exception e) {
+                throw new IOException("Falha ao enviar arquivo '" + key + "' ao armazenamento.", e);
+            }
+            return;
+        }
+
+        putMultipart(key, content);
+    }
+
+    @Override
+    public void moveIn(String key, Path source) throws IOException {
+        try (InputStream content = Files.newInputStream(source)) {
+            put(key, content, Files.size(source));
+        }
+        Files.deleteIfExists(source);
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        try {
+            return client.getObject(GetObjectRequest.builder().bucket(bucket).key(key).build());
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        } catch (S3Exception e) {
+            throw new IOException("Falha ao ler arquivo '" + key + "' do armazenamento.", e);
+        }
+    }
+
+    @Override
+    public InputStream getRange(String key, long start, long end) throws IOException {
+        try {
+            return client.getObject(GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .range("bytes=" + start + "-" + end)
+                    .build());
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        } catch (S3Exception e) {
+            throw new IOException("Falha ao ler arquivo '" + key + "' do armazenamento.", e);
+        }
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        try {
+            return client.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build()).contentLength();
+        } catch (S3Exception e) {
+            // HEAD não possui corpo, então a ausência do objeto é identificada apenas pelo status
+            if (e.statusCode() == 404) throw new NoSuchFileException(key);
+            throw new IOException("Falha ao consultar arquivo '" + key + "' no armazenamento.", e);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        try {
+            size(key);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        // DELETE no S3 é idempotente e não informa se o objeto existia
+        boolean existed = exists(key);
+        try {
+            client.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(key).build());
+        } catch (S3Exception e) {
+            throw new IOException("Falha ao remover arquivo '" + key + "' do armazenamento.", e);
+        }
+        return existed;
+    }
+
+    @Override
+    public void rename(String sourceKey, String targetKey) throws IOException {
+        // O S3 não possui operação de renomear: copia no servidor e remove a origem
+        try {
+            client.copyObject(CopyObjectRequest.builder()
+                    .sourceBucket(bucket)
+                    .sourceKey(sourceKey)
+                    .destinationBucket(bucket)
+                    .destinationKey(targetKey)
+                    .build());
+            client.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(sourceKey).build());
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(sourceKey);
+        } catch (S3Exception e) {
+            throw new IOException("Falha ao mover arquivo '" + sourceKey + "' no armazenamento.", e);
+        }
+    }
+
+    @Override
+    public DeletedFiles deletePrefix(String prefix) throws IOException {
+        List<S3Object> objects = listObjects(prefix.endsWith("/") ? prefix : prefix + "/");
+
+        try {
+            for (int i = 0; i < objects.size(); i += DELETE_BATCH_SIZE) {
+                List<ObjectIdentifier> batch = objects.subList(i, Math.min(i + DELETE_BATCH_SIZE, objects.size()))
+                        .stream()
+                        .map(object -> ObjectIdentifier.builder().key(object.key()).build())
+                        .toList();
+
+                client.deleteObjects(DeleteObjectsRequest.builder()
+                        .bucket(bucket)
+                        .delete(Delete.builder().objects(batch).quiet(true).build())
+                        .build());
+            }
+        } catch (S3Exception e) {
+            throw new IOException("Falha ao remover arquivos com prefixo '" + prefix + "' do armazenamento.", e);
+        }
+        return new DeletedFiles(objects.size(), objects.stream().mapToLong(S3Object::size).sum());
+    }
+
+    @Override
+    public List<String> list(String prefix) throws IOException {
+        return listObjects(prefix).stream().map(S3Object::key).toList();
+    }
+
+    // Lista os objetos (chave e tamanho) cujas chaves começam com o prefixo, percorrendo todas as páginas
+    private List<S3Object> listObjects(String prefix) throws IOException {
+        try {
+            return client.listObjectsV2Paginator(ListObjectsV2Request.builder().bucket(bucket).prefix(prefix).build())
+                    .contents()
+                    .stream()
+                    .toList();
+        } catch (S3Exception e) {
+            throw new IOException("Falha ao listar arquivos com prefixo '" + prefix + "' do armazenamento.", e);
+        }
+    }
+
+    @Override
+    public LocalFile openLocal(String key) throws IOException {
+        Path temp = Files.createTempFile("armazenamento-", ".tmp");
+        try (InputStream content = get(key)) {
+            Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return new LocalFile(temp, true);
+    }
+
+// ============================================================= //
+//  Métodos auxiliares
+// ============================================================= //
+
+    private void putMultipart(String key, InputStream content) throws IOException {
+        String uploadId;
+        try {
+            uploadId = client.createMultipartUpload(CreateMultipartUploadRequest.builder().bucket(bucket).key(key).build()).uploadId();
+        } catch (S3Exception e) {
+            throw new IOException("Falha ao iniciar envio do arquivo '" + key + "' ao armazenamento.", e);
+        }
+
+        List<CompletedPart> parts = new ArrayList<>();
+        try {
+            byte[] buffer = new byte[PART_SIZE];
+            int partNumber = 1;
+            int read;
+            while ((read = content.readNBytes(buffer, 0, PART_SIZE)) > 0) {
+                UploadPartResponse response = client.uploadPart(UploadPartRequest.builder()
+                                .bucket(bucket)
+                                .key(key)
+                                .uploadId(uploadId)
+                                .partNumber(partNumber)
+                                .contentLength((long) read)
+                                .build(),
+                        RequestBody.fromBytes(read == PART_SIZE ? buffer : Arrays.copyOf(buffer, read)));
+
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build());
+                partNumber++;
+            }
+
+            client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build());
+
+        } catch (IOException | S3Exception e) {
+            // Descarta as partes já enviadas, que seriam cobradas e ficariam órfãs no bucket
+            try {
+                client.abortMultipartUpload(AbortMultipartUploadRequest.builder().bucket(bucket).key(key).uploadId(uploadId).build());
+            } catch (S3Exception abortException) {
+                logger.error("Falha ao abortar envio multipart de '{}': {}", key, abortException.getMessage());
+            }
+
+            if (e instanceof IOException ioException) throw ioException;
+            throw new IOException("Falha ao enviar arquivo '" + key + "' ao armazenamento.", e);
+        }
+    }
+
+    private void ensureBucket() {
+        try {
+            client.headBucket(HeadBucketRequest.builder().bucket(bucket).build());
+        } catch (NoSuchBucketException e) {
+            client.createBucket(CreateBucketRequest.builder().bucket(bucket).build());
+            logger.info("Bucket '{}' criado no armazenamento.", bucket);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+-- Preenche as colunas de último evento das solicitações criadas antes delas, a partir da linha do tempo.
+-- Idempotente: apenas solicitações sem último evento registrado são atualizadas.
+UPDATE solicitation s
+SET last_event_id   = latest.id,
+    last_event_type = latest.type,
+    last_event_at   = latest.creation_date,
+    last_event_by   = CASE WHEN latest.role = 'SYSTEM' THEN NULL ELSE latest.common_name END
+FROM (
+    SELECT DISTINCT ON (e.solicitation_id) e.solicitation_id, e.id, e.type, e.creation_date, e.role, e.common_name
+    FROM event e
+    JOIN solicitation pending ON pending.id = e.solicitation_id AND pending.last_event_at IS NULL
+    ORDER BY e.solicitation_id, e.creation_date DESC, e.id DESC
+) latest
+WHERE s.id = latest.solicitation_id AND s.last_event_at IS NULL;
@@ -0,0 +1,5 @@
+-- Ajusta as sequências de IDs (alocação em blocos de 50) aos registros já existentes,
+-- criados quando os IDs eram gerados por colunas IDENTITY. Idempotente: nunca retrocede uma sequência.
+SELECT setval('solicitation_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM solicitation), (SELECT last_value FROM solicitation_seq)));
+SELECT setval('copy_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM copy), (SELECT last_value FROM copy_seq)));
+SELECT setval('event_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM event), (SELECT last_value FROM event_seq)));
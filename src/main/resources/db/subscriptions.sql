@@ -0,0 +1,20 @@
+-- Inscreve nas notificações os donos e os autores de eventos das solicitações existentes,
+-- criadas antes da tabela de inscrições. Executado apenas enquanto a tabela estiver vazia.
+INSERT INTO subscription (id, solicitation_id, registration_number, common_name, email, role, active, created_at)
+SELECT nextval('subscription_seq'), interested.solicitation_id, interested.registration_number,
+       interested.common_name, interested.email, interested.role, true, localtimestamp
+FROM (
+    SELECT DISTINCT ON (solicitation_id, registration_number) solicitation_id, registration_number, common_name, email, role
+    FROM (
+        SELECT s.id AS solicitation_id, s.registration_number, s.common_name, s.email, s.role, s.creation_date AS date
+        FROM solicitation s
+        UNION ALL
+        SELECT e.solicitation_id, e.registration_number, e.common_name, e.email, e.role, e.creation_date AS date
+        FROM event e
+        WHERE e.solicitation_id IS NOT NULL AND e.registration_number IS NOT NULL AND (e.role IS NULL OR e.role <> 'SYSTEM')
+    ) users
+    WHERE registration_number IS NOT NULL
+    ORDER BY solicitation_id, registration_number, date DESC
+) interested
+WHERE NOT EXISTS (SELECT 1 FROM subscription)
+ON CONFLICT (solicitation_id, registration_number) DO NOTHING;
@@ -0,0 +1,103 @@
+package com.dticnat.controleimpressao.repository;
+
+import com.dticnat.controleimpressao.model.Copy;
+import com.dticnat.controleimpressao.model.Event;
+import com.dticnat.controleimpressao.model.PrintConfig;
+import com.dticnat.controleimpressao.model.Solicitation;
+import com.dticnat.controleimpressao.model.User;
+import com.dticnat.controleimpressao.model.enums.EventType;
+import com.dticnat.controleimpressao.model.enums.Role;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Verifica que as cópias de uma solicitação são inseridas em lote (IDs de sequência e hibernate.jdbc.batch_size)
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+class SolicitationBatchInsertTests {
+
+	private static final int COPIES = 20;
+
+	// Comandos preparados independentes do número de cópias: um INSERT por tabela (solicitação, cópias e evento),
+	// os UPDATEs em lote das chaves estrangeiras das cópias e do evento e, no máximo, uma consulta a cada sequência
+	private static final int MAX_STATEMENTS = 8;
+
+	@Autowired
+	private SolicitationRepository solicitationRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Test
+	void copiesOfASolicitationAreInsertedInOneBatch() {
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		Solicitation solicitation = solicitation(COPIES);
+
+		statistics.clear();
+		solicitationRepository.saveAndFlush(solicitation);
+
+		assertEquals(COPIES + 2, statistics.getEntityInsertCount());
+		assertTrue(statistics.getPrepareStatementCount() <= MAX_STATEMENTS,
+				"Esperados no máximo " + MAX_STATEMENTS + " comandos para " + COPIES + " cópias, executados: " + statistics.getPrepareStatementCount());
+
+		entityManager.clear();
+	}
+
+	private Solicitation solicitation(int copyCount) {
+		User user = User.builder()
+				.commonName("Teste")
+				.registrationNumber("0000000")
+				.role(Role.USER)
+				.build();
+
+		List<Copy> copies = new ArrayList<>();
+		for (int i = 0; i < copyCount; i++) {
+			copies.add(Copy.builder()
+					.fileName("arquivo-" + i + ".pdf")
+					.pageCount(1)
+					.isPhysicalFile(true)
+					.fileInDisk(false)
+					.printConfig(PrintConfig.builder()
+							.copyCount(1)
+							.pages("Todas")
+							.pagesPerSheet(1)
+							.layout("Retrato")
+							.frontAndBack(false)
+							.sheetsTotal(1)
+							.build())
+					.build());
+		}
+
+		LocalDateTime now = LocalDateTime.now();
+		return Solicitation.builder()
+				.deadline(1)
+				.creationDate(now)
+				.user(user)
+				.totalPageCount(copyCount)
+				.copies(copies)
+				.timeline(List.of(Event.builder()
+						.user(user)
+						.type(EventType.REQUEST_OPENING)
+						.creationDate(now)
+						.build()))
+				.lastEventType(EventType.REQUEST_OPENING)
+				.lastEventAt(now)
+				.build();
+	}
+}
@@ -0,0 +1,79 @@
+package com.dticnat.controleimpressao.service;
+
+import com.dticnat.controleimpressao.model.Copy;
+import com.dticnat.controleimpressao.model.PrintConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CopyServiceTests {
+
+	private final CopyService copyService = new CopyService();
+
+	private static PrintConfig printConfig(String pages, String pageIntervals, Integer pagesPerSheet, Boolean frontAndBack, Integer copyCount) {
+		return PrintConfig.builder()
+				.pages(pages)
+				.pageIntervals(pageIntervals)
+				.pagesPerSheet(pagesPerSheet)
+				.frontAndBack(frontAndBack)
+				.copyCount(copyCount)
+				.build();
+	}
+
+	@Test
+	void countSelectedPagesReturnsAllPagesWithoutCustomSelection() {
+		assertEquals(10, copyService.countSelectedPages(printConfig("Todas", "2-3", 1, false, 1), 10));
+		assertEquals(10, copyService.countSelectedPages(printConfig("Personalizado", null, 1, false, 1), 10));
+		assertEquals(10, copyService.countSelectedPages(printConfig("Personalizado", " ", 1, false, 1), 10));
+	}
+
+	@Test
+	void countSelectedPagesParsesRangesAndSinglePages() {
+		assertEquals(12, copyService.countSelectedPages(printConfig("Personalizado", "1-11, 18", 1, false, 1), 20));
+		assertEquals(1, copyService.countSelectedPages(printConfig("Personalizado", "10", 1, false, 1), 20));
+		assertEquals(2, copyService.countSelectedPages(printConfig("Personalizado", "22-23", 1, false, 1), 30));
+	}
+
+	@Test
+	void countSelectedPagesCountsOverlappingPagesOnce() {
+		assertEquals(6, copyService.countSelectedPages(printConfig("Personalizado", "1-5, 3-6, 4", 1, false, 1), 10));
+	}
+
+	@Test
+	void countSelectedPagesClampsRangesToTheFile() {
+		assertEquals(3, copyService.countSelectedPages(printConfig("Personalizado", "8-15", 1, false, 1), 10));
+		assertEquals(0, copyService.countSelectedPages(printConfig("Personalizado", "11-15", 1, false, 1), 10));
+		assertEquals(0, copyService.countSelectedPages(printConfig("Personalizado", "5-2", 1, false, 1), 10));
+	}
+
+	@Test
+	void countSelectedPagesWithoutPagesIsZero() {
+		assertEquals(0, copyService.countSelectedPages(printConfig("Todas", null, 1, false, 1), null));
+		assertEquals(0, copyService.countSelectedPages(printConfig("Todas", null, 1, false, 1), 0));
+	}
+
+	@Test
+	void computeSheetsConsidersPagesPerSheetFrontAndBackAndCopies() {
+		assertEquals(7, copyService.computeSheets(printConfig("Todas", null, 1, false, 1), 7));
+		assertEquals(4, copyService.computeSheets(printConfig("Todas", null, 2, false, 1), 7));
+		assertEquals(2, copyService.computeSheets(printConfig("Todas", null, 2, true, 1), 7));
+		assertEquals(1, copyService.computeSheets(printConfig("Todas", null, 4, true, 1), 7));
+		assertEquals(12, copyService.computeSheets(printConfig("Personalizado", "1-11", 2, true, 4), 20));
+	}
+
+	@Test
+	void computeSheetsDefaultsMissingSettings() {
+		assertEquals(5, copyService.computeSheets(printConfig("Todas", null, null, null, null), 5));
+	}
+
+	@Test
+	void computeTotalPageCountDefaultsCopyCountToOne() {
+		List<Copy> copies = List.of(
+				Copy.builder().pageCount(10).printConfig(printConfig("Personalizado", "1-3", 1, false, 2)).build(),
+				Copy.builder().pageCount(5).printConfig(printConfig("Todas", null, 1, false, null)).build());
+
+		assertEquals(11, copyService.computeTotalPageCount(copies));
+	}
+}
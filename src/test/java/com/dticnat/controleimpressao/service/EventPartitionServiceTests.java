@@ -0,0 +1,116 @@
+package com.dticnat.controleimpressao.service;
+
+import com.dticnat.controleimpressao.model.Copy;
+import com.dticnat.controleimpressao.model.PrintConfig;
+import com.dticnat.controleimpressao.model.Solicitation;
+import com.dticnat.controleimpressao.model.User;
+import com.dticnat.controleimpressao.model.enums.Role;
+import com.dticnat.controleimpressao.repository.SolicitationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Converte uma tabela de eventos comum e populada em tabela particionada.
+// Executado em uma transação desfeita ao final (o DDL do PostgreSQL é transacional)
+@SpringBootTest
+@Transactional
+class EventPartitionServiceTests {
+
+	@Autowired
+	private EventPartitionService eventPartitionService;
+
+	@Autowired
+	private SolicitationRepository solicitationRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void convertsPopulatedTableIntoMonthlyPartitions() {
+		Long solicitationId = solicitationRepository.saveAndFlush(solicitation()).getId();
+
+		// Recria 'event' como tabela comum, como antes do particionamento
+		jdbcTemplate.execute("create table event_plain (like event including defaults)");
+		jdbcTemplate.execute("drop table event cascade");
+		jdbcTemplate.execute("alter table event_plain rename to event");
+		jdbcTemplate.execute("alter table event alter column creation_date drop not null");
+		jdbcTemplate.execute("alter table event add primary key (id)");
+
+		YearMonth current = YearMonth.now();
+		YearMonth old = current.minusMonths(14);
+		YearMonth recent = current.minusMonths(3);
+		insertEvent(1L, solicitationId, old.atDay(10).atStartOfDay());
+		insertEvent(2L, solicitationId, old.atEndOfMonth().atTime(23, 59));
+		insertEvent(3L, solicitationId, recent.atDay(1).atStartOfDay());
+		insertEvent(4L, solicitationId, LocalDateTime.now());
+		insertEvent(5L, solicitationId, null);
+
+		eventPartitionService.migrate();
+
+		assertEquals("p", jdbcTemplate.queryForObject("select relkind::text from pg_class where oid = 'event'::regclass", String.class));
+		assertEquals(5, count("event"));
+		assertEquals(0, count("event_default"));
+		assertEquals(2, count(partition(old)));
+		assertEquals(1, count(partition(recent)));
+		assertEquals(2, count(partition(current)));
+
+		// Eventos sem data recebem a data de criação da solicitação
+		assertEquals(1, jdbcTemplate.queryForObject("select count(*) from event e join solicitation s on s.id = e.solicitation_id " +
+				"where e.id = 5 and e.creation_date = s.creation_date", Integer.class));
+
+		assertEquals(List.of("PRIMARY KEY (id, creation_date)"), jdbcTemplate.queryForList(
+				"select pg_get_constraintdef(oid) from pg_constraint where conrelid = 'event'::regclass and contype = 'p'", String.class));
+		assertEquals(List.of("FOREIGN KEY (solicitation_id) REFERENCES solicitation(id)"), jdbcTemplate.queryForList(
+				"select pg_get_constraintdef(oid) from pg_constraint where conrelid = 'event'::regclass and conname = 'fk_event_solicitation'", String.class));
+	}
+
+	private void insertEvent(Long id, Long solicitationId, LocalDateTime creationDate) {
+		jdbcTemplate.update("insert into event (id, solicitation_id, type, creation_date) values (?, ?, 'COMMENT', ?)",
+				id, solicitationId, creationDate != null ? Timestamp.valueOf(creationDate) : null);
+	}
+
+	private int count(String table) {
+		return jdbcTemplate.queryForObject("select count(*) from \"" + table + "\"", Integer.class);
+	}
+
+	private String partition(YearMonth month) {
+		return "event_p" + month.format(DateTimeFormatter.ofPattern("yyyy_MM"));
+	}
+
+	private Solicitation solicitation() {
+		return Solicitation.builder()
+				.deadline(1)
+				.creationDate(LocalDateTime.now())
+				.user(User.builder()
+						.commonName("Teste")
+						.registrationNumber("0000000")
+						.role(Role.USER)
+						.build())
+				.totalPageCount(1)
+				.copies(List.of(Copy.builder()
+						.fileName("arquivo.pdf")
+						.pageCount(1)
+						.isPhysicalFile(true)
+						.fileInDisk(false)
+						.printConfig(PrintConfig.builder()
+								.copyCount(1)
+								.pages("Todas")
+								.pagesPerSheet(1)
+								.layout("Retrato")
+								.frontAndBack(false)
+								.sheetsTotal(1)
+								.build())
+						.build()))
+				.build();
+	}
+}
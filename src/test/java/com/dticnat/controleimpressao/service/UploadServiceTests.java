@@ -0,0 +1,143 @@
+package com.dticnat.controleimpressao.service;
+
+import com.dticnat.controleimpressao.exception.ConflictException;
+import com.dticnat.controleimpressao.model.UploadSession;
+import com.dticnat.controleimpressao.model.User;
+import com.dticnat.controleimpressao.model.dto.UploadSessionDTO;
+import com.dticnat.controleimpressao.model.enums.Role;
+import com.dticnat.controleimpressao.repository.UploadSessionRepository;
+import org.apache.coyote.BadRequestException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Offset, truncamento e retomada das escritas de partes no staging
+@SpringBootTest(properties = "arquivos.base-dir=target/test-uploads")
+@Transactional
+class UploadServiceTests {
+
+	@Autowired
+	private UploadService uploadService;
+
+	@Autowired
+	private UploadSessionRepository uploadSessionRepository;
+
+	@Value("${arquivos.base-dir}")
+	private String baseDir;
+
+	private final User user = User.builder()
+			.commonName("Teste")
+			.registrationNumber("0000000")
+			.role(Role.USER)
+			.build();
+
+	@Test
+	void chunksAreWrittenAtTheOffsetAndUploadResumesFromReceivedBytes() throws IOException {
+		UploadSession session = create(10);
+
+		assertEquals(5, write(session, 0, "hello").getReceivedBytes());
+
+		// Retomada: o cliente consulta o offset e continua de onde parou
+		long offset = uploadService.getSession(session.getId(), user).getReceivedBytes();
+		assertEquals(5, offset);
+		assertEquals(10, write(session, offset, "world").getReceivedBytes());
+
+		assertEquals("helloworld", content(session));
+	}
+
+	@Test
+	void resendingAReceivedPartOverwritesIt() throws IOException {
+		UploadSession session = create(10);
+		write(session, 0, "hello");
+
+		assertEquals(5, write(session, 0, "HE").getReceivedBytes());
+		assertEquals("HEllo", content(session));
+	}
+
+	@Test
+	void offsetsOutsideTheReceivedBytesAreRejected() throws IOException {
+		UploadSession session = create(10);
+		write(session, 0, "hello");
+
+		assertThrows(BadRequestException.class, () -> write(session, 6, "x"));
+		assertThrows(BadRequestException.class, () -> write(session, -1, "x"));
+		assertEquals("hello", content(session));
+	}
+
+	@Test
+	void partBeyondTheDeclaredSizeIsTruncated() throws IOException {
+		UploadSession session = create(8);
+		write(session, 0, "hello");
+
+		// Anexando além do tamanho declarado: o excedente é descartado
+		assertThrows(BadRequestException.class, () -> write(session, 5, "world"));
+		assertEquals("hello", content(session));
+
+		// Sobrescrevendo além do tamanho declarado: o que já foi recebido é preservado
+		assertThrows(BadRequestException.class, () -> write(session, 2, "abcdefgh"));
+		assertEquals("hello", content(session));
+	}
+
+	@Test
+	void chunksAreRejectedAfterFinalization() throws IOException {
+		UploadSession session = create(10);
+		write(session, 0, "hello");
+
+		UploadSession stored = uploadSessionRepository.findById(session.getId()).orElseThrow();
+		stored.setFinalized(true);
+		uploadSessionRepository.saveAndFlush(stored);
+
+		assertThrows(ConflictException.class, () -> write(session, 5, "world"));
+		assertEquals("hello", content(session));
+	}
+
+	@Test
+	void chunksAndFinalizationAreRejectedWhileTheStagingFileIsLocked() throws IOException {
+		UploadSession session = create(5);
+		write(session, 0, "hello");
+
+		try (FileChannel channel = FileChannel.open(stagingPath(session), StandardOpenOption.WRITE);
+			 FileLock lock = channel.lock()) {
+			assertThrows(ConflictException.class, () -> write(session, 0, "HELLO"));
+			assertThrows(ConflictException.class, () -> uploadService.finalizeSession(session.getId(), user));
+		}
+
+		assertEquals("hello", content(session));
+	}
+
+	private UploadSession create(long fileSize) throws IOException {
+		return uploadService.create(UploadSessionDTO.builder()
+				.fileName("arquivo.pdf")
+				.fileType("application/pdf")
+				.fileSize(fileSize)
+				.build(), user);
+	}
+
+	private UploadSession write(UploadSession session, long offset, String data) throws IOException {
+		return uploadService.writeChunk(session.getId(), user, offset,
+				new ByteArrayInputStream(data.getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	private String content(UploadSession session) throws IOException {
+		return Files.readString(stagingPath(session), StandardCharsets.US_ASCII);
+	}
+
+	private Path stagingPath(UploadSession session) {
+		return Paths.get(baseDir, ".uploads", session.getId() + ".part");
+	}
+}